@@ -43,7 +43,7 @@ allprojects {
     }
 
     if (this != rootProject && name != "lint" && name != "internal") {
-        configureAndroid()
+        if (!isCompiler) configureAndroid()
         configureQuality()
 
         if (Config.submodules.contains(name) || isLibrary) {
@@ -64,6 +64,11 @@ val Project.reportsDir get() = "$buildDir/reports"
  */
 val Project.isLibrary get() = name == "library"
 
+/**
+ * Determines if a Project is the plain Java annotation processor module
+ */
+val Project.isCompiler get() = name == "compiler"
+
 /**
  * Returns the maven artifact name for a Project.
  */
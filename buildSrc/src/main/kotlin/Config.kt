@@ -1,6 +1,6 @@
 object Config {
     const val version = "4.2.0-SNAPSHOT"
-    val submodules = listOf("auth", "common", "firestore", "database", "storage")
+    val submodules = listOf("auth", "common", "firestore", "database", "storage", "coroutines")
 
     private const val kotlinVersion = "1.2.41"
 
@@ -22,6 +22,8 @@ object Config {
     object Libs {
         object Kotlin {
             const val jvm = "org.jetbrains.kotlin:kotlin-stdlib-jdk8:$kotlinVersion"
+            const val android = "org.jetbrains.kotlin:kotlin-stdlib-jdk7:$kotlinVersion"
+            const val coroutines = "org.jetbrains.kotlinx:kotlinx-coroutines-android:0.22.5"
         }
 
         object Support {
@@ -43,6 +45,7 @@ object Config {
 
             const val runtime = "android.arch.lifecycle:runtime:$version"
             const val viewModel = "android.arch.lifecycle:viewmodel:$version"
+            const val liveData = "android.arch.lifecycle:livedata-core:$version"
             const val extensions = "android.arch.lifecycle:extensions:$version"
             const val compiler = "android.arch.lifecycle:compiler:$version"
 
@@ -92,6 +95,7 @@ object Config {
         object Test {
             const val junit = "junit:junit:4.12"
             const val truth = "com.google.truth:truth:0.40"
+            const val compileTesting = "com.google.testing.compile:compile-testing:0.15"
             const val mockito = "org.mockito:mockito-android:2.18.3"
             const val robolectric = "org.robolectric:robolectric:3.8"
 
@@ -1,6 +1,20 @@
+import com.android.build.gradle.internal.dsl.TestOptions
+
+android {
+    testOptions {
+        unitTests(closureOf<TestOptions.UnitTestOptions> {
+            // Snapshot arrays create a main thread Handler
+            isReturnDefaultValues = true
+        })
+    }
+}
+
 dependencies {
     api(Config.Libs.Arch.runtime)
     api(Config.Libs.Arch.viewModel)
+    api(Config.Libs.Arch.liveData)
     implementation(Config.Libs.Support.annotations)
     annotationProcessor(Config.Libs.Arch.compiler)
+
+    testImplementation(Config.Libs.Test.junit)
 }
@@ -0,0 +1,393 @@
+package com.firebase.ui.common;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps aggregates such as counts, sums, or the top items of a {@link BaseObservableSnapshotArray}
+ * up to date without iterating over the whole array on every change. Each child event updates the
+ * declared aggregates in constant or logarithmic time using the previous and current version of
+ * the item, and the results are published as {@link LiveData} once per batch of events.
+ *
+ * @param <S> the snapshot class.
+ * @param <E> the error type raised for the listener.
+ * @param <T> the model object class.
+ */
+public abstract class BaseAggregateObserver<S, E, T> implements BaseChangeEventListener<S, E> {
+    private final BaseObservableSnapshotArray<S, E, ?, T> mSnapshots;
+
+    private final List<Entry<T>> mEntries = new ArrayList<>();
+    private final List<Aggregate<T, ?>> mAggregates = new ArrayList<>();
+    private long mNextSequence;
+
+    public BaseAggregateObserver(@NonNull BaseObservableSnapshotArray<S, E, ?, T> snapshots) {
+        mSnapshots = Preconditions.checkNotNull(snapshots);
+    }
+
+    /**
+     * @return the number of items in the array
+     */
+    @NonNull
+    public LiveData<Integer> count() {
+        return add(new Aggregate<T, Integer>() {
+            private int mCount;
+
+            @Override
+            void add(Entry<T> entry) {
+                mCount++;
+            }
+
+            @Override
+            void remove(Entry<T> entry) {
+                mCount--;
+            }
+
+            @Override
+            Integer getResult() {
+                return mCount;
+            }
+
+            @Override
+            void clear() {
+                mCount = 0;
+            }
+        });
+    }
+
+    /**
+     * @return the sum of the selected values
+     */
+    @NonNull
+    public LiveData<Double> sum(@NonNull final Selector<T, ? extends Number> selector) {
+        Preconditions.checkNotNull(selector);
+        return add(new Aggregate<T, Double>() {
+            // Integral values are summed exactly, so adding and removing them never drifts
+            private long mIntegralSum;
+            private double mFractionalSum;
+            private int mFractionalCount;
+
+            @Override
+            void add(Entry<T> entry) {
+                Number value = selector.select(entry.mModel);
+                entry.setValue(mSlot, value);
+                if (value == null) return;
+
+                if (isIntegral(value)) {
+                    mIntegralSum += value.longValue();
+                } else {
+                    mFractionalSum += value.doubleValue();
+                    mFractionalCount++;
+                }
+            }
+
+            @Override
+            void remove(Entry<T> entry) {
+                Number value = entry.getValue(mSlot);
+                if (value == null) return;
+
+                if (isIntegral(value)) {
+                    mIntegralSum -= value.longValue();
+                } else if (--mFractionalCount == 0) {
+                    // Drop the rounding error accumulated by the removed values
+                    mFractionalSum = 0;
+                } else {
+                    mFractionalSum -= value.doubleValue();
+                }
+            }
+
+            @Override
+            Double getResult() {
+                return mIntegralSum + mFractionalSum;
+            }
+
+            @Override
+            void clear() {
+                mIntegralSum = 0;
+                mFractionalSum = 0;
+                mFractionalCount = 0;
+            }
+
+            private boolean isIntegral(Number value) {
+                return value instanceof Integer || value instanceof Long
+                        || value instanceof Short || value instanceof Byte;
+            }
+        });
+    }
+
+    /**
+     * @return the smallest selected value, or null if there is none
+     */
+    @NonNull
+    public <V extends Comparable<? super V>> LiveData<V> min(@NonNull Selector<T, V> selector) {
+        return add(new ExtremeAggregate<>(selector, true));
+    }
+
+    /**
+     * @return the largest selected value, or null if there is none
+     */
+    @NonNull
+    public <V extends Comparable<? super V>> LiveData<V> max(@NonNull Selector<T, V> selector) {
+        return add(new ExtremeAggregate<>(selector, false));
+    }
+
+    /**
+     * @param count      the maximum number of items to return
+     * @param comparator the order of the items, the first ones are returned
+     * @return the first {@code count} items in the given order
+     */
+    @NonNull
+    public LiveData<List<T>> top(int count, @NonNull Comparator<T> comparator) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be at least 1: " + count);
+        }
+        return add(new TopAggregate<>(count, Preconditions.checkNotNull(comparator)));
+    }
+
+    @Override
+    public void onChildChanged(@NonNull ChangeEventType type,
+                               @NonNull S snapshot,
+                               int newIndex,
+                               int oldIndex) {
+        switch (type) {
+            case ADDED:
+                Entry<T> entry = new Entry<>(mSnapshots.get(newIndex), mNextSequence++);
+                mEntries.add(newIndex, entry);
+                for (Aggregate<T, ?> aggregate : mAggregates) {
+                    aggregate.add(entry);
+                }
+                break;
+            case CHANGED:
+                Entry<T> previous = mEntries.get(newIndex);
+                Entry<T> current = new Entry<>(mSnapshots.get(newIndex), previous.mSequence);
+                mEntries.set(newIndex, current);
+                for (Aggregate<T, ?> aggregate : mAggregates) {
+                    aggregate.remove(previous);
+                    aggregate.add(current);
+                }
+                break;
+            case REMOVED:
+                // Arrays disagree on which index to report for removals
+                Entry<T> removed = mEntries.remove(oldIndex == -1 ? newIndex : oldIndex);
+                for (Aggregate<T, ?> aggregate : mAggregates) {
+                    aggregate.remove(removed);
+                }
+                break;
+            case MOVED:
+                mEntries.add(newIndex, mEntries.remove(oldIndex));
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    @Override
+    public void onDataChanged() {
+        publish();
+    }
+
+    @Override
+    public void onError(@NonNull E e) {
+    }
+
+    /**
+     * Clear all state, call after removing this observer from the array.
+     */
+    protected void reset() {
+        mEntries.clear();
+        for (Aggregate<T, ?> aggregate : mAggregates) {
+            aggregate.clear();
+        }
+        publish();
+    }
+
+    private <R> LiveData<R> add(Aggregate<T, R> aggregate) {
+        aggregate.mSlot = mAggregates.size();
+
+        // Catch up with the items we already know about
+        for (Entry<T> entry : mEntries) {
+            aggregate.add(entry);
+        }
+        aggregate.publish();
+
+        mAggregates.add(aggregate);
+        return aggregate.mData;
+    }
+
+    private void publish() {
+        for (Aggregate<T, ?> aggregate : mAggregates) {
+            aggregate.publish();
+        }
+    }
+
+    private static final class Entry<T> {
+        private static final Object[] NO_VALUES = new Object[0];
+
+        private final T mModel;
+        /** Identifies the item across changes and orders items that compare equal. */
+        private final long mSequence;
+        /**
+         * The values selected from the model by each aggregate, so an item is removed with the
+         * value it was added with even if its model was mutated in the meantime.
+         */
+        private Object[] mValues = NO_VALUES;
+
+        Entry(T model, long sequence) {
+            mModel = model;
+            mSequence = sequence;
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> V getValue(int slot) {
+            return slot < mValues.length ? (V) mValues[slot] : null;
+        }
+
+        void setValue(int slot, Object value) {
+            if (slot >= mValues.length) {
+                Object[] values = new Object[slot + 1];
+                System.arraycopy(mValues, 0, values, 0, mValues.length);
+                mValues = values;
+            }
+            mValues[slot] = value;
+        }
+    }
+
+    private abstract static class Aggregate<T, R> {
+        final MutableLiveData<R> mData = new MutableLiveData<>();
+        /** The index of this aggregate's values in each {@link Entry}. */
+        int mSlot;
+
+        abstract void add(Entry<T> entry);
+
+        abstract void remove(Entry<T> entry);
+
+        abstract R getResult();
+
+        abstract void clear();
+
+        void publish() {
+            R result = getResult();
+            R published = mData.getValue();
+            if (result == null ? published != null : !result.equals(published)) {
+                mData.setValue(result);
+            }
+        }
+    }
+
+    /**
+     * Minimum or maximum, removals are supported by counting how often each value occurs.
+     */
+    private static final class ExtremeAggregate<T, V extends Comparable<? super V>>
+            extends Aggregate<T, V> {
+        private final Selector<T, V> mSelector;
+        private final boolean mIsMin;
+        private final TreeMap<V, Integer> mCounts = new TreeMap<>();
+
+        ExtremeAggregate(Selector<T, V> selector, boolean isMin) {
+            mSelector = Preconditions.checkNotNull(selector);
+            mIsMin = isMin;
+        }
+
+        @Override
+        void add(Entry<T> entry) {
+            V value = mSelector.select(entry.mModel);
+            entry.setValue(mSlot, value);
+            if (value == null) return;
+
+            Integer count = mCounts.get(value);
+            mCounts.put(value, count == null ? 1 : count + 1);
+        }
+
+        @Override
+        void remove(Entry<T> entry) {
+            V value = entry.getValue(mSlot);
+            if (value == null) return;
+
+            int count = mCounts.get(value);
+            if (count == 1) {
+                mCounts.remove(value);
+            } else {
+                mCounts.put(value, count - 1);
+            }
+        }
+
+        @Override
+        V getResult() {
+            if (mCounts.isEmpty()) return null;
+            return mIsMin ? mCounts.firstKey() : mCounts.lastKey();
+        }
+
+        @Override
+        void clear() {
+            mCounts.clear();
+        }
+    }
+
+    private static final class TopAggregate<T> extends Aggregate<T, List<T>> {
+        private final int mCount;
+        private final TreeSet<Entry<T>> mEntries;
+        private List<T> mTop = Collections.emptyList();
+        private boolean mIsDirty;
+
+        TopAggregate(int count, final Comparator<T> comparator) {
+            mCount = count;
+            mEntries = new TreeSet<>(new Comparator<Entry<T>>() {
+                @Override
+                public int compare(Entry<T> a, Entry<T> b) {
+                    int result = comparator.compare(a.mModel, b.mModel);
+                    if (result != 0) { return result; }
+                    return a.mSequence < b.mSequence ? -1 : (a.mSequence == b.mSequence ? 0 : 1);
+                }
+            });
+        }
+
+        @Override
+        void add(Entry<T> entry) {
+            mEntries.add(entry);
+            mIsDirty = true;
+        }
+
+        @Override
+        void remove(Entry<T> entry) {
+            mEntries.remove(entry);
+            mIsDirty = true;
+        }
+
+        @Override
+        List<T> getResult() {
+            if (!mIsDirty) return mTop;
+            mIsDirty = false;
+
+            List<T> top = new ArrayList<>(Math.min(mCount, mEntries.size()));
+            Iterator<Entry<T>> iterator = mEntries.iterator();
+            while (top.size() < mCount && iterator.hasNext()) {
+                top.add(iterator.next().mModel);
+            }
+
+            if (!isSameItems(top, mTop)) { mTop = Collections.unmodifiableList(top); }
+            return mTop;
+        }
+
+        @Override
+        void clear() {
+            mEntries.clear();
+            mIsDirty = true;
+        }
+
+        private static <T> boolean isSameItems(List<T> a, List<T> b) {
+            if (a.size() != b.size()) return false;
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) return false;
+            }
+            return true;
+        }
+    }
+}
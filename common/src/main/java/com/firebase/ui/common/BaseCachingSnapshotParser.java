@@ -39,6 +39,18 @@ public abstract class BaseCachingSnapshotParser<S, T> implements BaseSnapshotPar
         return result;
     }
 
+    @NonNull
+    BaseSnapshotParser<S, T> getParser() {
+        return mParser;
+    }
+
+    /**
+     * @return the number of cached objects
+     */
+    public int size() {
+        return mObjectCache.size();
+    }
+
     /**
      * Clear all data in the cache.
      */
@@ -1,10 +1,22 @@
 package com.firebase.ui.common;
 
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
 
+import java.lang.ref.WeakReference;
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -28,6 +40,54 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      */
     private boolean mHasDataChanged = false;
 
+    /**
+     * Minimum time between two {@link ChangeEventType#CHANGED} events for the same key, or 0 if
+     * changes aren't throttled.
+     */
+    private long mChangeThrottleInterval;
+    private final Map<String, Long> mLastChangeTimes = new HashMap<>();
+    private final Map<String, PendingChange<S>> mPendingChanges = new LinkedHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /**
+     * The fields changed by the {@link ChangeEventType#CHANGED} event being dispatched, see {@link
+     * #getChangedFields()}.
+     */
+    private ChangedFields mDispatchedChangedFields;
+    /** When {@link #mEmitDueChanges} is posted for, or {@link Long#MAX_VALUE} if it isn't. */
+    private long mScheduledEmitTime = Long.MAX_VALUE;
+    private final Runnable mEmitDueChanges = new Runnable() {
+        @Override
+        public void run() {
+            emitPendingChanges(false);
+        }
+    };
+
+    /**
+     * Tree mirroring {@link #getSnapshots()} while snapshot views are enabled, published to other
+     * threads through {@link #mSnapshotView} at the end of every batch.
+     */
+    private boolean mSnapshotViewEnabled;
+    private SnapshotView.Node<S> mSnapshotViewRoot;
+    private volatile SnapshotView<S> mSnapshotView;
+
+    /**
+     * Models displayed in place of a snapshot's own until the event confirming a local write
+     * arrives, by snapshot ID.
+     */
+    private final Map<String, T> mProvisionalModels = new HashMap<>();
+    /**
+     * Rows inserted or snapshots hidden until the events confirming local writes arrive, ordered
+     * by their position among {@link #getSnapshots()}. While there are any, this array's indices
+     * differ from those of the snapshots and events are translated from one to the other.
+     */
+    private final List<ProvisionalRow<T>> mProvisionalRows = new ArrayList<>();
+
+    /**
+     * Listeners removed while the snapshots were retained, which may still be displaying them. They
+     * are reset if the snapshots are released before the array restarts.
+     */
+    private final List<WeakReference<ResetListener>> mRetainingListeners = new ArrayList<>();
+
     /**
      * Create an BaseObservableSnapshotArray with a custom {@link BaseSnapshotParser}.
      *
@@ -35,6 +95,7 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      */
     public BaseObservableSnapshotArray(@NonNull BaseCachingSnapshotParser<S, T> parser) {
         mCachingParser = Preconditions.checkNotNull(parser);
+        MemoryTrimmer.getInstance().register(this);
     }
 
     /**
@@ -49,12 +110,43 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
     @Override
     @NonNull
     public T get(int index) {
-        return mCachingParser.parseSnapshot(getSnapshot(index));
+        if (mProvisionalRows.isEmpty() && mProvisionalModels.isEmpty()) return getModel(index);
+
+        ProvisionalRow<T> row = getProvisionalRow(index);
+        if (row != null) return row.mModel;
+
+        int snapshotIndex = getSnapshotIndex(index);
+        T provisional = mProvisionalModels.get(
+                mCachingParser.getId(getSnapshots().get(snapshotIndex)));
+        return provisional == null ? getModel(snapshotIndex) : provisional;
+    }
+
+    /**
+     * Get the model of a snapshot. Override if models aren't parsed by this array's parser.
+     *
+     * @param index the index of the snapshot in {@link #getSnapshots()}
+     */
+    @NonNull
+    protected T getModel(int index) {
+        S snapshot = getSnapshots().get(index);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
+        T model = mCachingParser.parseSnapshot(snapshot);
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            reportSlowCall(MainThreadWatchdog.OPERATION_PARSE,
+                    duration, mCachingParser.getParser().getClass(), snapshot);
+        }
+        return model;
     }
 
     @Override
     public int size() {
-        return getSnapshots().size();
+        int size = getSnapshots().size();
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            size += mProvisionalRows.get(i).mIsInserted ? 1 : -1;
+        }
+        return size;
     }
 
     /**
@@ -64,17 +156,47 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      * @return the snapshot at the specified position in this list
      * @throws IndexOutOfBoundsException if the index is out of range (<tt>index &lt; 0 || index
      *                                   &gt;= size()</tt>)
+     * @throws IllegalStateException     if the item is a provisional row without a snapshot
+     * @see #hasSnapshot(int)
      */
     @NonNull
     public S getSnapshot(int index) {
-        return getSnapshots().get(index);
+        if (mProvisionalRows.isEmpty()) return getSnapshots().get(index);
+
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        if (getProvisionalRow(index) != null) {
+            throw new IllegalStateException(
+                    "The item at " + index + " is provisional and has no snapshot yet.");
+        }
+        return getSnapshots().get(getSnapshotIndex(index));
+    }
+
+    /**
+     * @return false if the item at the given position is a row added with {@link
+     * #addProvisionalModel(int, String, Object)} whose snapshot hasn't arrived yet
+     */
+    public boolean hasSnapshot(int index) {
+        return mProvisionalRows.isEmpty() || getProvisionalRow(index) == null;
+    }
+
+    /**
+     * @return the ID of the item at the given position, such as its key, whether or not it has a
+     * snapshot yet
+     */
+    @NonNull
+    public String getId(int index) {
+        ProvisionalRow<T> row = mProvisionalRows.isEmpty() ? null : getProvisionalRow(index);
+        return row == null ? mCachingParser.getId(getSnapshot(index)) : row.mId;
     }
 
     /**
      * Attach a {@link BaseChangeEventListener} to this array. The listener will receive one {@link
      * ChangeEventType#ADDED} event for each item that already exists in the array at the time of
-     * attachment, a {@link BaseChangeEventListener#onDataChanged()} event if one has occurred, and
-     * then receive all future child events.
+     * attachment, or a single {@link ResetListener#onReset()} event if it implements {@link
+     * ResetListener}, a {@link BaseChangeEventListener#onDataChanged()} event if one has occurred,
+     * and then receive all future child events.
      * <p>
      * If this is the first listener, {@link #onCreate()} will be called.
      */
@@ -82,13 +204,24 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
     @NonNull
     public L addChangeEventListener(@NonNull L listener) {
         Preconditions.checkNotNull(listener);
+        if (hasInsertedRows()) { checkCanDisplayInsertedRows(listener); }
         boolean wasListening = isListening();
 
         mListeners.add(listener);
+        forgetRetainingListener(listener);
 
         // Catch up new listener to existing state
-        for (int i = 0; i < size(); i++) {
-            listener.onChildChanged(ChangeEventType.ADDED, getSnapshot(i), i, -1);
+        if (listener instanceof ResetListener) {
+            if (!isEmpty()) { ((ResetListener) listener).onReset(); }
+        } else {
+            for (int i = 0; i < size(); i++) {
+                if (hasSnapshot(i)) {
+                    listener.onChildChanged(ChangeEventType.ADDED, getSnapshot(i), i, -1);
+                } else {
+                    ((ProvisionalRowListener) listener)
+                            .onProvisionalRowChanged(ChangeEventType.ADDED, getId(i), i, -1);
+                }
+            }
         }
         if (mHasDataChanged) {
             listener.onDataChanged();
@@ -99,6 +232,17 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         return listener;
     }
 
+    /**
+     * Stop tracking a listener which catches up with the array again, along with collected ones.
+     */
+    private void forgetRetainingListener(L listener) {
+        Iterator<WeakReference<ResetListener>> iterator = mRetainingListeners.iterator();
+        while (iterator.hasNext()) {
+            ResetListener retaining = iterator.next().get();
+            if (retaining == null || retaining == listener) { iterator.remove(); }
+        }
+    }
+
     /**
      * Remove a listener from the array.
      * <p>
@@ -111,6 +255,9 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         boolean wasListening = isListening();
 
         mListeners.remove(listener);
+        if (listener instanceof ResetListener && shouldRetainSnapshots()) {
+            mRetainingListeners.add(new WeakReference<>((ResetListener) listener));
+        }
 
         if (!isListening() && wasListening) { onDestroy(); }
     }
@@ -125,6 +272,429 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         }
     }
 
+    /**
+     * Rate limit {@link ChangeEventType#CHANGED} events: at most one is emitted per key and
+     * interval, carrying the latest snapshot. Structural events flush held back changes first so
+     * listeners always see them in order.
+     * <p>
+     * Useful for lists with rapidly updating fields such as counters or presence.
+     *
+     * @param intervalMillis the minimum time between changes to the same key, or 0 to disable
+     *                       throttling
+     */
+    public void setChangeThrottleInterval(long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Interval must not be negative: " + intervalMillis);
+        }
+
+        mChangeThrottleInterval = intervalMillis;
+        if (intervalMillis == 0) { emitPendingChanges(true); }
+    }
+
+    /**
+     * Keep an immutable {@link SnapshotView} of this array's snapshots up to date for readers on
+     * other threads, such as app widgets or export jobs. Each change costs O(log n) on the main
+     * thread and a new view is published at the end of every batch, so readers never see a
+     * partially applied update.
+     * <p>
+     * Must be called on the main thread.
+     */
+    public void setSnapshotViewEnabled(boolean enabled) {
+        if (enabled == mSnapshotViewEnabled) return;
+
+        mSnapshotViewEnabled = enabled;
+        if (enabled) {
+            mSnapshotViewRoot = SnapshotView.build(getSnapshots());
+            publishSnapshotView();
+        } else {
+            mSnapshotViewRoot = null;
+            mSnapshotView = null;
+        }
+    }
+
+    public boolean isSnapshotViewEnabled() {
+        return mSnapshotViewEnabled;
+    }
+
+    /**
+     * Get the latest published {@link SnapshotView}. Can be called from any thread and never
+     * blocks.
+     *
+     * @throws IllegalStateException if snapshot views aren't enabled
+     * @see #setSnapshotViewEnabled(boolean)
+     */
+    @NonNull
+    public SnapshotView<S> getSnapshotView() {
+        SnapshotView<S> view = mSnapshotView;
+        if (view == null) {
+            throw new IllegalStateException("Call setSnapshotViewEnabled(true) first.");
+        }
+        return view;
+    }
+
+    /**
+     * Get a parser giving the same models as {@link #get(int)} for the snapshots of this array,
+     * for example those of a {@link SnapshotView}. It bypasses this array's cache, so it can be
+     * called from any thread if the parser itself allows it.
+     * <p>
+     * Must be called on the main thread, the result is only valid until the next change.
+     *
+     * @return the parser, or null if some models can't be parsed from snapshots, such as
+     * provisional ones
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @Nullable
+    public BaseSnapshotParser<S, T> getBackgroundParser() {
+        if (!mProvisionalRows.isEmpty() || !mProvisionalModels.isEmpty()) return null;
+        return mCachingParser.getParser();
+    }
+
+    private void publishSnapshotView() {
+        SnapshotView<S> previous = mSnapshotView;
+        long version = previous == null ? 0 : previous.getVersion() + 1;
+        mSnapshotView = new SnapshotView<>(mSnapshotViewRoot, version);
+    }
+
+    /**
+     * Display a model for an item straight away, for example right after writing it, instead of
+     * waiting for the database to raise the local event. Listeners receive a {@link
+     * ChangeEventType#CHANGED} event now and the model is returned by {@link #get(int)} until the
+     * next change to the item's snapshot, which the database raises as soon as it applies the
+     * write locally, the item is removed, or {@link #clearProvisionalModel(String)} is called. The
+     * confirming change carries the previous snapshot, so adapters rebind the row in place from
+     * its {@link ChangedFields} rather than animating it again. Set the model right before writing
+     * so that no change from before the write confirms it.
+     * <p>
+     * If no item has this ID, the model is added as a new row at the end of the array, see {@link
+     * #addProvisionalModel(int, String, Object)}.
+     * <p>
+     * Must be called on the main thread.
+     *
+     * @param id    the ID of the snapshot to update, such as its key
+     * @param model the model expected once the write is applied
+     */
+    public void setProvisionalModel(@NonNull String id, @NonNull T model) {
+        Preconditions.checkNotNull(model);
+
+        ProvisionalRow<T> row = findProvisionalRow(id);
+        if (row != null && row.mIsInserted) {
+            row.mModel = model;
+            dispatchProvisionalRowChanged(ChangeEventType.CHANGED, id, getIndex(row), -1);
+            return;
+        }
+
+        int snapshotIndex = indexOfSnapshot(id);
+        if (snapshotIndex == -1) {
+            addProvisionalModel(size(), id, model);
+            return;
+        }
+
+        mProvisionalModels.put(id, model);
+        // Hidden snapshots aren't displayed, the model shows up if their removal is reverted
+        if (row == null) {
+            dispatchChildChanged(ChangeEventType.CHANGED, getSnapshots().get(snapshotIndex),
+                    getIndex(snapshotIndex), -1, null);
+        }
+    }
+
+    /**
+     * Display a new item straight away, for example right after pushing it, instead of waiting for
+     * the database to raise the local event. The row shifts the items after it and is returned by
+     * {@link #get(int)} until a snapshot with the same ID is added, which then takes its place, or
+     * {@link #clearProvisionalModel(String)} is called. It has no snapshot meanwhile, see {@link
+     * #hasSnapshot(int)}.
+     * <p>
+     * Every listener must implement {@link ProvisionalRowListener} to be told about the row, as
+     * FirebaseUI's adapters do. Must be called on the main thread.
+     *
+     * @param index the position of the row, from 0 to {@link #size()}
+     * @param id    the ID the snapshot will have, such as the key being written to
+     * @param model the model expected once the write is applied
+     * @throws IllegalArgumentException if an item already has this ID
+     * @throws IllegalStateException    if a listener doesn't implement {@link
+     *                                  ProvisionalRowListener}
+     */
+    public void addProvisionalModel(int index, @NonNull String id, @NonNull T model) {
+        Preconditions.checkNotNull(model);
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        if (findProvisionalRow(id) != null || indexOfSnapshot(id) != -1) {
+            throw new IllegalArgumentException("An item already has this ID: " + id);
+        }
+        for (L listener : mListeners) {
+            checkCanDisplayInsertedRows(listener);
+        }
+
+        // Indices of held back changes are only valid until the next structural event
+        emitPendingChanges(true);
+
+        // Find the row's place among the snapshots, before any hidden one at the same position
+        int position = 0;
+        int offset = 0;
+        for (; position < mProvisionalRows.size(); position++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(position);
+            if (index <= row.mSnapshotIndex + offset) break;
+            offset += row.mIsInserted ? 1 : -1;
+        }
+        mProvisionalRows.add(position, new ProvisionalRow<>(id, true, index - offset, model));
+
+        dispatchProvisionalRowChanged(ChangeEventType.ADDED, id, index, -1);
+    }
+
+    /**
+     * Hide an item straight away, for example right after deleting it, instead of waiting for the
+     * database to raise the local event. Listeners receive a {@link ChangeEventType#REMOVED}
+     * event now and the item stays hidden until its snapshot is removed, which isn't notified
+     * again, or {@link #clearProvisionalModel(String)} is called.
+     * <p>
+     * Must be called on the main thread.
+     *
+     * @param id the ID of the item to hide, such as its key
+     */
+    public void removeProvisionally(@NonNull String id) {
+        ProvisionalRow<T> row = findProvisionalRow(id);
+        if (row != null) {
+            // Removing a row which was never written only takes reverting it
+            if (row.mIsInserted) { clearProvisionalModel(id); }
+            return;
+        }
+
+        int snapshotIndex = indexOfSnapshot(id);
+        if (snapshotIndex == -1) return;
+
+        emitPendingChanges(true);
+        int index = getIndex(snapshotIndex);
+        addHiddenRow(new ProvisionalRow<T>(id, false, snapshotIndex, null));
+
+        S snapshot = getSnapshots().get(snapshotIndex);
+        if (isRemovalReportedAtNewIndex()) {
+            dispatchChildChanged(ChangeEventType.REMOVED, snapshot, index, -1, null);
+        } else {
+            dispatchChildChanged(ChangeEventType.REMOVED, snapshot, -1, index, null);
+        }
+    }
+
+    /**
+     * Go back to displaying the item as stored, for example when a write fails: its own model
+     * replaces one set with {@link #setProvisionalModel(String, Object)}, a row added with {@link
+     * #addProvisionalModel(int, String, Object)} is removed and an item hidden with {@link
+     * #removeProvisionally(String)} is shown again. Does nothing if the item isn't provisional.
+     *
+     * @param id the ID the provisional model was set for
+     */
+    public void clearProvisionalModel(@NonNull String id) {
+        boolean isEdited = mProvisionalModels.remove(id) != null;
+        ProvisionalRow<T> row = findProvisionalRow(id);
+        if (row != null) {
+            emitPendingChanges(true);
+            if (row.mIsInserted) {
+                int index = getIndex(row);
+                mProvisionalRows.remove(row);
+                dispatchProvisionalRowChanged(ChangeEventType.REMOVED, id, -1, index);
+            } else {
+                mProvisionalRows.remove(row);
+                dispatchChildChanged(ChangeEventType.ADDED, getSnapshots().get(row.mSnapshotIndex),
+                        getIndex(row.mSnapshotIndex), -1, null);
+            }
+        } else if (isEdited) {
+            int snapshotIndex = indexOfSnapshot(id);
+            if (snapshotIndex == -1) return;
+
+            dispatchChildChanged(ChangeEventType.CHANGED, getSnapshots().get(snapshotIndex),
+                    getIndex(snapshotIndex), -1, null);
+        }
+    }
+
+    /**
+     * @return the index in {@link #getSnapshots()} of the snapshot with the given ID, or -1
+     */
+    private int indexOfSnapshot(String id) {
+        List<S> snapshots = getSnapshots();
+        for (int i = 0; i < snapshots.size(); i++) {
+            if (mCachingParser.getId(snapshots.get(i)).equals(id)) return i;
+        }
+        return -1;
+    }
+
+    @Nullable
+    private ProvisionalRow<T> findProvisionalRow(String id) {
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            if (row.mId.equals(id)) return row;
+        }
+        return null;
+    }
+
+    private boolean hasInsertedRows() {
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            if (mProvisionalRows.get(i).mIsInserted) return true;
+        }
+        return false;
+    }
+
+    private void checkCanDisplayInsertedRows(L listener) {
+        if (!(listener instanceof ProvisionalRowListener)) {
+            throw new IllegalStateException(listener.getClass().getName()
+                    + " can't display provisional rows, it must implement ProvisionalRowListener.");
+        }
+    }
+
+    /**
+     * @return the inserted row at the given index of this array, or null if a snapshot is
+     * displayed there
+     */
+    @Nullable
+    private ProvisionalRow<T> getProvisionalRow(int index) {
+        int offset = 0;
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            int rowIndex = row.mSnapshotIndex + offset;
+            if (index < rowIndex) break;
+            if (row.mIsInserted && index == rowIndex) return row;
+
+            offset += row.mIsInserted ? 1 : -1;
+        }
+        return null;
+    }
+
+    /**
+     * @return the index in {@link #getSnapshots()} of the snapshot displayed at the given index of
+     * this array, which must not be an inserted row
+     */
+    private int getSnapshotIndex(int index) {
+        int offset = 0;
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            if (index < row.mSnapshotIndex + offset) break;
+            offset += row.mIsInserted ? 1 : -1;
+        }
+        return index - offset;
+    }
+
+    /**
+     * @return the index in this array of the snapshot at the given index of {@link
+     * #getSnapshots()}, or where it would be displayed if it's hidden
+     */
+    private int getIndex(int snapshotIndex) {
+        int index = snapshotIndex;
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            if (row.mSnapshotIndex > snapshotIndex) break;
+
+            if (row.mIsInserted) {
+                index++;
+            } else if (row.mSnapshotIndex < snapshotIndex) {
+                index--;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the index in this array of an inserted row
+     */
+    private int getIndex(ProvisionalRow<T> target) {
+        int index = target.mSnapshotIndex;
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            if (row == target) break;
+            index += row.mIsInserted ? 1 : -1;
+        }
+        return index;
+    }
+
+    /**
+     * @return the row hiding the snapshot at the given index of {@link #getSnapshots()}, or null
+     */
+    @Nullable
+    private ProvisionalRow<T> getHiddenRow(int snapshotIndex) {
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            if (row.mSnapshotIndex > snapshotIndex) break;
+            if (!row.mIsInserted && row.mSnapshotIndex == snapshotIndex) return row;
+        }
+        return null;
+    }
+
+    /**
+     * Keeps rows ordered: a hidden snapshot comes after the rows inserted before it.
+     */
+    private void addHiddenRow(ProvisionalRow<T> hidden) {
+        int position = 0;
+        while (position < mProvisionalRows.size()
+                && mProvisionalRows.get(position).mSnapshotIndex <= hidden.mSnapshotIndex) {
+            position++;
+        }
+        mProvisionalRows.add(position, hidden);
+    }
+
+    /**
+     * Follow a snapshot being added to or removed from {@link #getSnapshots()} at the given index.
+     * Rows inserted before that snapshot stay before it.
+     */
+    private void shiftProvisionalRows(int snapshotIndex, int delta) {
+        for (int i = 0; i < mProvisionalRows.size(); i++) {
+            ProvisionalRow<T> row = mProvisionalRows.get(i);
+            if (row.mSnapshotIndex > snapshotIndex
+                    || !row.mIsInserted && row.mSnapshotIndex == snapshotIndex) {
+                row.mSnapshotIndex += delta;
+            }
+        }
+    }
+
+    private void dispatchProvisionalRowChanged(ChangeEventType type,
+                                               String id,
+                                               int newIndex,
+                                               int oldIndex) {
+        for (L listener : mListeners) {
+            ((ProvisionalRowListener) listener)
+                    .onProvisionalRowChanged(type, id, newIndex, oldIndex);
+        }
+    }
+
+    /**
+     * Get the key identifying a snapshot across updates, used to throttle changes.
+     *
+     * @return the snapshot's key, or null if changes to it can't be throttled
+     */
+    @Nullable
+    protected String getSnapshotKey(@NonNull S snapshot) {
+        return null;
+    }
+
+    /**
+     * Get the location of a snapshot, reported with slow calls by {@link MainThreadWatchdog}.
+     *
+     * @return the snapshot's path, or null if unknown
+     */
+    @Nullable
+    protected String getSnapshotPath(@NonNull S snapshot) {
+        return null;
+    }
+
+    /**
+     * Report a call which went over the {@link MainThreadWatchdog}'s budget for the item at the
+     * given index, with its path and key.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void reportSlowCall(@NonNull String operation,
+                               long durationNanos,
+                               @NonNull Class<?> callee,
+                               int index) {
+        if (hasSnapshot(index)) {
+            reportSlowCall(operation, durationNanos, callee, getSnapshot(index));
+        } else {
+            MainThreadWatchdog.getInstance().reportSlowCall(
+                    operation, durationNanos, callee, null, getId(index));
+        }
+    }
+
+    private void reportSlowCall(String operation, long durationNanos, Class<?> callee, S snapshot) {
+        MainThreadWatchdog.getInstance().reportSlowCall(operation, durationNanos, callee,
+                getSnapshotPath(snapshot), mCachingParser.getId(snapshot));
+    }
+
     /**
      * Called when the {@link BaseObservableSnapshotArray} is active and should start listening to
      * the Firebase database.
@@ -136,13 +706,150 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
      * Called when the {@link BaseObservableSnapshotArray} is inactive and should stop listening to
      * the Firebase database.
      * <p>
-     * All data and saved state should also be cleared here.
+     * All data and saved state should also be cleared here, unless {@link
+     * #shouldRetainSnapshots()} is true.
      */
     @CallSuper
     protected void onDestroy() {
+        cancelEmit();
+        mPendingChanges.clear();
+        mLastChangeTimes.clear();
+        if (!shouldRetainSnapshots()) { clearSnapshots(); }
+    }
+
+    private void clearSnapshots() {
         mHasDataChanged = false;
         getSnapshots().clear();
         mCachingParser.clear();
+        // Retained provisional models are confirmed by the first batch after restarting
+        mProvisionalModels.clear();
+        mProvisionalRows.clear();
+
+        if (mSnapshotViewEnabled) {
+            mSnapshotViewRoot = null;
+            publishSnapshotView();
+        }
+    }
+
+    /**
+     * @return true if {@link #onDestroy()} should keep the snapshots, so that they are still
+     * displayed when the array restarts and the first batch it loads can be passed to {@link
+     * #reconcile(List)} instead of being added again
+     */
+    protected boolean shouldRetainSnapshots() {
+        return false;
+    }
+
+    /**
+     * Turns the current snapshots into the given ones, notifying listeners of the fewest child
+     * events needed: removals, moves of snapshots out of order, additions, and changes to
+     * snapshots whose data differs.
+     *
+     * @param snapshots the complete and ordered result of a fresh load
+     */
+    protected final void reconcile(@NonNull List<S> snapshots) {
+        reconcile(0, getSnapshots().size(), snapshots);
+    }
+
+    /**
+     * Like {@link #reconcile(List)}, for arrays which reload part of their results: only the
+     * snapshots from {@code start} to {@code end} are turned into the given ones.
+     *
+     * @param start     the index of the first snapshot to replace
+     * @param end       the index after the last snapshot to replace
+     * @param snapshots the ordered result of a fresh load of that range
+     */
+    protected final void reconcile(final int start, int end, @NonNull List<S> snapshots) {
+        SnapshotReconciler.reconcile(getSnapshots().subList(start, end), snapshots,
+                new SnapshotReconciler.Callback<S>() {
+                    @NonNull
+                    @Override
+                    public String getKey(@NonNull S snapshot) {
+                        String key = getSnapshotKey(snapshot);
+                        if (key == null) {
+                            throw new IllegalStateException("Snapshots must have keys.");
+                        }
+                        return key;
+                    }
+
+                    @Nullable
+                    @Override
+                    public Object getData(@NonNull S snapshot) {
+                        return getFieldData(snapshot);
+                    }
+
+                    @Override
+                    public void onChildChanged(@NonNull ChangeEventType type,
+                                               @NonNull S snapshot,
+                                               int newIndex,
+                                               int oldIndex,
+                                               @Nullable S previousSnapshot) {
+                        if (type == ChangeEventType.REMOVED) {
+                            notifyOnChildRemoved(snapshot, start + oldIndex);
+                        } else {
+                            notifyOnChildChanged(type, snapshot, start + newIndex,
+                                    oldIndex == -1 ? -1 : start + oldIndex, previousSnapshot);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Notify listeners that the snapshot at the given index was removed, passing the index as
+     * described by {@link #isRemovalReportedAtNewIndex()}.
+     */
+    protected void notifyOnChildRemoved(@NonNull S snapshot, int index) {
+        if (isRemovalReportedAtNewIndex()) {
+            notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
+        } else {
+            notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, -1, index);
+        }
+    }
+
+    /**
+     * @return true if listeners read the index of removed snapshots from the new index, false (the
+     * default) if from the old index
+     */
+    protected boolean isRemovalReportedAtNewIndex() {
+        return false;
+    }
+
+    /**
+     * Called by {@link MemoryTrimmer} when the system asks the app to release memory, whether or
+     * not the array is listening. Override to release more data that can be restored and report
+     * each step with {@link #notifyOnTrimmed(int, String, int)}.
+     *
+     * @param level the level passed to {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    @CallSuper
+    protected void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            int count = mCachingParser.size();
+            mCachingParser.clear();
+            notifyOnTrimmed(level, MemoryTrimmer.STEP_PARSER_CACHE, count);
+        }
+
+        // Retained snapshots only save a reload, give them up once the app is at risk of being
+        // killed
+        if (!isListening() && !getSnapshots().isEmpty()
+                && (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)) {
+            int count = getSnapshots().size();
+            clearSnapshots();
+            notifyOnTrimmed(level, MemoryTrimmer.STEP_RETAINED_SNAPSHOTS, count);
+
+            // Adapters displaying the retained snapshots would otherwise see the array empty out
+            // without a notification
+            for (WeakReference<ResetListener> reference : mRetainingListeners) {
+                ResetListener listener = reference.get();
+                if (listener != null) { listener.onReset(); }
+            }
+            mRetainingListeners.clear();
+        }
+    }
+
+    protected final void notifyOnTrimmed(int level, @NonNull String step, int count) {
+        MemoryTrimmer.getInstance().dispatchTrimmed(level, this, step, count);
     }
 
     /**
@@ -160,21 +867,271 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
         return mListeners.contains(listener);
     }
 
+    /**
+     * Get the top-level fields changed by the {@link ChangeEventType#CHANGED} event listeners are
+     * being notified of, for example to pass them as a payload from {@link
+     * BaseChangeEventListener#onChildChanged(ChangeEventType, Object, int, int)}. The versions are
+     * only compared once the result is first read.
+     *
+     * @return the changed fields, or null outside of the dispatch of a change or if the previous
+     * version of the snapshot is unknown
+     */
+    @Nullable
+    public ChangedFields getChangedFields() {
+        return mDispatchedChangedFields;
+    }
+
+    /**
+     * Get the data of a snapshot to compare when computing {@link ChangedFields}.
+     *
+     * @return the snapshot's data, or null if field level changes aren't supported
+     */
+    @Nullable
+    protected Object getFieldData(@NonNull S snapshot) {
+        return null;
+    }
+
     protected final void notifyOnChildChanged(ChangeEventType type,
                                               S snapshot,
                                               int newIndex,
                                               int oldIndex) {
+        notifyOnChildChanged(type, snapshot, newIndex, oldIndex, null);
+    }
+
+    /**
+     * @param previousSnapshot for {@link ChangeEventType#CHANGED} events, the snapshot being
+     *                         replaced so listeners can be told what changed, see {@link
+     *                         #getChangedFields()}
+     */
+    protected final void notifyOnChildChanged(ChangeEventType type,
+                                              S snapshot,
+                                              int newIndex,
+                                              int oldIndex,
+                                              @Nullable S previousSnapshot) {
+        if (mSnapshotViewEnabled) {
+            mSnapshotViewRoot = SnapshotView.apply(
+                    mSnapshotViewRoot, type, snapshot, newIndex, oldIndex);
+        }
+
         if (type == ChangeEventType.CHANGED || type == ChangeEventType.REMOVED) {
             mCachingParser.invalidate(snapshot);
         }
 
-        for (L listener : mListeners) {
-            listener.onChildChanged(type, snapshot, newIndex, oldIndex);
+        if (mProvisionalRows.isEmpty() && mProvisionalModels.isEmpty()) {
+            emitChildChanged(type, snapshot, newIndex, oldIndex, previousSnapshot);
+        } else {
+            notifyThroughProvisionalRows(type, snapshot, newIndex, oldIndex, previousSnapshot);
+        }
+    }
+
+    /**
+     * Confirms the provisional models the event applies, keeps the provisional rows in place, and
+     * passes the event on with indices of this array rather than of {@link #getSnapshots()}.
+     */
+    private void notifyThroughProvisionalRows(ChangeEventType type,
+                                              S snapshot,
+                                              int newIndex,
+                                              int oldIndex,
+                                              @Nullable S previousSnapshot) {
+        String id = mCachingParser.getId(snapshot);
+        switch (type) {
+            case ADDED: {
+                ProvisionalRow<T> inserted = findProvisionalRow(id);
+                int insertedIndex = inserted == null ? -1 : getIndex(inserted);
+                if (inserted != null) { mProvisionalRows.remove(inserted); }
+                shiftProvisionalRows(newIndex, 1);
+
+                int index = getIndex(newIndex);
+                if (inserted == null) {
+                    emitChildChanged(type, snapshot, index, -1, null);
+                } else {
+                    // The write was confirmed, its row now displays the snapshot
+                    if (index != insertedIndex) {
+                        emitChildChanged(
+                                ChangeEventType.MOVED, snapshot, index, insertedIndex, null);
+                    }
+                    emitChildChanged(ChangeEventType.CHANGED, snapshot, index, -1, null);
+                }
+                break;
+            }
+            case CHANGED: {
+                // The SDKs raise the write's local event first, models needn't implement equals
+                mProvisionalModels.remove(id);
+
+                if (getHiddenRow(newIndex) == null) {
+                    emitChildChanged(
+                            type, snapshot, getIndex(newIndex), oldIndex, previousSnapshot);
+                }
+                break;
+            }
+            case REMOVED: {
+                boolean isAtNewIndex = newIndex >= 0;
+                int snapshotIndex = isAtNewIndex ? newIndex : oldIndex;
+                int index = getIndex(snapshotIndex);
+                mProvisionalModels.remove(id);
+                ProvisionalRow<T> hidden = getHiddenRow(snapshotIndex);
+                if (hidden != null) { mProvisionalRows.remove(hidden); }
+                shiftProvisionalRows(snapshotIndex, -1);
+
+                // A hidden snapshot's removal was already notified
+                if (hidden == null) {
+                    emitChildChanged(type, snapshot,
+                            isAtNewIndex ? index : -1, isAtNewIndex ? -1 : index, null);
+                }
+                break;
+            }
+            case MOVED: {
+                int index = getIndex(oldIndex);
+                ProvisionalRow<T> hidden = getHiddenRow(oldIndex);
+                if (hidden != null) { mProvisionalRows.remove(hidden); }
+                shiftProvisionalRows(oldIndex, -1);
+                shiftProvisionalRows(newIndex, 1);
+
+                if (hidden != null) {
+                    hidden.mSnapshotIndex = newIndex;
+                    addHiddenRow(hidden);
+                } else if (getIndex(newIndex) != index) {
+                    emitChildChanged(type, snapshot, getIndex(newIndex), index, null);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    private void emitChildChanged(ChangeEventType type,
+                                  S snapshot,
+                                  int newIndex,
+                                  int oldIndex,
+                                  @Nullable S previousSnapshot) {
+        if (mChangeThrottleInterval > 0 || !mPendingChanges.isEmpty()) {
+            if (type == ChangeEventType.CHANGED) {
+                if (throttleChange(snapshot, newIndex, previousSnapshot)) return;
+            } else {
+                // Indices of held back changes are only valid until the next structural event
+                emitPendingChanges(true);
+                if (type == ChangeEventType.REMOVED) {
+                    mLastChangeTimes.remove(getSnapshotKey(snapshot));
+                }
+            }
+        }
+
+        dispatchChildChanged(type, snapshot, newIndex, oldIndex, previousSnapshot);
+    }
+
+    /**
+     * @return true if the change was held back
+     */
+    private boolean throttleChange(S snapshot, int index, @Nullable S previousSnapshot) {
+        String key = getSnapshotKey(snapshot);
+        if (key == null) return false;
+
+        PendingChange<S> pending = mPendingChanges.get(key);
+        if (pending != null) {
+            // Keep the oldest previous snapshot so changed fields cover all merged updates
+            pending.mSnapshot = snapshot;
+            return true;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        Long lastChangeTime = mLastChangeTimes.get(key);
+        if (lastChangeTime == null || now - lastChangeTime >= mChangeThrottleInterval) {
+            mLastChangeTimes.put(key, now);
+            return false;
+        }
+
+        long dueTime = lastChangeTime + mChangeThrottleInterval;
+        mPendingChanges.put(key, new PendingChange<>(snapshot, previousSnapshot, index, dueTime));
+        scheduleEmit(dueTime);
+        return true;
+    }
+
+    private void emitPendingChanges(boolean all) {
+        cancelEmit();
+        if (mPendingChanges.isEmpty()) return;
+
+        long now = SystemClock.uptimeMillis();
+        long nextDueTime = Long.MAX_VALUE;
+        Iterator<Map.Entry<String, PendingChange<S>>> iterator =
+                mPendingChanges.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingChange<S>> entry = iterator.next();
+            PendingChange<S> pending = entry.getValue();
+            if (all || pending.mDueTime <= now) {
+                iterator.remove();
+                mLastChangeTimes.put(entry.getKey(), now);
+                dispatchChildChanged(ChangeEventType.CHANGED, pending.mSnapshot,
+                        pending.mIndex, -1, pending.mPreviousSnapshot);
+            } else {
+                nextDueTime = Math.min(nextDueTime, pending.mDueTime);
+            }
+        }
+
+        if (!mPendingChanges.isEmpty()) { scheduleEmit(nextDueTime); }
+    }
+
+    /**
+     * Makes sure held back changes are emitted by the given time. Keys are throttled from their
+     * own last change, so a key held back later may be due before those already pending.
+     */
+    private void scheduleEmit(long time) {
+        if (time >= mScheduledEmitTime) return;
+
+        mHandler.removeCallbacks(mEmitDueChanges);
+        mHandler.postAtTime(mEmitDueChanges, time);
+        mScheduledEmitTime = time;
+    }
+
+    private void cancelEmit() {
+        mHandler.removeCallbacks(mEmitDueChanges);
+        mScheduledEmitTime = Long.MAX_VALUE;
+    }
+
+    private void dispatchChildChanged(ChangeEventType type,
+                                      final S snapshot,
+                                      int newIndex,
+                                      int oldIndex,
+                                      @Nullable final S previousSnapshot) {
+        // Listeners may cause other events to be dispatched while they are notified of this one
+        ChangedFields outerChangedFields = mDispatchedChangedFields;
+        mDispatchedChangedFields = null;
+        if (type == ChangeEventType.CHANGED && previousSnapshot != null) {
+            mDispatchedChangedFields = ChangedFields.lazy(new ChangedFields.Source() {
+                @Nullable
+                @Override
+                public Object getPreviousData() {
+                    return getFieldData(previousSnapshot);
+                }
+
+                @Nullable
+                @Override
+                public Object getCurrentData() {
+                    return getFieldData(snapshot);
+                }
+            });
+        }
+
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        try {
+            for (L listener : mListeners) {
+                long start = watchdog.startTiming();
+                listener.onChildChanged(type, snapshot, newIndex, oldIndex);
+
+                long duration = watchdog.getSlowDuration(start);
+                if (duration > 0) {
+                    reportSlowCall(MainThreadWatchdog.OPERATION_DISPATCH,
+                            duration, listener.getClass(), snapshot);
+                }
+            }
+        } finally {
+            mDispatchedChangedFields = outerChangedFields;
         }
     }
 
     protected final void notifyOnDataChanged() {
         mHasDataChanged = true;
+        if (mSnapshotViewEnabled) { publishSnapshotView(); }
 
         for (L listener : mListeners) {
             listener.onDataChanged();
@@ -186,4 +1143,37 @@ public abstract class BaseObservableSnapshotArray<S, E, L extends BaseChangeEven
             listener.onError(e);
         }
     }
+
+    private static final class ProvisionalRow<T> {
+        private final String mId;
+        /** True for a row without a snapshot, false for a hidden snapshot. */
+        private final boolean mIsInserted;
+        /**
+         * The index in {@link #getSnapshots()} of the hidden snapshot, or of the snapshot displayed
+         * after the inserted row.
+         */
+        private int mSnapshotIndex;
+        private T mModel;
+
+        ProvisionalRow(String id, boolean isInserted, int snapshotIndex, @Nullable T model) {
+            mId = id;
+            mIsInserted = isInserted;
+            mSnapshotIndex = snapshotIndex;
+            mModel = model;
+        }
+    }
+
+    private static final class PendingChange<S> {
+        private final S mPreviousSnapshot;
+        private final int mIndex;
+        private final long mDueTime;
+        private S mSnapshot;
+
+        PendingChange(S snapshot, S previousSnapshot, int index, long dueTime) {
+            mSnapshot = snapshot;
+            mPreviousSnapshot = previousSnapshot;
+            mIndex = index;
+            mDueTime = dueTime;
+        }
+    }
 }
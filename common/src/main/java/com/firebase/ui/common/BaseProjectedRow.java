@@ -0,0 +1,91 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * A lightweight row model holding only the fields a {@link BaseProjectionSnapshotParser} was asked
+ * to read. The full model can still be parsed on demand, for example when the item is opened.
+ *
+ * @param <S> the snapshot class.
+ */
+public abstract class BaseProjectedRow<S> {
+    private final S mSnapshot;
+    private final Map<String, Integer> mFieldIndices;
+    private final Object[] mValues;
+
+    private BaseSnapshotParser<S, ?> mModelParser;
+    private Object mModel;
+
+    /**
+     * @param fieldIndices the position of each projected field in {@code values}, shared by all
+     *                     rows created by the same parser
+     */
+    protected BaseProjectedRow(@NonNull S snapshot,
+                               @NonNull Map<String, Integer> fieldIndices,
+                               @NonNull Object[] values) {
+        mSnapshot = snapshot;
+        mFieldIndices = fieldIndices;
+        mValues = values;
+    }
+
+    /**
+     * @return the snapshot this row was projected from
+     */
+    @NonNull
+    public S getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Get the raw value of a projected field.
+     *
+     * @throws IllegalArgumentException if the field wasn't part of the projection
+     */
+    @Nullable
+    public Object get(@NonNull String field) {
+        Integer index = mFieldIndices.get(field);
+        if (index == null) {
+            throw new IllegalArgumentException("Field '" + field + "' is not projected.");
+        }
+        return mValues[index];
+    }
+
+    @Nullable
+    public String getString(@NonNull String field) {
+        return (String) get(field);
+    }
+
+    @Nullable
+    public Boolean getBoolean(@NonNull String field) {
+        return (Boolean) get(field);
+    }
+
+    @Nullable
+    public Long getLong(@NonNull String field) {
+        Number value = (Number) get(field);
+        return value == null ? null : value.longValue();
+    }
+
+    @Nullable
+    public Double getDouble(@NonNull String field) {
+        Number value = (Number) get(field);
+        return value == null ? null : value.doubleValue();
+    }
+
+    /**
+     * Parse the full model from this row's snapshot. The result is kept so repeated calls with the
+     * same parser are free.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public <T> T parse(@NonNull BaseSnapshotParser<S, T> parser) {
+        if (mModelParser != parser) {
+            mModel = parser.parseSnapshot(mSnapshot);
+            mModelParser = parser;
+        }
+        return (T) mModel;
+    }
+}
@@ -0,0 +1,57 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implementation of {@link BaseSnapshotParser} that only reads a declared set of fields into a
+ * {@link BaseProjectedRow} instead of materializing the full model. Use it when rows only display
+ * a few fields of large documents.
+ *
+ * @param <S> the snapshot class.
+ * @param <R> the row class.
+ */
+public abstract class BaseProjectionSnapshotParser<S, R extends BaseProjectedRow<S>>
+        implements BaseSnapshotParser<S, R> {
+
+    private final String[] mFields;
+    private final Map<String, Integer> mFieldIndices;
+
+    /**
+     * @param fields the fields to read from each snapshot
+     */
+    public BaseProjectionSnapshotParser(@NonNull String... fields) {
+        mFields = fields.clone();
+
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < mFields.length; i++) {
+            indices.put(Preconditions.checkNotNull(mFields[i]), i);
+        }
+        mFieldIndices = Collections.unmodifiableMap(indices);
+    }
+
+    @NonNull
+    @Override
+    public R parseSnapshot(@NonNull S snapshot) {
+        Object[] values = new Object[mFields.length];
+        for (int i = 0; i < mFields.length; i++) {
+            values[i] = getValue(snapshot, mFields[i]);
+        }
+        return createRow(snapshot, mFieldIndices, values);
+    }
+
+    /**
+     * Read a single field from the snapshot without touching the rest of its data.
+     */
+    @Nullable
+    protected abstract Object getValue(@NonNull S snapshot, @NonNull String field);
+
+    @NonNull
+    protected abstract R createRow(@NonNull S snapshot,
+                                   @NonNull Map<String, Integer> fieldIndices,
+                                   @NonNull Object[] values);
+}
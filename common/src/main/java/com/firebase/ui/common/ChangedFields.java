@@ -0,0 +1,160 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The top-level fields that differ between two versions of the same snapshot. Recycler adapters
+ * pass it as the payload of {@code notifyItemChanged} so rows can be partially rebound.
+ * <p>
+ * Instances obtained from {@link BaseObservableSnapshotArray#getChangedFields()} only compare the
+ * two versions once they are first read, so changes which are never partially rebound don't pay
+ * for the diff.
+ */
+public final class ChangedFields {
+    /**
+     * Reads the data of both versions of a snapshot.
+     */
+    interface Source {
+        @Nullable
+        Object getPreviousData();
+
+        @Nullable
+        Object getCurrentData();
+    }
+
+    private Source mSource;
+    /** The changed fields, or null if the versions can't be compared field by field. */
+    private Set<String> mFields;
+
+    private ChangedFields(@NonNull Set<String> fields) {
+        mFields = Collections.unmodifiableSet(fields);
+    }
+
+    private ChangedFields(@NonNull Source source) {
+        mSource = source;
+    }
+
+    /**
+     * Compare the top-level entries of two snapshots' data.
+     *
+     * @return the changed fields or null if either side isn't a map of fields
+     */
+    @Nullable
+    public static ChangedFields diff(@Nullable Object previous, @Nullable Object current) {
+        Set<String> fields = diffFields(previous, current);
+        return fields == null ? null : new ChangedFields(fields);
+    }
+
+    /**
+     * @return changed fields which will be computed from the source when first read
+     */
+    @NonNull
+    static ChangedFields lazy(@NonNull Source source) {
+        return new ChangedFields(source);
+    }
+
+    @Nullable
+    private static Set<String> diffFields(@Nullable Object previous, @Nullable Object current) {
+        if (!(previous instanceof Map) || !(current instanceof Map)) { return null; }
+        Map<?, ?> previousData = (Map<?, ?>) previous;
+        Map<?, ?> currentData = (Map<?, ?>) current;
+
+        Set<String> fields = new HashSet<>();
+        for (Map.Entry<?, ?> entry : currentData.entrySet()) {
+            Object key = entry.getKey();
+            if (!previousData.containsKey(key) || !equals(previousData.get(key), entry.getValue())) {
+                fields.add(String.valueOf(key));
+            }
+        }
+        for (Object key : previousData.keySet()) {
+            if (!currentData.containsKey(key)) { fields.add(String.valueOf(key)); }
+        }
+        return fields;
+    }
+
+    /**
+     * Combine the payloads RecyclerView collected for a row since it was last bound.
+     *
+     * @return all changed fields or null if the payloads don't only contain {@link
+     * ChangedFields}, in which case the whole row should be rebound
+     */
+    @Nullable
+    public static ChangedFields merge(@NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) { return null; }
+        if (payloads.size() == 1 && payloads.get(0) instanceof ChangedFields) {
+            ChangedFields changed = (ChangedFields) payloads.get(0);
+            return changed.getFields() == null ? null : changed;
+        }
+
+        Set<String> fields = new HashSet<>();
+        for (Object payload : payloads) {
+            if (!(payload instanceof ChangedFields)) { return null; }
+            Set<String> changed = ((ChangedFields) payload).getFields();
+            if (changed == null) { return null; }
+            fields.addAll(changed);
+        }
+        return new ChangedFields(fields);
+    }
+
+    private static boolean equals(@Nullable Object a, @Nullable Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return true if the given top-level field was added, removed, or modified, or if the
+     * versions can't be compared field by field
+     */
+    public boolean contains(@NonNull String field) {
+        Set<String> fields = getFields();
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * @return the changed fields, or null if the versions can't be compared field by field, for
+     * example because one of them isn't a map
+     */
+    @Nullable
+    public Set<String> getFields() {
+        if (mSource != null) {
+            Set<String> fields = diffFields(mSource.getPreviousData(), mSource.getCurrentData());
+            mFields = fields == null ? null : Collections.unmodifiableSet(fields);
+            mSource = null;
+        }
+        return mFields;
+    }
+
+    /**
+     * @return true if the versions are known to hold the same fields
+     */
+    public boolean isEmpty() {
+        Set<String> fields = getFields();
+        return fields != null && fields.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Set<String> fields = getFields();
+        Set<String> otherFields = ((ChangedFields) o).getFields();
+        return fields == null ? otherFields == null : fields.equals(otherFields);
+    }
+
+    @Override
+    public int hashCode() {
+        Set<String> fields = getFields();
+        return fields == null ? 0 : fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangedFields{" + getFields() + '}';
+    }
+}
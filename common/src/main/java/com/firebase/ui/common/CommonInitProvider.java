@@ -0,0 +1,59 @@
+package com.firebase.ui.common;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.RestrictTo;
+
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class CommonInitProvider extends ContentProvider {
+    @Override
+    public void attachInfo(Context context, ProviderInfo info) {
+        Preconditions.checkNotNull(info);
+        if ("com.firebase.ui.common.firebaseuicommoninitprovider".equals(info.authority)) {
+            throw new IllegalStateException("Incorrect provider authority in manifest. Most" +
+                    " likely due to a missing applicationId variable in application's build.gradle.");
+        } else {
+            super.attachInfo(context, info);
+        }
+    }
+
+    @Override
+    public boolean onCreate() {
+        getContext().getApplicationContext()
+                .registerComponentCallbacks(MemoryTrimmer.getInstance());
+        return false;
+    }
+
+    @Override
+    public Cursor query(Uri uri,
+                        String[] projection,
+                        String selection,
+                        String[] selectionArgs,
+                        String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+}
@@ -0,0 +1,244 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Incrementally maintains a filtered and/or sorted view of a {@link BaseObservableSnapshotArray}.
+ * Each source event is applied in logarithmic time, with a binary search of the view or by counting
+ * the visible items before it in the source when there is no comparator, and translated into
+ * precise events for the view.
+ *
+ * @param <S> the snapshot class.
+ * @param <T> the model object class.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class DerivedSnapshotIndex<S, T> {
+    /**
+     * Receives the view's change events.
+     */
+    public interface Callback<S> {
+        /**
+         * Removals are reported with a {@code newIndex} of -1 and the view index as {@code
+         * oldIndex}.
+         */
+        void onChildChanged(@NonNull ChangeEventType type,
+                            @NonNull S snapshot,
+                            int newIndex,
+                            int oldIndex,
+                            @Nullable S previousSnapshot);
+    }
+
+    private final BaseObservableSnapshotArray<S, ?, ?, T> mSource;
+    private final Predicate<T> mPredicate;
+    private final Comparator<T> mComparator;
+    private final Callback<S> mCallback;
+
+    /** Source index to entry, visible if it passes the predicate. */
+    private final VisibilityList<Entry<S, T>> mSourceEntries = new VisibilityList<>();
+    /** View index to entry, the order is defined by {@link #compare(Entry, Entry)}. */
+    private final List<Entry<S, T>> mView = new ArrayList<>();
+    /** Same order as {@link #mView}. */
+    private final List<S> mSnapshots = new ArrayList<>();
+
+    private long mNextSequence;
+
+    public DerivedSnapshotIndex(@NonNull BaseObservableSnapshotArray<S, ?, ?, T> source,
+                                @Nullable Predicate<T> predicate,
+                                @Nullable Comparator<T> comparator,
+                                @NonNull Callback<S> callback) {
+        mSource = Preconditions.checkNotNull(source);
+        mPredicate = predicate;
+        mComparator = comparator;
+        mCallback = Preconditions.checkNotNull(callback);
+    }
+
+    /**
+     * @return the view's snapshots
+     */
+    @NonNull
+    public List<S> getSnapshots() {
+        return mSnapshots;
+    }
+
+    @NonNull
+    public T getModel(int index) {
+        return mView.get(index).mModel;
+    }
+
+    public void clear() {
+        mSourceEntries.clear();
+        mView.clear();
+        mSnapshots.clear();
+    }
+
+    /**
+     * Apply a change event received from the source array.
+     */
+    public void onSourceChanged(@NonNull ChangeEventType type,
+                                @NonNull S snapshot,
+                                int newIndex,
+                                int oldIndex) {
+        switch (type) {
+            case ADDED:
+                onAdded(snapshot, newIndex);
+                break;
+            case CHANGED:
+                onChanged(snapshot, newIndex);
+                break;
+            case REMOVED:
+                // Arrays disagree on which index to report for removals
+                onRemoved(oldIndex == -1 ? newIndex : oldIndex);
+                break;
+            case MOVED:
+                onMoved(newIndex, oldIndex);
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    private void onAdded(S snapshot, int sourceIndex) {
+        Entry<S, T> entry = new Entry<>(snapshot, mSource.get(sourceIndex), mNextSequence++);
+        boolean isVisible = test(entry.mModel);
+        mSourceEntries.add(sourceIndex, entry, isVisible);
+
+        if (isVisible) {
+            int index = insert(entry, sourceIndex);
+            mCallback.onChildChanged(ChangeEventType.ADDED, snapshot, index, -1, null);
+        }
+    }
+
+    private void onChanged(S snapshot, int sourceIndex) {
+        Entry<S, T> entry = mSourceEntries.get(sourceIndex);
+        S previous = entry.mSnapshot;
+
+        // Must happen before updating the model since the view is ordered by it
+        int oldIndex = -1;
+        if (mSourceEntries.isVisible(sourceIndex)) {
+            oldIndex = indexOf(entry, sourceIndex);
+            mView.remove(oldIndex);
+            mSnapshots.remove(oldIndex);
+        }
+
+        entry.mSnapshot = snapshot;
+        entry.mModel = mSource.get(sourceIndex);
+        boolean isVisible = test(entry.mModel);
+        mSourceEntries.setVisible(sourceIndex, isVisible);
+
+        if (isVisible) {
+            int index = insert(entry, sourceIndex);
+            if (oldIndex == -1) {
+                mCallback.onChildChanged(ChangeEventType.ADDED, snapshot, index, -1, null);
+            } else {
+                if (index != oldIndex) {
+                    mCallback.onChildChanged(ChangeEventType.MOVED, snapshot, index, oldIndex, null);
+                }
+                mCallback.onChildChanged(ChangeEventType.CHANGED, snapshot, index, index, previous);
+            }
+        } else if (oldIndex != -1) {
+            mCallback.onChildChanged(ChangeEventType.REMOVED, snapshot, -1, oldIndex, null);
+        }
+    }
+
+    private void onRemoved(int sourceIndex) {
+        Entry<S, T> entry = mSourceEntries.get(sourceIndex);
+        if (mSourceEntries.isVisible(sourceIndex)) {
+            int index = indexOf(entry, sourceIndex);
+            mView.remove(index);
+            mSnapshots.remove(index);
+            mCallback.onChildChanged(ChangeEventType.REMOVED, entry.mSnapshot, -1, index, null);
+        }
+        mSourceEntries.remove(sourceIndex);
+    }
+
+    private void onMoved(int newSourceIndex, int oldSourceIndex) {
+        Entry<S, T> entry = mSourceEntries.get(oldSourceIndex);
+        boolean isVisible = mSourceEntries.isVisible(oldSourceIndex);
+        if (mComparator != null || !isVisible) {
+            // The view's order doesn't depend on the source's
+            mSourceEntries.remove(oldSourceIndex);
+            mSourceEntries.add(newSourceIndex, entry, isVisible);
+            return;
+        }
+
+        int oldIndex = indexOf(entry, oldSourceIndex);
+        mView.remove(oldIndex);
+        mSnapshots.remove(oldIndex);
+        mSourceEntries.remove(oldSourceIndex);
+        mSourceEntries.add(newSourceIndex, entry, true);
+
+        int index = insert(entry, newSourceIndex);
+        if (index != oldIndex) {
+            mCallback.onChildChanged(ChangeEventType.MOVED, entry.mSnapshot, index, oldIndex, null);
+        }
+    }
+
+    private boolean test(T model) {
+        return mPredicate == null || mPredicate.test(model);
+    }
+
+    /**
+     * Add a visible entry to the view.
+     *
+     * @return its view index
+     */
+    private int insert(Entry<S, T> entry, int sourceIndex) {
+        int index = mComparator == null
+                ? mSourceEntries.countVisibleBefore(sourceIndex) : search(entry);
+        mView.add(index, entry);
+        mSnapshots.add(index, entry.mSnapshot);
+        return index;
+    }
+
+    /**
+     * @return the view index of a visible entry
+     */
+    private int indexOf(Entry<S, T> entry, int sourceIndex) {
+        // Entries are unique under compare() so the insertion point is the entry itself
+        return mComparator == null
+                ? mSourceEntries.countVisibleBefore(sourceIndex) : search(entry);
+    }
+
+    /**
+     * @return the first view index whose entry isn't ordered before the given one
+     */
+    private int search(Entry<S, T> entry) {
+        int low = 0;
+        int high = mView.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mView.get(mid), entry) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(Entry<S, T> a, Entry<S, T> b) {
+        int result = mComparator.compare(a.mModel, b.mModel);
+        if (result != 0) { return result; }
+
+        // Keep equal models in the order they were added
+        return a.mSequence < b.mSequence ? -1 : (a.mSequence == b.mSequence ? 0 : 1);
+    }
+
+    private static final class Entry<S, T> {
+        private final long mSequence;
+        private S mSnapshot;
+        private T mModel;
+
+        Entry(S snapshot, T model, long sequence) {
+            mSnapshot = snapshot;
+            mModel = model;
+            mSequence = sequence;
+        }
+    }
+}
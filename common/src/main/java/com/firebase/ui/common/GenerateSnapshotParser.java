@@ -0,0 +1,29 @@
+package com.firebase.ui.common;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate reflection-free snapshot parsers for the annotated model class. Requires the annotation
+ * processor from FirebaseUI's {@code compiler} module, which is not published yet and must be
+ * built from source.
+ * <p>
+ * For Realtime Database, a {@code <Model>_DatabaseParser} is generated and for Cloud Firestore, a
+ * {@code <Model>_FirestoreParser} is generated. Adapter options built with a model {@link Class}
+ * will automatically use them instead of the SDK's reflection based mapping.
+ * <p>
+ * Properties are discovered the same way the SDKs do it: public getters and public fields define
+ * them, and each is written through the setter or field of the same name, whatever its
+ * visibility. {@code @PropertyName} and {@code @Exclude} are honored. Setters and fields the
+ * parser can't access, such as private ones, are written through reflection, so make them
+ * package-private or public to avoid it. Supported property types are primitives and their boxed
+ * counterparts, {@link String}, enums, and (Firestore only) {@link java.util.Date}. The model must
+ * have a non-private no-argument constructor.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateSnapshotParser {}
@@ -0,0 +1,44 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+/**
+ * Finds parsers generated for models annotated with {@link GenerateSnapshotParser}.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class GeneratedParsers {
+
+    private GeneratedParsers() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * Create the generated parser for a model class if there is one.
+     *
+     * @param suffix appended to the model's name to get the parser's name, must match the suffix
+     *               used by the compiler
+     * @return the parser, or null if none was generated
+     */
+    @Nullable
+    public static <P> P newInstance(@NonNull Class<?> modelClass,
+                                    @NonNull String suffix,
+                                    @NonNull Class<P> parserClass) {
+        // Nested classes are flattened with underscores by the compiler
+        String name = modelClass.getName().replace('$', '_') + suffix;
+
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(name, true, modelClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        try {
+            return parserClass.cast(clazz.newInstance());
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Could not create generated parser " + name, e);
+        }
+    }
+}
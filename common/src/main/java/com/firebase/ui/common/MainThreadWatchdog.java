@@ -0,0 +1,138 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports calls FirebaseUI makes on the main thread which take longer than a frame, to find the
+ * parsers, listeners and binds causing jank. It is disabled by default, enable it in debug builds
+ * or for a sample of users:
+ * <pre>{@code
+ * if (BuildConfig.DEBUG) MainThreadWatchdog.getInstance().setEnabled(true);
+ * }</pre>
+ * The timed calls are:
+ * <ul>
+ * <li>each listener handling a child event ({@link #OPERATION_DISPATCH})
+ * <li>parsing a snapshot into a model ({@link #OPERATION_PARSE})
+ * <li>binding an adapter's row, once its model has been parsed ({@link #OPERATION_BIND})
+ * </ul>
+ * Slow calls are logged, or passed to a {@link Listener} if one is set.
+ */
+public final class MainThreadWatchdog {
+    /**
+     * A listener handled a child event.
+     */
+    public static final String OPERATION_DISPATCH = "dispatch";
+    /**
+     * A snapshot was parsed into a model.
+     */
+    public static final String OPERATION_PARSE = "parse";
+    /**
+     * An adapter bound a row.
+     */
+    public static final String OPERATION_BIND = "bind";
+
+    private static final String TAG = "MainThreadWatchdog";
+    private static final long DEFAULT_BUDGET_MILLIS = 16;
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final MainThreadWatchdog INSTANCE = new MainThreadWatchdog();
+
+    private volatile boolean mEnabled;
+    private volatile long mBudgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BUDGET_MILLIS);
+    private volatile Listener mListener;
+
+    private MainThreadWatchdog() {}
+
+    @NonNull
+    public static MainThreadWatchdog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start or stop timing calls. While disabled, each call only costs a field read.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Set how long a single call may take before it is reported. Defaults to 16ms, one frame at
+     * 60fps.
+     */
+    public void setBudget(long budgetMillis) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + budgetMillis);
+        }
+        mBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * Set a listener to receive slow calls instead of logging them, for example to send them to a
+     * crash reporting tool.
+     */
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return a token to pass to {@link #getSlowDuration(long)} once the call returns
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public long startTiming() {
+        return mEnabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * @return the call's duration in nanoseconds if it went over budget, 0 otherwise
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public long getSlowDuration(long start) {
+        if (start == NOT_TIMED) return 0;
+
+        long duration = System.nanoTime() - start;
+        return duration > mBudgetNanos ? duration : 0;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void reportSlowCall(@NonNull String operation,
+                               long durationNanos,
+                               @NonNull Class<?> callee,
+                               @Nullable String path,
+                               @Nullable String key) {
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        Listener listener = mListener;
+        if (listener == null) {
+            Log.w(TAG, operation + " in " + callee.getName() + " took " + durationMillis
+                    + "ms (path: " + path + ", key: " + key + ")");
+        } else {
+            listener.onSlowCall(operation, durationMillis, callee, path, key);
+        }
+    }
+
+    /**
+     * Receives calls which went over budget.
+     */
+    public interface Listener {
+        /**
+         * @param operation      what was slow, such as {@link #OPERATION_BIND}
+         * @param durationMillis how long the call took
+         * @param callee         the listener, parser or adapter class which was called
+         * @param path           the location of the item in the database, if known
+         * @param key            the item's key, if known
+         */
+        void onSlowCall(@NonNull String operation,
+                        long durationMillis,
+                        @NonNull Class<?> callee,
+                        @Nullable String path,
+                        @Nullable String key);
+    }
+}
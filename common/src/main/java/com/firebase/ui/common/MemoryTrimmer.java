@@ -0,0 +1,132 @@
+package com.firebase.ui.common;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Releases memory held by FirebaseUI when the system asks the app to. It is registered
+ * automatically when the app starts and forwards each trim level to every snapshot array, which
+ * release what they can restore:
+ * <ul>
+ * <li>from {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}, parsed models
+ * ({@link #STEP_PARSER_CACHE})
+ * <li>from {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND} or at {@link
+ * ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL}, data kept to avoid downloading it again, such
+ * as the snapshots retained by stopped arrays ({@link #STEP_RETAINED_SNAPSHOTS}) or the join cache
+ * of a {@code FirebaseIndexArray}
+ * </ul>
+ * Set a {@link Listener} to find out what was released.
+ */
+public final class MemoryTrimmer implements ComponentCallbacks2 {
+    /**
+     * Models cached by an array's parser were cleared.
+     */
+    public static final String STEP_PARSER_CACHE = "parser_cache";
+    /**
+     * Snapshots kept by a stopped array to reconcile its next load against were cleared.
+     */
+    public static final String STEP_RETAINED_SNAPSHOTS = "retained_snapshots";
+
+    private static final MemoryTrimmer INSTANCE = new MemoryTrimmer();
+    private static final int MIN_PRUNE_SIZE = 16;
+
+    /**
+     * Arrays are held by identity: they are lists, so their hash code depends on their contents and
+     * can't be computed while they are being constructed.
+     */
+    private final List<WeakReference<BaseObservableSnapshotArray<?, ?, ?, ?>>> mArrays =
+            new ArrayList<>();
+    /** The number of references at which collected arrays are next dropped. */
+    private int mPruneSize = MIN_PRUNE_SIZE;
+    private Listener mListener;
+
+    private MemoryTrimmer() {}
+
+    @NonNull
+    public static MemoryTrimmer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set a listener to be called after each step of a trim, for example to log how much was
+     * released.
+     */
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    void register(@NonNull BaseObservableSnapshotArray<?, ?, ?, ?> array) {
+        synchronized (mArrays) {
+            if (mArrays.size() >= mPruneSize) {
+                getArrays();
+                mPruneSize = Math.max(MIN_PRUNE_SIZE, mArrays.size() * 2);
+            }
+            mArrays.add(new WeakReference<BaseObservableSnapshotArray<?, ?, ?, ?>>(array));
+        }
+    }
+
+    /**
+     * @return the arrays which haven't been garbage collected, the others are dropped
+     */
+    private List<BaseObservableSnapshotArray<?, ?, ?, ?>> getArrays() {
+        List<BaseObservableSnapshotArray<?, ?, ?, ?>> arrays = new ArrayList<>(mArrays.size());
+        Iterator<WeakReference<BaseObservableSnapshotArray<?, ?, ?, ?>>> iterator =
+                mArrays.iterator();
+        while (iterator.hasNext()) {
+            BaseObservableSnapshotArray<?, ?, ?, ?> array = iterator.next().get();
+            if (array == null) {
+                iterator.remove();
+            } else {
+                arrays.add(array);
+            }
+        }
+        return arrays;
+    }
+
+    void dispatchTrimmed(int level, @NonNull Object source, @NonNull String step, int count) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onTrimmed(level, source, step, count);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        List<BaseObservableSnapshotArray<?, ?, ?, ?>> arrays;
+        synchronized (mArrays) {
+            arrays = getArrays();
+        }
+
+        for (BaseObservableSnapshotArray<?, ?, ?, ?> array : arrays) {
+            array.onTrimMemory(level);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
+
+    /**
+     * Receives each step of a memory trim.
+     */
+    public interface Listener {
+        /**
+         * @param level  the trim level passed to {@link ComponentCallbacks2#onTrimMemory(int)}
+         * @param source the array which released memory
+         * @param step   what was released, such as {@link #STEP_PARSER_CACHE}
+         * @param count  the number of entries released
+         */
+        void onTrimmed(int level, @NonNull Object source, @NonNull String step, int count);
+    }
+}
@@ -0,0 +1,262 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incrementally merges several {@link BaseObservableSnapshotArray}s into a single ordered view.
+ * Items are deduplicated by key: when several sources contain the same key, the item from the
+ * source that comes first is shown. Each source event is applied with a binary search instead of
+ * merging all sources again.
+ *
+ * @param <S> the snapshot class.
+ * @param <T> the model object class.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class MergedSnapshotIndex<S, T> {
+    private final List<? extends BaseObservableSnapshotArray<S, ?, ?, T>> mSources;
+    private final Comparator<T> mComparator;
+    private final DerivedSnapshotIndex.Callback<S> mCallback;
+
+    /** For each source, source index to entry. */
+    private final List<List<Entry<S, T>>> mSourceEntries = new ArrayList<>();
+    /** Entries for each key from all sources, ordered by source. The first one is visible. */
+    private final Map<String, List<Entry<S, T>>> mEntriesByKey = new HashMap<>();
+    /** Visible entries ordered by {@link #compare(Entry, Entry)}. */
+    private final List<Entry<S, T>> mView = new ArrayList<>();
+    /** Same order as {@link #mView}. */
+    private final List<S> mSnapshots = new ArrayList<>();
+
+    private final boolean[] mHasSourceDataChanged;
+    private int mLoadedSources;
+
+    /**
+     * @param callback receives the merged view's events, removals are reported with a {@code
+     *                 newIndex} of -1
+     */
+    public MergedSnapshotIndex(@NonNull List<? extends BaseObservableSnapshotArray<S, ?, ?, T>> sources,
+                               @NonNull Comparator<T> comparator,
+                               @NonNull DerivedSnapshotIndex.Callback<S> callback) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("At least one source is required.");
+        }
+        mSources = Collections.unmodifiableList(new ArrayList<>(sources));
+        mComparator = Preconditions.checkNotNull(comparator);
+        mCallback = Preconditions.checkNotNull(callback);
+
+        for (int i = 0; i < sources.size(); i++) {
+            mSourceEntries.add(new ArrayList<Entry<S, T>>());
+        }
+        mHasSourceDataChanged = new boolean[sources.size()];
+    }
+
+    /**
+     * @return the merged view's snapshots
+     */
+    @NonNull
+    public List<S> getSnapshots() {
+        return mSnapshots;
+    }
+
+    @NonNull
+    public T getModel(int index) {
+        return mView.get(index).mModel;
+    }
+
+    public void clear() {
+        for (List<Entry<S, T>> entries : mSourceEntries) {
+            entries.clear();
+        }
+        mEntriesByKey.clear();
+        mView.clear();
+        mSnapshots.clear();
+
+        mLoadedSources = 0;
+        for (int i = 0; i < mHasSourceDataChanged.length; i++) {
+            mHasSourceDataChanged[i] = false;
+        }
+    }
+
+    /**
+     * Record that a source finished processing a batch of events.
+     *
+     * @return true once every source has loaded its initial data, false if the merged view is
+     * still incomplete
+     */
+    public boolean onSourceDataChanged(int source) {
+        if (!mHasSourceDataChanged[source]) {
+            mHasSourceDataChanged[source] = true;
+            mLoadedSources++;
+        }
+        return mLoadedSources == mHasSourceDataChanged.length;
+    }
+
+    /**
+     * Apply a change event received from the given source.
+     */
+    public void onSourceChanged(int source,
+                                @NonNull ChangeEventType type,
+                                @NonNull S snapshot,
+                                int newIndex,
+                                int oldIndex) {
+        List<Entry<S, T>> entries = mSourceEntries.get(source);
+        switch (type) {
+            case ADDED:
+                onAdded(source, entries, snapshot, newIndex);
+                break;
+            case CHANGED:
+                onChanged(source, entries.get(newIndex), snapshot, newIndex);
+                break;
+            case REMOVED:
+                // Arrays disagree on which index to report for removals
+                onRemoved(entries.remove(oldIndex == -1 ? newIndex : oldIndex));
+                break;
+            case MOVED:
+                // The merged order doesn't depend on the sources'
+                entries.add(newIndex, entries.remove(oldIndex));
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    private void onAdded(int source, List<Entry<S, T>> entries, S snapshot, int sourceIndex) {
+        String key = mSources.get(source).getSnapshotKey(snapshot);
+        if (key == null) {
+            throw new IllegalStateException("Merged arrays must provide snapshot keys.");
+        }
+
+        Entry<S, T> entry =
+                new Entry<>(source, key, snapshot, mSources.get(source).get(sourceIndex));
+        entries.add(sourceIndex, entry);
+
+        List<Entry<S, T>> candidates = mEntriesByKey.get(key);
+        if (candidates == null) {
+            candidates = new ArrayList<>(1);
+            mEntriesByKey.put(key, candidates);
+        }
+
+        int position = 0;
+        while (position < candidates.size() && candidates.get(position).mSource < source) {
+            position++;
+        }
+        candidates.add(position, entry);
+
+        if (candidates.size() == 1) {
+            int index = insert(entry);
+            mCallback.onChildChanged(ChangeEventType.ADDED, snapshot, index, -1, null);
+        } else if (position == 0) {
+            replace(candidates.get(1), entry);
+        }
+    }
+
+    private void onChanged(int source, Entry<S, T> entry, S snapshot, int sourceIndex) {
+        List<Entry<S, T>> candidates = mEntriesByKey.get(entry.mKey);
+        if (candidates.get(0) != entry) {
+            // Hidden by a duplicate from a preceding source
+            entry.mSnapshot = snapshot;
+            entry.mModel = mSources.get(source).get(sourceIndex);
+            return;
+        }
+
+        S previous = entry.mSnapshot;
+        int oldIndex = remove(entry);
+        entry.mSnapshot = snapshot;
+        entry.mModel = mSources.get(source).get(sourceIndex);
+        int index = insert(entry);
+
+        if (index != oldIndex) {
+            mCallback.onChildChanged(ChangeEventType.MOVED, snapshot, index, oldIndex, null);
+        }
+        mCallback.onChildChanged(ChangeEventType.CHANGED, snapshot, index, index, previous);
+    }
+
+    private void onRemoved(Entry<S, T> entry) {
+        List<Entry<S, T>> candidates = mEntriesByKey.get(entry.mKey);
+        boolean wasVisible = candidates.get(0) == entry;
+        candidates.remove(entry);
+
+        if (!wasVisible) return;
+
+        if (candidates.isEmpty()) {
+            mEntriesByKey.remove(entry.mKey);
+            int index = remove(entry);
+            mCallback.onChildChanged(ChangeEventType.REMOVED, entry.mSnapshot, -1, index, null);
+        } else {
+            replace(entry, candidates.get(0));
+        }
+    }
+
+    /**
+     * Swap the visible entry for a key with a duplicate from another source.
+     */
+    private void replace(Entry<S, T> visible, Entry<S, T> replacement) {
+        int oldIndex = remove(visible);
+        int index = insert(replacement);
+
+        if (index != oldIndex) {
+            mCallback.onChildChanged(
+                    ChangeEventType.MOVED, replacement.mSnapshot, index, oldIndex, null);
+        }
+        mCallback.onChildChanged(
+                ChangeEventType.CHANGED, replacement.mSnapshot, index, index, visible.mSnapshot);
+    }
+
+    private int insert(Entry<S, T> entry) {
+        int index = search(entry);
+        mView.add(index, entry);
+        mSnapshots.add(index, entry.mSnapshot);
+        return index;
+    }
+
+    private int remove(Entry<S, T> entry) {
+        // Visible keys are unique so the insertion point is the entry itself
+        int index = search(entry);
+        mView.remove(index);
+        mSnapshots.remove(index);
+        return index;
+    }
+
+    /**
+     * @return the first view index whose entry isn't ordered before the given one
+     */
+    private int search(Entry<S, T> entry) {
+        int low = 0;
+        int high = mView.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mView.get(mid), entry) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(Entry<S, T> a, Entry<S, T> b) {
+        int result = mComparator.compare(a.mModel, b.mModel);
+        return result == 0 ? a.mKey.compareTo(b.mKey) : result;
+    }
+
+    private static final class Entry<S, T> {
+        private final int mSource;
+        private final String mKey;
+        private S mSnapshot;
+        private T mModel;
+
+        Entry(int source, String key, S snapshot, T model) {
+            mSource = source;
+            mKey = key;
+            mSnapshot = snapshot;
+            mModel = model;
+        }
+    }
+}
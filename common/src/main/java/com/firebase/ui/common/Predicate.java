@@ -0,0 +1,15 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Decides whether a model object should be part of a derived array.
+ *
+ * @param <T> the model object class.
+ */
+public interface Predicate<T> {
+    /**
+     * @return true to keep the model, false to filter it out
+     */
+    boolean test(@NonNull T model);
+}
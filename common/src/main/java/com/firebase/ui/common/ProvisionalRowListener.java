@@ -0,0 +1,28 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Optional interface for {@link BaseChangeEventListener}s that can display rows added with {@link
+ * BaseObservableSnapshotArray#addProvisionalModel(int, String, Object)}. Such rows have no
+ * snapshot until the write creating them is confirmed, so they can't be passed to {@link
+ * BaseChangeEventListener#onChildChanged(ChangeEventType, Object, int, int)}.
+ */
+public interface ProvisionalRowListener {
+
+    /**
+     * Called when a row without a snapshot is added, changed or removed. Once its snapshot arrives,
+     * the row is updated through regular {@link ChangeEventType#MOVED} and {@link
+     * ChangeEventType#CHANGED} events instead.
+     *
+     * @param type     {@link ChangeEventType#ADDED}, {@link ChangeEventType#CHANGED} or {@link
+     *                 ChangeEventType#REMOVED}
+     * @param id       the ID of the row, such as the key it is being written to
+     * @param newIndex the index of the added or changed row, -1 for removals
+     * @param oldIndex the index of the removed row, -1 otherwise
+     */
+    void onProvisionalRowChanged(@NonNull ChangeEventType type,
+                                 @NonNull String id,
+                                 int newIndex,
+                                 int oldIndex);
+}
@@ -0,0 +1,17 @@
+package com.firebase.ui.common;
+
+/**
+ * Optional interface for {@link BaseChangeEventListener}s that would rather load an array's
+ * existing contents at once.
+ */
+public interface ResetListener {
+
+    /**
+     * Called instead of one {@link ChangeEventType#ADDED} event per snapshot when the listener is
+     * attached to an array that already holds data. Also called after the listener was removed
+     * from an array retaining its snapshots, if they are released before the array restarts, for
+     * example when memory is trimmed. Everything previously loaded from the array should be
+     * discarded and its current items loaded again.
+     */
+    void onReset();
+}
@@ -0,0 +1,345 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps an inverted index from the words in chosen fields of each item of a {@link
+ * BaseObservableSnapshotArray} to the items containing them, and a view of the items matching the
+ * current query in source order.
+ * <p>
+ * A query matches items containing a word starting with each of the query's words. Changing the
+ * query looks up the most selective word's prefix range in the index, so its cost depends on the
+ * number of matches rather than the number of items. Source events update the index and the view
+ * incrementally.
+ *
+ * @param <S> the snapshot class.
+ * @param <T> the model object class.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class SearchIndex<S, T> {
+    private static final String[] NO_WORDS = new String[0];
+    private static final Comparator<Entry<?, ?>> SOURCE_ORDER = new Comparator<Entry<?, ?>>() {
+        @Override
+        public int compare(Entry<?, ?> a, Entry<?, ?> b) {
+            return a.mSourceIndex - b.mSourceIndex;
+        }
+    };
+
+    private final BaseObservableSnapshotArray<S, ?, ?, T> mSource;
+    private final List<Selector<T, String>> mFields;
+    private final DerivedSnapshotIndex.Callback<S> mCallback;
+
+    /** Source index to entry, visible if the entry is in the view. */
+    private final VisibilityList<Entry<S, T>> mSourceEntries = new VisibilityList<>();
+    /** Word to the entries containing it. */
+    private final TreeMap<String, Set<Entry<S, T>>> mWords = new TreeMap<>();
+    /** Matching entries in source order. */
+    private final List<Entry<S, T>> mView = new ArrayList<>();
+    /** Same order as {@link #mView}. */
+    private final List<S> mSnapshots = new ArrayList<>();
+
+    private String[] mQuery = NO_WORDS;
+
+    /**
+     * @param fields   the text to index for each model
+     * @param callback receives the view's events, removals are reported with a {@code newIndex}
+     *                 of -1
+     */
+    public SearchIndex(@NonNull BaseObservableSnapshotArray<S, ?, ?, T> source,
+                       @NonNull List<Selector<T, String>> fields,
+                       @NonNull DerivedSnapshotIndex.Callback<S> callback) {
+        mSource = Preconditions.checkNotNull(source);
+        mFields = Collections.unmodifiableList(new ArrayList<>(fields));
+        mCallback = Preconditions.checkNotNull(callback);
+    }
+
+    /**
+     * @return the view's snapshots
+     */
+    @NonNull
+    public List<S> getSnapshots() {
+        return mSnapshots;
+    }
+
+    @NonNull
+    public T getModel(int index) {
+        return mView.get(index).mModel;
+    }
+
+    public void clear() {
+        mSourceEntries.clear();
+        mWords.clear();
+        mView.clear();
+        mSnapshots.clear();
+    }
+
+    /**
+     * Update the view to only contain items matching the given query.
+     *
+     * @param query the text to search for, or null to match all items
+     */
+    public void setQuery(@Nullable String query) {
+        String[] words = query == null ? NO_WORDS : split(query);
+        if (Arrays.equals(words, mQuery)) return;
+        mQuery = words;
+
+        List<Entry<S, T>> matches = findMatches();
+        for (Entry<S, T> entry : matches) {
+            entry.mIsMatch = true;
+        }
+
+        // Remove from the back so the indices of remaining entries stay valid
+        for (int i = mView.size() - 1; i >= 0; i--) {
+            Entry<S, T> entry = mView.get(i);
+            if (!entry.mIsMatch) {
+                mSourceEntries.setVisible(mSourceEntries.indexOf(entry.mNode), false);
+                mView.remove(i);
+                mSnapshots.remove(i);
+                mCallback.onChildChanged(ChangeEventType.REMOVED, entry.mSnapshot, -1, i, null);
+            }
+        }
+
+        // Both lists are in source order now, so new matches are inserted at their final index
+        for (int i = 0; i < matches.size(); i++) {
+            Entry<S, T> entry = matches.get(i);
+            entry.mIsMatch = false;
+            if (!mSourceEntries.isVisible(entry.mSourceIndex)) {
+                mSourceEntries.setVisible(entry.mSourceIndex, true);
+                mView.add(i, entry);
+                mSnapshots.add(i, entry.mSnapshot);
+                mCallback.onChildChanged(ChangeEventType.ADDED, entry.mSnapshot, i, -1, null);
+            }
+        }
+    }
+
+    /**
+     * Apply a change event received from the source array.
+     */
+    public void onSourceChanged(@NonNull ChangeEventType type,
+                                @NonNull S snapshot,
+                                int newIndex,
+                                int oldIndex) {
+        switch (type) {
+            case ADDED:
+                onAdded(snapshot, newIndex);
+                break;
+            case CHANGED:
+                onChanged(snapshot, newIndex);
+                break;
+            case REMOVED:
+                // Arrays disagree on which index to report for removals
+                onRemoved(oldIndex == -1 ? newIndex : oldIndex);
+                break;
+            case MOVED:
+                onMoved(newIndex, oldIndex);
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    private void onAdded(S snapshot, int sourceIndex) {
+        Entry<S, T> entry = new Entry<>(snapshot, mSource.get(sourceIndex));
+        entry.mNode = mSourceEntries.add(sourceIndex, entry, false);
+        index(entry);
+
+        if (matches(entry)) {
+            int index = show(entry, sourceIndex);
+            mCallback.onChildChanged(ChangeEventType.ADDED, snapshot, index, -1, null);
+        }
+    }
+
+    private void onChanged(S snapshot, int sourceIndex) {
+        Entry<S, T> entry = mSourceEntries.get(sourceIndex);
+        S previous = entry.mSnapshot;
+
+        unindex(entry);
+        entry.mSnapshot = snapshot;
+        entry.mModel = mSource.get(sourceIndex);
+        index(entry);
+
+        boolean wasVisible = mSourceEntries.isVisible(sourceIndex);
+        boolean isVisible = matches(entry);
+        if (wasVisible && isVisible) {
+            int index = mSourceEntries.countVisibleBefore(sourceIndex);
+            mSnapshots.set(index, snapshot);
+            mCallback.onChildChanged(ChangeEventType.CHANGED, snapshot, index, index, previous);
+        } else if (wasVisible) {
+            int index = hide(sourceIndex);
+            mCallback.onChildChanged(ChangeEventType.REMOVED, snapshot, -1, index, null);
+        } else if (isVisible) {
+            int index = show(entry, sourceIndex);
+            mCallback.onChildChanged(ChangeEventType.ADDED, snapshot, index, -1, null);
+        }
+    }
+
+    private void onRemoved(int sourceIndex) {
+        Entry<S, T> entry = mSourceEntries.get(sourceIndex);
+        unindex(entry);
+
+        if (mSourceEntries.isVisible(sourceIndex)) {
+            int index = hide(sourceIndex);
+            mCallback.onChildChanged(ChangeEventType.REMOVED, entry.mSnapshot, -1, index, null);
+        }
+
+        mSourceEntries.remove(sourceIndex);
+    }
+
+    private void onMoved(int newSourceIndex, int oldSourceIndex) {
+        Entry<S, T> entry = mSourceEntries.get(oldSourceIndex);
+        int oldIndex = mSourceEntries.isVisible(oldSourceIndex) ? hide(oldSourceIndex) : -1;
+
+        mSourceEntries.remove(oldSourceIndex);
+        entry.mNode = mSourceEntries.add(newSourceIndex, entry, false);
+
+        if (oldIndex != -1) {
+            int index = show(entry, newSourceIndex);
+            if (index != oldIndex) {
+                mCallback.onChildChanged(
+                        ChangeEventType.MOVED, entry.mSnapshot, index, oldIndex, null);
+            }
+        }
+    }
+
+    /**
+     * @return the entries matching the query in source order, with their {@link
+     * Entry#mSourceIndex} set
+     */
+    private List<Entry<S, T>> findMatches() {
+        if (mQuery.length == 0) {
+            List<Entry<S, T>> matches = new ArrayList<>(mSourceEntries.size());
+            for (int i = 0; i < mSourceEntries.size(); i++) {
+                Entry<S, T> entry = mSourceEntries.get(i);
+                entry.mSourceIndex = i;
+                matches.add(entry);
+            }
+            return matches;
+        }
+
+        // Longer words have fewer matches
+        String longest = mQuery[0];
+        for (String word : mQuery) {
+            if (word.length() > longest.length()) { longest = word; }
+        }
+
+        Set<Entry<S, T>> candidates = new HashSet<>();
+        for (Set<Entry<S, T>> entries : withPrefix(longest)) {
+            candidates.addAll(entries);
+        }
+
+        List<Entry<S, T>> matches = new ArrayList<>(candidates.size());
+        for (Entry<S, T> entry : candidates) {
+            if (matches(entry)) {
+                entry.mSourceIndex = mSourceEntries.indexOf(entry.mNode);
+                matches.add(entry);
+            }
+        }
+        Collections.sort(matches, SOURCE_ORDER);
+        return matches;
+    }
+
+    private Collection<Set<Entry<S, T>>> withPrefix(String prefix) {
+        return mWords.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    private boolean matches(Entry<S, T> entry) {
+        for (String query : mQuery) {
+            boolean isFound = false;
+            for (String word : entry.mWords) {
+                if (word.startsWith(query)) {
+                    isFound = true;
+                    break;
+                }
+            }
+            if (!isFound) return false;
+        }
+        return true;
+    }
+
+    private int show(Entry<S, T> entry, int sourceIndex) {
+        mSourceEntries.setVisible(sourceIndex, true);
+        int index = mSourceEntries.countVisibleBefore(sourceIndex);
+        mView.add(index, entry);
+        mSnapshots.add(index, entry.mSnapshot);
+        return index;
+    }
+
+    private int hide(int sourceIndex) {
+        mSourceEntries.setVisible(sourceIndex, false);
+        int index = mSourceEntries.countVisibleBefore(sourceIndex);
+        mView.remove(index);
+        mSnapshots.remove(index);
+        return index;
+    }
+
+    private void index(Entry<S, T> entry) {
+        Set<String> words = new LinkedHashSet<>();
+        for (Selector<T, String> field : mFields) {
+            String text = field.select(entry.mModel);
+            if (text != null) { Collections.addAll(words, split(text)); }
+        }
+        entry.mWords = words.toArray(new String[words.size()]);
+
+        for (String word : entry.mWords) {
+            Set<Entry<S, T>> entries = mWords.get(word);
+            if (entries == null) {
+                entries = new HashSet<>();
+                mWords.put(word, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    private void unindex(Entry<S, T> entry) {
+        for (String word : entry.mWords) {
+            Set<Entry<S, T>> entries = mWords.get(word);
+            entries.remove(entry);
+            if (entries.isEmpty()) { mWords.remove(word); }
+        }
+    }
+
+    private static String[] split(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordChar && start == -1) {
+                start = i;
+            } else if (!isWordChar && start != -1) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    private static final class Entry<S, T> {
+        private S mSnapshot;
+        private T mModel;
+        private String[] mWords = NO_WORDS;
+        /** Finds the entry's position in the source array. */
+        private VisibilityList.Node<Entry<S, T>> mNode;
+        /** Scratch position and flag used while changing the query. */
+        private int mSourceIndex;
+        private boolean mIsMatch;
+
+        Entry(S snapshot, T model) {
+            mSnapshot = snapshot;
+            mModel = model;
+        }
+    }
+}
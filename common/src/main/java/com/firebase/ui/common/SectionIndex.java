@@ -0,0 +1,294 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups the items of a list into sections with a header row in front of each one and translates
+ * changes to the list into flat adapter positions.
+ * <p>
+ * A section is a run of consecutive items with the same section key, so the list should be
+ * ordered by section. Section boundaries are maintained incrementally: positions are resolved with
+ * a binary search over the start of each section.
+ *
+ * @param <T> the model object class.
+ * @param <K> the section key class.
+ */
+public final class SectionIndex<T, K> {
+    /**
+     * Receives changes in flat adapter positions, matching {@code RecyclerView.Adapter}'s {@code
+     * notify} methods.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, @Nullable Object payload);
+
+        void onMoved(int fromPosition, int toPosition);
+    }
+
+    private final List<T> mSource;
+    private final SectionMapper<T, K> mMapper;
+    private final Callback mCallback;
+
+    /** Source index to section key. */
+    private final List<K> mSections = new ArrayList<>();
+    /** Ascending source indices of the first item of each section. */
+    private final List<Integer> mSectionStarts = new ArrayList<>();
+
+    /**
+     * @param source the list to group, typically an {@link BaseObservableSnapshotArray}
+     */
+    public SectionIndex(@NonNull List<T> source,
+                        @NonNull SectionMapper<T, K> mapper,
+                        @NonNull Callback callback) {
+        mSource = Preconditions.checkNotNull(source);
+        mMapper = Preconditions.checkNotNull(mapper);
+        mCallback = Preconditions.checkNotNull(callback);
+    }
+
+    /**
+     * @return the number of items plus the number of headers
+     */
+    public int getItemCount() {
+        return mSections.size() + mSectionStarts.size();
+    }
+
+    public int getSectionCount() {
+        return mSectionStarts.size();
+    }
+
+    public boolean isHeader(int position) {
+        int section = getSectionIndex(position);
+        return getHeaderPosition(section) == position;
+    }
+
+    /**
+     * @return the key of the section the header or item at the given position belongs to
+     */
+    @NonNull
+    public K getSection(int position) {
+        return mSections.get(mSectionStarts.get(getSectionIndex(position)));
+    }
+
+    /**
+     * @return the index of the item at the given position in the source list, or -1 for headers
+     */
+    public int getSourceIndex(int position) {
+        int section = getSectionIndex(position);
+        int header = getHeaderPosition(section);
+        return header == position ? -1 : position - section - 1;
+    }
+
+    /**
+     * @return the flat position of the item at the given index in the source list
+     */
+    public int getPosition(int sourceIndex) {
+        return sourceIndex + countStartsAtOrBefore(sourceIndex);
+    }
+
+    public void clear() {
+        mSections.clear();
+        mSectionStarts.clear();
+    }
+
+    /**
+     * Rebuilds the index from the whole source list, for example after a {@link
+     * ResetListener#onReset()}. Costs O(n) and reports a single range of changes.
+     */
+    public void reset() {
+        int oldCount = getItemCount();
+        clear();
+        if (oldCount > 0) { mCallback.onRemoved(0, oldCount); }
+
+        K previous = null;
+        for (int i = 0; i < mSource.size(); i++) {
+            K section = mMapper.getSection(mSource.get(i));
+            if (i == 0 || !section.equals(previous)) { mSectionStarts.add(i); }
+            mSections.add(section);
+            previous = section;
+        }
+
+        int newCount = getItemCount();
+        if (newCount > 0) { mCallback.onInserted(0, newCount); }
+    }
+
+    /**
+     * Call after an item was inserted into the source list.
+     */
+    public void onItemAdded(int sourceIndex) {
+        K section = mMapper.getSection(mSource.get(sourceIndex));
+        int size = mSections.size();
+        boolean hasPrevious = sourceIndex > 0;
+        boolean hasNext = sourceIndex < size;
+        K previous = hasPrevious ? mSections.get(sourceIndex - 1) : null;
+        K next = hasNext ? mSections.get(sourceIndex) : null;
+
+        mSections.add(sourceIndex, section);
+        shiftStarts(sourceIndex, 1);
+
+        if (hasPrevious && section.equals(previous)) {
+            // Extends the previous section, the next one is unaffected
+            mCallback.onInserted(getPosition(sourceIndex), 1);
+        } else if (hasNext && section.equals(next)) {
+            // Becomes the new first item of the next section
+            int start = findStart(sourceIndex + 1);
+            mSectionStarts.set(start, sourceIndex);
+            mCallback.onInserted(getPosition(sourceIndex), 1);
+        } else {
+            int start = insertStart(sourceIndex);
+            mCallback.onInserted(getHeaderPosition(start), 2);
+
+            if (hasPrevious && hasNext && previous.equals(next)) {
+                // Split a section in two, the second half needs its own header
+                int nextStart = insertStart(sourceIndex + 1);
+                mCallback.onInserted(getHeaderPosition(nextStart), 1);
+            }
+        }
+    }
+
+    /**
+     * Call after an item was removed from the source list.
+     */
+    public void onItemRemoved(int sourceIndex) {
+        K section = mSections.get(sourceIndex);
+        int size = mSections.size();
+        boolean hasPrevious = sourceIndex > 0;
+        boolean hasNext = sourceIndex < size - 1;
+        K previous = hasPrevious ? mSections.get(sourceIndex - 1) : null;
+        K next = hasNext ? mSections.get(sourceIndex + 1) : null;
+
+        int position = getPosition(sourceIndex);
+        int start = findStart(sourceIndex);
+
+        mSections.remove(sourceIndex);
+        if (start == -1 || hasNext && section.equals(next)) {
+            // The section keeps other items and therefore its header
+            shiftStarts(sourceIndex + 1, -1);
+            mCallback.onRemoved(position, 1);
+        } else {
+            mSectionStarts.remove(start);
+            shiftStarts(sourceIndex + 1, -1);
+
+            if (hasPrevious && hasNext && previous.equals(next)) {
+                // The sections around the removed one merge
+                mSectionStarts.remove(start);
+                mCallback.onRemoved(position - 1, 3);
+            } else {
+                mCallback.onRemoved(position - 1, 2);
+            }
+        }
+    }
+
+    /**
+     * Call after an item in the source list was updated.
+     *
+     * @param payload passed on to {@link Callback#onChanged(int, Object)} if the item stays in its
+     *                section
+     */
+    public void onItemChanged(int sourceIndex, @Nullable Object payload) {
+        K section = mMapper.getSection(mSource.get(sourceIndex));
+        if (section.equals(mSections.get(sourceIndex))) {
+            mCallback.onChanged(getPosition(sourceIndex), payload);
+        } else {
+            onItemRemoved(sourceIndex);
+            onItemAdded(sourceIndex);
+        }
+    }
+
+    /**
+     * Call after an item was moved within the source list.
+     */
+    public void onItemMoved(int fromSourceIndex, int toSourceIndex) {
+        K section = mSections.get(fromSourceIndex);
+        if (!changesSections(fromSourceIndex, toSourceIndex, section)) {
+            int from = getPosition(fromSourceIndex);
+            mSections.remove(fromSourceIndex);
+            mSections.add(toSourceIndex, section);
+            mCallback.onMoved(from, getPosition(toSourceIndex));
+        } else {
+            onItemRemoved(fromSourceIndex);
+            onItemAdded(toSourceIndex);
+        }
+    }
+
+    /**
+     * @return false if the move stays within a section, in which case no boundaries change
+     */
+    private boolean changesSections(int from, int to, K section) {
+        int low = Math.min(from, to);
+        int high = Math.max(from, to);
+        for (int i = low; i <= high; i++) {
+            if (!section.equals(mSections.get(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the section containing the given flat position
+     */
+    private int getSectionIndex(int position) {
+        int low = 0;
+        int high = mSectionStarts.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getHeaderPosition(mid) <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int getHeaderPosition(int section) {
+        return mSectionStarts.get(section) + section;
+    }
+
+    /**
+     * @return the number of sections starting at or before the given source index
+     */
+    private int countStartsAtOrBefore(int sourceIndex) {
+        int low = 0;
+        int high = mSectionStarts.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mSectionStarts.get(mid) <= sourceIndex) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the section starting at the given source index, or -1 if none does
+     */
+    private int findStart(int sourceIndex) {
+        int count = countStartsAtOrBefore(sourceIndex);
+        return count > 0 && mSectionStarts.get(count - 1) == sourceIndex ? count - 1 : -1;
+    }
+
+    private int insertStart(int sourceIndex) {
+        int section = countStartsAtOrBefore(sourceIndex);
+        mSectionStarts.add(section, sourceIndex);
+        return section;
+    }
+
+    /**
+     * Add the given delta to all section starts at or after the given source index.
+     */
+    private void shiftStarts(int fromSourceIndex, int delta) {
+        for (int i = mSectionStarts.size() - 1; i >= 0; i--) {
+            int start = mSectionStarts.get(i);
+            if (start < fromSourceIndex) break;
+            mSectionStarts.set(i, start + delta);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Maps a model object to the section it is displayed in, such as its day or category.
+ *
+ * @param <T> the model object class.
+ * @param <K> the section key class, must implement {@link Object#equals(Object)}.
+ */
+public interface SectionMapper<T, K> {
+    @NonNull
+    K getSection(@NonNull T model);
+}
@@ -0,0 +1,18 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Extracts a value from a model object, such as the property an aggregate is computed over.
+ *
+ * @param <T> the model object class.
+ * @param <V> the value class.
+ */
+public interface Selector<T, V> {
+    /**
+     * @return the value, or null to ignore the model
+     */
+    @Nullable
+    V select(@NonNull T model);
+}
@@ -0,0 +1,199 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns a list of snapshots into another one with as few child events as possible: snapshots
+ * whose keys are gone are removed, snapshots outside of the longest run already in the right order
+ * are moved, new keys are added and snapshots whose data differs are changed.
+ */
+final class SnapshotReconciler {
+    interface Callback<S> {
+        @NonNull
+        String getKey(@NonNull S snapshot);
+
+        @Nullable
+        Object getData(@NonNull S snapshot);
+
+        /**
+         * Called after each change to the list.
+         */
+        void onChildChanged(@NonNull ChangeEventType type,
+                            @NonNull S snapshot,
+                            int newIndex,
+                            int oldIndex,
+                            @Nullable S previousSnapshot);
+    }
+
+    private SnapshotReconciler() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    static <S> void reconcile(@NonNull List<S> current,
+                              @NonNull List<S> fresh,
+                              @NonNull Callback<S> callback) {
+        Map<String, Integer> targets = new HashMap<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            targets.put(callback.getKey(fresh.get(i)), i);
+        }
+
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (!targets.containsKey(callback.getKey(current.get(i)))) {
+                S removed = current.remove(i);
+                callback.onChildChanged(ChangeEventType.REMOVED, removed, -1, i, null);
+            }
+        }
+
+        int[] currentTargets = new int[current.size()];
+        for (int i = 0; i < current.size(); i++) {
+            currentTargets[i] = targets.get(callback.getKey(current.get(i)));
+        }
+        moveMisplaced(current, currentTargets, fresh.size(), callback);
+
+        boolean[] isPresent = new boolean[fresh.size()];
+        for (int target : currentTargets) {
+            isPresent[target] = true;
+        }
+        for (int i = 0; i < fresh.size(); i++) {
+            if (!isPresent[i]) {
+                S snapshot = fresh.get(i);
+                current.add(i, snapshot);
+                callback.onChildChanged(ChangeEventType.ADDED, snapshot, i, -1, null);
+            }
+        }
+
+        for (int i = 0; i < fresh.size(); i++) {
+            S snapshot = fresh.get(i);
+            S previous = current.set(i, snapshot);
+            if (previous == snapshot) continue;
+
+            // Without data to compare, assume the snapshot changed
+            Object previousData = callback.getData(previous);
+            if (previousData == null || !previousData.equals(callback.getData(snapshot))) {
+                callback.onChildChanged(ChangeEventType.CHANGED, snapshot, i, -1, previous);
+            }
+        }
+    }
+
+    /**
+     * Sorts the snapshots by target with the fewest moves: the snapshots outside of the longest
+     * increasing run are moved in target order, each right after the last settled snapshot which
+     * precedes it.
+     * <p>
+     * Each snapshot's place before and after its move is known upfront, so both are laid out as
+     * slots in a single order in which the occupied slots are the current list. Indices are then
+     * found by counting the occupied slots before a slot, in logarithmic time.
+     *
+     * @param targets the index of each current snapshot in the fresh list
+     */
+    private static <S> void moveMisplaced(List<S> current,
+                                          int[] targets,
+                                          int targetCount,
+                                          Callback<S> callback) {
+        int size = current.size();
+        boolean[] inOrder = longestIncreasingRun(targets);
+
+        int[] byTarget = new int[targetCount];
+        Arrays.fill(byTarget, -1);
+        int moveCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (!inOrder[i]) {
+                byTarget[targets[i]] = i;
+                moveCount++;
+            }
+        }
+        int[] moves = new int[moveCount];
+        for (int target = 0, move = 0; target < targetCount; target++) {
+            if (byTarget[target] != -1) { moves[move++] = byTarget[target]; }
+        }
+
+        // Slots 0 to size - 1 are the snapshots' current places and slot size + k is the place
+        // the k-th moved snapshot is moved to, linked in list order after a head slot.
+        int head = size + moveCount;
+        int[] next = new int[head + 1];
+        for (int slot = 0; slot < size; slot++) {
+            next[slot] = slot + 1 < size ? slot + 1 : -1;
+        }
+        next[head] = size > 0 ? 0 : -1;
+
+        // Slot of each settled snapshot, by target. Each slot is followed by at most one moved
+        // snapshot: the next snapshot moved after it has a larger target, so it follows that one.
+        TreeMap<Integer, Integer> settled = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            if (inOrder[i]) { settled.put(targets[i], i); }
+        }
+        for (int move = 0; move < moveCount; move++) {
+            int target = targets[moves[move]];
+            Map.Entry<Integer, Integer> previous = settled.lowerEntry(target);
+            int after = previous == null ? head : previous.getValue();
+
+            int slot = size + move;
+            next[slot] = next[after];
+            next[after] = slot;
+            settled.put(target, slot);
+        }
+
+        int[] positions = new int[head];
+        VisibilityList<Integer> occupied = new VisibilityList<>();
+        for (int slot = next[head]; slot != -1; slot = next[slot]) {
+            positions[slot] = occupied.size();
+            occupied.add(occupied.size(), slot, slot < size);
+        }
+
+        for (int move = 0; move < moveCount; move++) {
+            int from = positions[moves[move]];
+            int to = positions[size + move];
+
+            int oldIndex = occupied.countVisibleBefore(from);
+            occupied.setVisible(from, false);
+            int newIndex = occupied.countVisibleBefore(to);
+            occupied.setVisible(to, true);
+
+            S snapshot = current.remove(oldIndex);
+            current.add(newIndex, snapshot);
+            if (newIndex != oldIndex) {
+                callback.onChildChanged(ChangeEventType.MOVED, snapshot, newIndex, oldIndex, null);
+            }
+        }
+    }
+
+    /**
+     * @return which values are part of a longest strictly increasing subsequence
+     */
+    private static boolean[] longestIncreasingRun(int[] values) {
+        // tails[k] is the index of the smallest value ending an increasing run of length k + 1
+        int[] tails = new int[values.length];
+        int[] previous = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) length++;
+        }
+
+        boolean[] run = new boolean[values.length];
+        for (int i = length > 0 ? tails[length - 1] : -1; i != -1; i = previous[i]) {
+            run[i] = true;
+        }
+        return run;
+    }
+
+}
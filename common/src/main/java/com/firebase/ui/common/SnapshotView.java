@@ -0,0 +1,197 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * An immutable version of the snapshots in a {@link BaseObservableSnapshotArray}, safe to read from
+ * any thread. Views share structure with each other, so publishing a new one doesn't copy the
+ * array and {@link #get(int)} costs O(log n).
+ *
+ * @param <S> the snapshot class.
+ * @see BaseObservableSnapshotArray#getSnapshotView()
+ */
+public final class SnapshotView<S> extends AbstractList<S> {
+    private final Node<S> mRoot;
+    private final long mVersion;
+
+    SnapshotView(@Nullable Node<S> root, long version) {
+        mRoot = root;
+        mVersion = version;
+    }
+
+    /**
+     * @return a number incremented every time the array publishes a new view, to tell whether
+     * anything changed since a view was last read
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    @NonNull
+    @Override
+    public S get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<S> node = mRoot;
+        while (true) {
+            int leftSize = size(node.mLeft);
+            if (index < leftSize) {
+                node = node.mLeft;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.mRight;
+            } else {
+                return node.mValue;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(mRoot);
+    }
+
+    @Nullable
+    static <S> Node<S> build(@NonNull List<S> snapshots) {
+        return build(snapshots, 0, snapshots.size());
+    }
+
+    /**
+     * Applies a change event to a tree, using the index conventions of both modules: removals may
+     * be reported in either index.
+     */
+    @Nullable
+    static <S> Node<S> apply(@Nullable Node<S> root,
+                             @NonNull ChangeEventType type,
+                             @NonNull S snapshot,
+                             int newIndex,
+                             int oldIndex) {
+        switch (type) {
+            case ADDED:
+                return insert(root, newIndex, snapshot);
+            case CHANGED:
+                return set(root, newIndex, snapshot);
+            case REMOVED:
+                return remove(root, oldIndex == -1 ? newIndex : oldIndex);
+            case MOVED:
+                return insert(remove(root, oldIndex), newIndex, snapshot);
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    private static <S> Node<S> build(List<S> snapshots, int start, int end) {
+        if (start == end) return null;
+
+        int middle = (start + end) >>> 1;
+        return new Node<>(build(snapshots, start, middle),
+                snapshots.get(middle),
+                build(snapshots, middle + 1, end));
+    }
+
+    private static <S> Node<S> insert(Node<S> node, int index, S value) {
+        if (node == null) return new Node<>(null, value, null);
+
+        int leftSize = size(node.mLeft);
+        if (index <= leftSize) {
+            return balance(insert(node.mLeft, index, value), node.mValue, node.mRight);
+        } else {
+            Node<S> right = insert(node.mRight, index - leftSize - 1, value);
+            return balance(node.mLeft, node.mValue, right);
+        }
+    }
+
+    private static <S> Node<S> remove(Node<S> node, int index) {
+        int leftSize = size(node.mLeft);
+        if (index < leftSize) {
+            return balance(remove(node.mLeft, index), node.mValue, node.mRight);
+        } else if (index > leftSize) {
+            return balance(node.mLeft, node.mValue, remove(node.mRight, index - leftSize - 1));
+        } else if (node.mLeft == null) {
+            return node.mRight;
+        } else if (node.mRight == null) {
+            return node.mLeft;
+        } else {
+            S successor = first(node.mRight);
+            return balance(node.mLeft, successor, remove(node.mRight, 0));
+        }
+    }
+
+    private static <S> Node<S> set(Node<S> node, int index, S value) {
+        int leftSize = size(node.mLeft);
+        if (index < leftSize) {
+            return new Node<>(set(node.mLeft, index, value), node.mValue, node.mRight);
+        } else if (index > leftSize) {
+            Node<S> right = set(node.mRight, index - leftSize - 1, value);
+            return new Node<>(node.mLeft, node.mValue, right);
+        } else {
+            return new Node<>(node.mLeft, value, node.mRight);
+        }
+    }
+
+    private static <S> S first(Node<S> node) {
+        while (node.mLeft != null) {
+            node = node.mLeft;
+        }
+        return node.mValue;
+    }
+
+    /**
+     * Creates a node from subtrees whose heights differ by at most two, rotating them back into an
+     * AVL tree if needed.
+     */
+    private static <S> Node<S> balance(Node<S> left, S value, Node<S> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.mLeft) >= height(left.mRight)) {
+                return new Node<>(left.mLeft, left.mValue, new Node<>(left.mRight, value, right));
+            } else {
+                Node<S> middle = left.mRight;
+                return new Node<>(new Node<>(left.mLeft, left.mValue, middle.mLeft),
+                        middle.mValue,
+                        new Node<>(middle.mRight, value, right));
+            }
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.mRight) >= height(right.mLeft)) {
+                return new Node<>(new Node<>(left, value, right.mLeft), right.mValue, right.mRight);
+            } else {
+                Node<S> middle = right.mLeft;
+                return new Node<>(new Node<>(left, value, middle.mLeft),
+                        middle.mValue,
+                        new Node<>(middle.mRight, right.mValue, right.mRight));
+            }
+        }
+        return new Node<>(left, value, right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.mSize;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.mHeight;
+    }
+
+    static final class Node<S> {
+        final Node<S> mLeft;
+        final S mValue;
+        final Node<S> mRight;
+        final int mSize;
+        final int mHeight;
+
+        Node(Node<S> left, S value, Node<S> right) {
+            mLeft = left;
+            mValue = value;
+            mRight = right;
+            mSize = size(left) + size(right) + 1;
+            mHeight = Math.max(height(left), height(right)) + 1;
+        }
+    }
+}
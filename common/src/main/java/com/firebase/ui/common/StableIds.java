@@ -0,0 +1,47 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+
+/**
+ * Derives stable item IDs for adapters from snapshot keys.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class StableIds {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Adapters use -1 to mean "no ID".
+     */
+    private static final long NO_ID = -1;
+
+    private StableIds() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * Hash a key to 64 bits. Unlike {@link String#hashCode()}, collisions are unlikely even for
+     * lists with millions of items.
+     */
+    public static long forKey(@NonNull String key) {
+        // 64-bit FNV-1a over each UTF-16 unit...
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        // ...followed by MurmurHash3's finalizer to spread similar keys, like push IDs that share
+        // a long prefix, over all bits
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash == NO_ID ? 0 : hash;
+    }
+}
@@ -0,0 +1,241 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.Nullable;
+
+import java.util.Random;
+
+/**
+ * A list whose elements are each visible or hidden, which counts the visible elements before an
+ * index in logarithmic time. Positional adds and removes are logarithmic as well, unlike a Fenwick
+ * tree which would have to be rebuilt each time elements shift.
+ * <p>
+ * It is an implicit treap: nodes are ordered by their position, which is derived from the sizes of
+ * the subtrees, and balanced by random priorities. Nodes also point to their parent, so the
+ * position of an element can be found from the {@link Node} returned when adding it.
+ *
+ * @param <E> the element class.
+ */
+final class VisibilityList<E> {
+    private final Random mRandom = new Random();
+
+    private Node<E> mRoot;
+
+    // Results of split(), to avoid allocating a pair for each call
+    private Node<E> mSplitLeft;
+    private Node<E> mSplitRight;
+
+    public int size() {
+        return size(mRoot);
+    }
+
+    public E get(int index) {
+        return getNode(index).mElement;
+    }
+
+    public boolean isVisible(int index) {
+        return getNode(index).mIsVisible;
+    }
+
+    /**
+     * @return a handle to find the element's position with {@link #indexOf(Node)} until it is
+     * removed
+     */
+    public Node<E> add(int index, E element, boolean isVisible) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+
+        split(mRoot, index);
+        Node<E> left = mSplitLeft;
+        Node<E> right = mSplitRight;
+        Node<E> node = new Node<>(element, isVisible, mRandom.nextInt());
+        setRoot(merge(merge(left, node), right));
+        return node;
+    }
+
+    public E remove(int index) {
+        checkIndex(index);
+
+        split(mRoot, index);
+        Node<E> left = mSplitLeft;
+        split(mSplitRight, 1);
+        Node<E> removed = mSplitLeft;
+        setRoot(merge(left, mSplitRight));
+        return removed.mElement;
+    }
+
+    public void setVisible(int index, boolean isVisible) {
+        checkIndex(index);
+        if (isVisible(index) == isVisible) return;
+
+        // Every node on the path to the element counts it
+        int delta = isVisible ? 1 : -1;
+        Node<E> node = mRoot;
+        while (true) {
+            node.mVisibleCount += delta;
+
+            int leftSize = size(node.mLeft);
+            if (index < leftSize) {
+                node = node.mLeft;
+            } else if (index == leftSize) {
+                node.mIsVisible = isVisible;
+                return;
+            } else {
+                index -= leftSize + 1;
+                node = node.mRight;
+            }
+        }
+    }
+
+    /**
+     * @return the number of visible elements at an index lower than the given one
+     */
+    public int countVisibleBefore(int index) {
+        int count = 0;
+        Node<E> node = mRoot;
+        while (node != null) {
+            int leftSize = size(node.mLeft);
+            if (index <= leftSize) {
+                node = node.mLeft;
+            } else {
+                count += visibleCount(node.mLeft) + (node.mIsVisible ? 1 : 0);
+                index -= leftSize + 1;
+                node = node.mRight;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the current index of an element, in logarithmic time
+     */
+    public int indexOf(Node<E> node) {
+        int index = size(node.mLeft);
+        while (node.mParent != null) {
+            Node<E> parent = node.mParent;
+            if (node == parent.mRight) { index += size(parent.mLeft) + 1; }
+            node = parent;
+        }
+        return index;
+    }
+
+    public void clear() {
+        mRoot = null;
+    }
+
+    private Node<E> getNode(int index) {
+        checkIndex(index);
+
+        Node<E> node = mRoot;
+        while (true) {
+            int leftSize = size(node.mLeft);
+            if (index < leftSize) {
+                node = node.mLeft;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.mRight;
+            }
+        }
+    }
+
+    private void setRoot(@Nullable Node<E> root) {
+        mRoot = root;
+        if (root != null) { root.mParent = null; }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+    }
+
+    /**
+     * Split a subtree into its first {@code count} nodes, stored in {@link #mSplitLeft}, and the
+     * rest, stored in {@link #mSplitRight}.
+     */
+    private void split(@Nullable Node<E> node, int count) {
+        if (node == null) {
+            mSplitLeft = null;
+            mSplitRight = null;
+            return;
+        }
+
+        int leftSize = size(node.mLeft);
+        if (count <= leftSize) {
+            split(node.mLeft, count);
+            node.mLeft = mSplitRight;
+            update(node);
+            mSplitRight = node;
+        } else {
+            split(node.mRight, count - leftSize - 1);
+            node.mRight = mSplitLeft;
+            update(node);
+            mSplitLeft = node;
+        }
+    }
+
+    /**
+     * @return the subtree made of all the nodes of {@code left} followed by those of {@code right}
+     */
+    @Nullable
+    private Node<E> merge(@Nullable Node<E> left, @Nullable Node<E> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.mPriority > right.mPriority) {
+            left.mRight = merge(left.mRight, right);
+            update(left);
+            return left;
+        } else {
+            right.mLeft = merge(left, right.mLeft);
+            update(right);
+            return right;
+        }
+    }
+
+    /**
+     * Recompute the counts of a node whose children changed, and point them back to it.
+     */
+    private static <E> void update(Node<E> node) {
+        if (node.mLeft != null) { node.mLeft.mParent = node; }
+        if (node.mRight != null) { node.mRight.mParent = node; }
+        node.mSize = size(node.mLeft) + 1 + size(node.mRight);
+        node.mVisibleCount = visibleCount(node.mLeft)
+                + (node.mIsVisible ? 1 : 0)
+                + visibleCount(node.mRight);
+    }
+
+    private static int size(@Nullable Node<?> node) {
+        return node == null ? 0 : node.mSize;
+    }
+
+    private static int visibleCount(@Nullable Node<?> node) {
+        return node == null ? 0 : node.mVisibleCount;
+    }
+
+    /**
+     * A position in the list, which stays valid while the element isn't removed.
+     */
+    static final class Node<E> {
+        private final E mElement;
+        private final int mPriority;
+        private boolean mIsVisible;
+        private Node<E> mLeft;
+        private Node<E> mRight;
+        /** Null for the root. */
+        private Node<E> mParent;
+        /** The number of nodes in this subtree. */
+        private int mSize = 1;
+        /** The number of visible nodes in this subtree. */
+        private int mVisibleCount;
+
+        Node(E element, boolean isVisible, int priority) {
+            mElement = element;
+            mIsVisible = isVisible;
+            mPriority = priority;
+            mVisibleCount = isVisible ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChangedFieldsTest {
+    @Test
+    public void testDiff() {
+        ChangedFields changed = ChangedFields.diff(
+                map("a", 1, "b", 2, "c", 3), map("a", 1, "b", 20, "d", 4));
+
+        assertEquals(new HashSet<>(Arrays.asList("b", "c", "d")), changed.getFields());
+        assertFalse(changed.contains("a"));
+        assertNull(ChangedFields.diff("a", map("a", 1)));
+    }
+
+    @Test
+    public void testLazyDiffOnlyReadsOnce() {
+        CountingSource source = new CountingSource(map("a", 1), map("a", 2));
+        ChangedFields changed = ChangedFields.lazy(source);
+
+        assertEquals(0, source.mReads);
+        assertTrue(changed.contains("a"));
+        assertEquals(Collections.singleton("a"), changed.getFields());
+        assertEquals(2, source.mReads);
+    }
+
+    @Test
+    public void testLazyIncomparable() {
+        ChangedFields changed = ChangedFields.lazy(new CountingSource(null, map("a", 1)));
+
+        assertNull(changed.getFields());
+        assertTrue(changed.contains("anything"));
+        assertFalse(changed.isEmpty());
+        assertNull(ChangedFields.merge(Collections.<Object>singletonList(changed)));
+    }
+
+    @Test
+    public void testMerge() {
+        ChangedFields first = ChangedFields.lazy(new CountingSource(map("a", 1), map("a", 2)));
+        ChangedFields second = ChangedFields.diff(map("b", 1), map("b", 2));
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")),
+                ChangedFields.merge(Arrays.<Object>asList(first, second)).getFields());
+        assertNull(ChangedFields.merge(Arrays.<Object>asList(first, "other")));
+        assertNull(ChangedFields.merge(Collections.emptyList()));
+    }
+
+    private static Map<String, Object> map(Object... entries) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    private static class CountingSource implements ChangedFields.Source {
+        private final Object mPrevious;
+        private final Object mCurrent;
+        private int mReads;
+
+        public CountingSource(Object previous, Object current) {
+            mPrevious = previous;
+            mCurrent = current;
+        }
+
+        @Nullable
+        @Override
+        public Object getPreviousData() {
+            mReads++;
+            return mPrevious;
+        }
+
+        @Nullable
+        @Override
+        public Object getCurrentData() {
+            mReads++;
+            return mCurrent;
+        }
+    }
+}
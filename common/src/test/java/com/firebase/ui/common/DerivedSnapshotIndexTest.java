@@ -0,0 +1,314 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DerivedSnapshotIndexTest {
+    private static final Predicate<Integer> IS_ODD = new Predicate<Integer>() {
+        @Override
+        public boolean test(@NonNull Integer model) {
+            return model % 2 != 0;
+        }
+    };
+
+    private static final Comparator<Integer> ASCENDING = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+            return a.compareTo(b);
+        }
+    };
+
+    @Test
+    public void testFilterKeepsSourceOrder() {
+        Harness harness = new Harness(IS_ODD, null, false);
+        harness.add(0, 3);
+        harness.add(1, 4);
+        harness.add(2, 1);
+        assertEquals(Arrays.asList(3, 1), harness.getModels());
+
+        harness.move(2, 0);
+        assertEquals(Arrays.asList(1, 3), harness.getModels());
+        assertEquals("MOVED k2 0 1", harness.lastEvent());
+
+        harness.change(2, 5);
+        assertEquals(Arrays.asList(1, 3, 5), harness.getModels());
+        assertEquals("ADDED k1 2 -1", harness.lastEvent());
+    }
+
+    @Test
+    public void testSortedChangeMovesThenChanges() {
+        Harness harness = new Harness(null, ASCENDING, false);
+        harness.add(0, 1);
+        harness.add(1, 2);
+        harness.add(2, 3);
+
+        harness.change(0, 5);
+        assertEquals(Arrays.asList(2, 3, 5), harness.getModels());
+        assertEquals(Arrays.asList("MOVED k0 2 0", "CHANGED k0 2 2"), harness.lastEvents(2));
+        assertEquals("k0=1", harness.mLastPrevious);
+
+        // The view's order doesn't depend on source moves
+        int events = harness.mEvents.size();
+        harness.move(0, 2);
+        assertEquals(events, harness.mEvents.size());
+    }
+
+    @Test
+    public void testEqualModelsStayInInsertionOrder() {
+        Harness harness = new Harness(null, ASCENDING, false);
+        harness.add(0, 1);
+        harness.add(0, 1);
+        harness.add(0, 1);
+        assertEquals(Arrays.asList("k0", "k1", "k2"), harness.getKeys());
+
+        harness.change(2, 1);
+        assertEquals(Arrays.asList("k0", "k1", "k2"), harness.getKeys());
+    }
+
+    @Test
+    public void testRandomEventsMatchNaiveView() {
+        Random random = new Random(35);
+        for (int config = 0; config < 8; config++) {
+            for (int run = 0; run < 40; run++) {
+                Harness harness = new Harness(
+                        (config & 1) == 0 ? null : IS_ODD,
+                        (config & 2) == 0 ? null : ASCENDING,
+                        (config & 4) != 0);
+                replay(harness, random, 150);
+            }
+        }
+    }
+
+    private static void replay(Harness harness, Random random, int steps) {
+        for (int step = 0; step < steps; step++) {
+            int size = harness.mSource.size();
+            int value = random.nextInt(10);
+            int type = size == 0 ? 0 : random.nextInt(5);
+            if (type <= 1) {
+                harness.add(random.nextInt(size + 1), value);
+            } else if (type == 2) {
+                harness.change(random.nextInt(size), value);
+            } else if (type == 3) {
+                harness.remove(random.nextInt(size));
+            } else {
+                harness.move(random.nextInt(size), random.nextInt(size));
+            }
+            harness.check();
+        }
+    }
+
+    /**
+     * A snapshot, whose sequence is the order it was added in.
+     */
+    private static final class Item {
+        private final int mSequence;
+        private final int mValue;
+
+        Item(int sequence, int value) {
+            mSequence = sequence;
+            mValue = value;
+        }
+
+        @Override
+        public String toString() {
+            return "k" + mSequence + "=" + mValue;
+        }
+    }
+
+    private static final class SourceArray extends BaseObservableSnapshotArray<
+            Item, Exception, BaseChangeEventListener<Item, Exception>, Integer> {
+        private final List<Item> mSnapshots = new ArrayList<>();
+
+        SourceArray() {
+            super(new BaseCachingSnapshotParser<Item, Integer>(new ValueParser()) {
+                @NonNull
+                @Override
+                public String getId(@NonNull Item snapshot) {
+                    return "k" + snapshot.mSequence;
+                }
+            });
+        }
+
+        @NonNull
+        @Override
+        protected List<Item> getSnapshots() {
+            return mSnapshots;
+        }
+
+        void dispatch(ChangeEventType type, Item item, int newIndex, int oldIndex) {
+            notifyOnChildChanged(type, item, newIndex, oldIndex);
+        }
+    }
+
+    private static final class ValueParser implements BaseSnapshotParser<Item, Integer> {
+        @NonNull
+        @Override
+        public Integer parseSnapshot(@NonNull Item snapshot) {
+            return snapshot.mValue;
+        }
+    }
+
+    /**
+     * Drives a source array through an index, mirroring the view from the index's events.
+     */
+    private static final class Harness
+            implements BaseChangeEventListener<Item, Exception>,
+            DerivedSnapshotIndex.Callback<Item> {
+        private final SourceArray mSource = new SourceArray();
+        private final Predicate<Integer> mPredicate;
+        private final Comparator<Integer> mComparator;
+        private final boolean mIsRemovalReportedAtNewIndex;
+        private final DerivedSnapshotIndex<Item, Integer> mIndex;
+
+        private final List<Item> mView = new ArrayList<>();
+        private final List<String> mEvents = new ArrayList<>();
+        private String mLastPrevious;
+        private int mNextSequence;
+
+        Harness(@Nullable Predicate<Integer> predicate,
+                @Nullable Comparator<Integer> comparator,
+                boolean isRemovalReportedAtNewIndex) {
+            mPredicate = predicate;
+            mComparator = comparator;
+            mIsRemovalReportedAtNewIndex = isRemovalReportedAtNewIndex;
+            mIndex = new DerivedSnapshotIndex<>(mSource, predicate, comparator, this);
+            mSource.addChangeEventListener(this);
+        }
+
+        void add(int index, int value) {
+            Item item = new Item(mNextSequence++, value);
+            mSource.mSnapshots.add(index, item);
+            mSource.dispatch(ChangeEventType.ADDED, item, index, -1);
+        }
+
+        void change(int index, int value) {
+            Item item = new Item(mSource.mSnapshots.get(index).mSequence, value);
+            mSource.mSnapshots.set(index, item);
+            mSource.dispatch(ChangeEventType.CHANGED, item, index, -1);
+        }
+
+        void remove(int index) {
+            Item item = mSource.mSnapshots.remove(index);
+            if (mIsRemovalReportedAtNewIndex) {
+                mSource.dispatch(ChangeEventType.REMOVED, item, index, -1);
+            } else {
+                mSource.dispatch(ChangeEventType.REMOVED, item, -1, index);
+            }
+        }
+
+        void move(int oldIndex, int newIndex) {
+            Item item = mSource.mSnapshots.remove(oldIndex);
+            mSource.mSnapshots.add(newIndex, item);
+            mSource.dispatch(ChangeEventType.MOVED, item, newIndex, oldIndex);
+        }
+
+        List<Integer> getModels() {
+            check();
+            List<Integer> models = new ArrayList<>();
+            for (Item item : mView) {
+                models.add(item.mValue);
+            }
+            return models;
+        }
+
+        List<String> getKeys() {
+            check();
+            List<String> keys = new ArrayList<>();
+            for (Item item : mView) {
+                keys.add("k" + item.mSequence);
+            }
+            return keys;
+        }
+
+        String lastEvent() {
+            return mEvents.get(mEvents.size() - 1);
+        }
+
+        List<String> lastEvents(int count) {
+            return mEvents.subList(mEvents.size() - count, mEvents.size());
+        }
+
+        /**
+         * Compares the index and the mirrored view to a naive filter and stable sort of the
+         * source.
+         */
+        void check() {
+            List<Item> expected = new ArrayList<>();
+            for (Item item : mSource.mSnapshots) {
+                if (mPredicate == null || mPredicate.test(item.mValue)) { expected.add(item); }
+            }
+            if (mComparator != null) {
+                Collections.sort(expected, new Comparator<Item>() {
+                    @Override
+                    public int compare(Item a, Item b) {
+                        int result = mComparator.compare(a.mValue, b.mValue);
+                        return result != 0 ? result : a.mSequence - b.mSequence;
+                    }
+                });
+            }
+
+            assertEquals(expected, mView);
+            assertEquals(expected, mIndex.getSnapshots());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(Integer.valueOf(expected.get(i).mValue), mIndex.getModel(i));
+            }
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mIndex.onSourceChanged(type, snapshot, newIndex, oldIndex);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex,
+                                   @Nullable Item previousSnapshot) {
+            mEvents.add(type + " k" + snapshot.mSequence + " " + newIndex + " " + oldIndex);
+            switch (type) {
+                case ADDED:
+                    assertNull(previousSnapshot);
+                    mView.add(newIndex, snapshot);
+                    break;
+                case CHANGED:
+                    assertEquals(newIndex, oldIndex);
+                    assertEquals(mView.get(newIndex).mSequence, snapshot.mSequence);
+                    mLastPrevious = String.valueOf(previousSnapshot);
+                    mView.set(newIndex, snapshot);
+                    break;
+                case REMOVED:
+                    assertEquals(-1, newIndex);
+                    assertEquals(mView.remove(oldIndex).mSequence, snapshot.mSequence);
+                    break;
+                case MOVED:
+                    assertEquals(mView.get(oldIndex).mSequence, snapshot.mSequence);
+                    mView.add(newIndex, mView.remove(oldIndex));
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+
+        @Override
+        public void onDataChanged() {}
+
+        @Override
+        public void onError(@NonNull Exception e) {}
+    }
+}
@@ -0,0 +1,370 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MergedSnapshotIndexTest {
+    private static final Comparator<Integer> ASCENDING = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+            return a.compareTo(b);
+        }
+    };
+
+    @Test
+    public void testDataChangedWaitsForEverySource() {
+        Harness harness = new Harness(3);
+        MergedSnapshotIndex<Item, Integer> index = harness.mIndex;
+
+        assertFalse(index.onSourceDataChanged(1));
+        assertFalse(index.onSourceDataChanged(1));
+        assertFalse(index.onSourceDataChanged(0));
+        assertTrue(index.onSourceDataChanged(2));
+        assertTrue(index.onSourceDataChanged(1));
+
+        index.clear();
+        assertFalse(index.onSourceDataChanged(0));
+        assertFalse(index.onSourceDataChanged(2));
+        assertTrue(index.onSourceDataChanged(1));
+    }
+
+    @Test
+    public void testFirstSourceWinsForDuplicateKeys() {
+        Harness harness = new Harness(2);
+        harness.add(1, 0, "a", 5);
+        harness.add(1, 1, "b", 1);
+        assertEquals(Arrays.asList("b=1@1", "a=5@1"), harness.getRows());
+
+        // Replaces the visible duplicate in place of adding a row
+        harness.add(0, 0, "a", 0);
+        assertEquals(Arrays.asList("a=0@0", "b=1@1"), harness.getRows());
+        assertEquals(Arrays.asList("MOVED a 0 1", "CHANGED a 0 0"), harness.lastEvents(2));
+        assertEquals("a=5@1", harness.mLastPrevious);
+
+        // Changes to the hidden duplicate aren't visible
+        int events = harness.mEvents.size();
+        harness.change(1, 0, 9);
+        assertEquals(events, harness.mEvents.size());
+
+        // Removing the visible one shows the hidden one again
+        harness.remove(0, 0);
+        assertEquals(Arrays.asList("b=1@1", "a=9@1"), harness.getRows());
+        assertEquals(Arrays.asList("MOVED a 1 0", "CHANGED a 1 1"), harness.lastEvents(2));
+    }
+
+    @Test
+    public void testKeyMovingBetweenSources() {
+        Harness harness = new Harness(3);
+        harness.add(0, 0, "a", 1);
+        harness.add(2, 0, "b", 2);
+        harness.add(2, 1, "c", 3);
+
+        // Added to the new source before being removed from the old one, like listeners might
+        harness.add(1, 0, "c", 0);
+        harness.remove(2, 1);
+        assertEquals(Arrays.asList("c=0@1", "a=1@0", "b=2@2"), harness.getRows());
+
+        // Removed from the old source first
+        harness.remove(0, 0);
+        harness.add(2, 0, "a", 4);
+        assertEquals(Arrays.asList("c=0@1", "b=2@2", "a=4@2"), harness.getRows());
+        assertEquals("ADDED a 2 -1", harness.lastEvent());
+    }
+
+    @Test
+    public void testSourceMovesDontChangeTheView() {
+        Harness harness = new Harness(2);
+        harness.add(0, 0, "a", 1);
+        harness.add(0, 1, "b", 2);
+        harness.add(0, 2, "c", 3);
+        int events = harness.mEvents.size();
+
+        harness.move(0, 2, 0);
+        harness.move(0, 0, 1);
+        assertEquals(events, harness.mEvents.size());
+
+        // Later events must still find the entries at their new source indices
+        harness.change(0, 0, 9);
+        assertEquals(Arrays.asList("b=2@0", "c=3@0", "a=9@0"), harness.getRows());
+    }
+
+    @Test
+    public void testRandomEventsMatchNaiveMerge() {
+        Random random = new Random(36);
+        for (boolean atNewIndex : new boolean[]{false, true}) {
+            for (int run = 0; run < 100; run++) {
+                Harness harness = new Harness(1 + random.nextInt(3));
+                harness.mIsRemovalReportedAtNewIndex = atNewIndex;
+                for (int step = 0; step < 150; step++) {
+                    step(harness, random);
+                    harness.check();
+                }
+            }
+        }
+    }
+
+    private static void step(Harness harness, Random random) {
+        int source = random.nextInt(harness.mSources.size());
+        List<Item> snapshots = harness.mSources.get(source).mSnapshots;
+        int size = snapshots.size();
+        int value = random.nextInt(5);
+        switch (size == 0 ? 0 : random.nextInt(5)) {
+            case 0: {
+                // A small key space makes duplicates across sources common
+                String key = "k" + random.nextInt(12);
+                if (harness.indexOf(source, key) == -1) {
+                    harness.add(source, random.nextInt(size + 1), key, value);
+                }
+                break;
+            }
+            case 1:
+                harness.change(source, random.nextInt(size), value);
+                break;
+            case 2:
+                harness.remove(source, random.nextInt(size));
+                break;
+            case 3:
+                harness.move(source, random.nextInt(size), random.nextInt(size));
+                break;
+            case 4: {
+                // Move a key to another source
+                int target = random.nextInt(harness.mSources.size());
+                Item item = snapshots.get(random.nextInt(size));
+                if (harness.indexOf(target, item.mKey) != -1) break;
+                int targetSize = harness.mSources.get(target).mSnapshots.size();
+                harness.remove(source, snapshots.indexOf(item));
+                harness.add(target, random.nextInt(targetSize + 1), item.mKey, value);
+                break;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private static final class Item {
+        private final int mSource;
+        private final String mKey;
+        private final int mValue;
+
+        Item(int source, String key, int value) {
+            mSource = source;
+            mKey = key;
+            mValue = value;
+        }
+
+        @Override
+        public String toString() {
+            return mKey + "=" + mValue + "@" + mSource;
+        }
+    }
+
+    private static final class SourceArray extends BaseObservableSnapshotArray<
+            Item, Exception, BaseChangeEventListener<Item, Exception>, Integer> {
+        private final List<Item> mSnapshots = new ArrayList<>();
+
+        SourceArray() {
+            super(new BaseCachingSnapshotParser<Item, Integer>(new ValueParser()) {
+                @NonNull
+                @Override
+                public String getId(@NonNull Item snapshot) {
+                    return snapshot.mKey;
+                }
+            });
+        }
+
+        @NonNull
+        @Override
+        protected List<Item> getSnapshots() {
+            return mSnapshots;
+        }
+
+        @Nullable
+        @Override
+        protected String getSnapshotKey(@NonNull Item snapshot) {
+            return snapshot.mKey;
+        }
+
+        void dispatch(ChangeEventType type, Item item, int newIndex, int oldIndex) {
+            notifyOnChildChanged(type, item, newIndex, oldIndex);
+        }
+    }
+
+    private static final class ValueParser implements BaseSnapshotParser<Item, Integer> {
+        @NonNull
+        @Override
+        public Integer parseSnapshot(@NonNull Item snapshot) {
+            return snapshot.mValue;
+        }
+    }
+
+    /**
+     * Drives source arrays through an index, mirroring the view from the index's events.
+     */
+    private static final class Harness implements DerivedSnapshotIndex.Callback<Item> {
+        private final List<SourceArray> mSources = new ArrayList<>();
+        private final MergedSnapshotIndex<Item, Integer> mIndex;
+        private boolean mIsRemovalReportedAtNewIndex;
+
+        private final List<Item> mView = new ArrayList<>();
+        private final List<String> mEvents = new ArrayList<>();
+        private String mLastPrevious;
+
+        Harness(int sources) {
+            for (int i = 0; i < sources; i++) {
+                mSources.add(new SourceArray());
+            }
+            mIndex = new MergedSnapshotIndex<>(mSources, ASCENDING, this);
+            for (int i = 0; i < sources; i++) {
+                final int source = i;
+                mSources.get(i).addChangeEventListener(
+                        new BaseChangeEventListener<Item, Exception>() {
+                            @Override
+                            public void onChildChanged(@NonNull ChangeEventType type,
+                                                       @NonNull Item snapshot,
+                                                       int newIndex,
+                                                       int oldIndex) {
+                                mIndex.onSourceChanged(
+                                        source, type, snapshot, newIndex, oldIndex);
+                            }
+
+                            @Override
+                            public void onDataChanged() {}
+
+                            @Override
+                            public void onError(@NonNull Exception e) {}
+                        });
+            }
+        }
+
+        int indexOf(int source, String key) {
+            List<Item> snapshots = mSources.get(source).mSnapshots;
+            for (int i = 0; i < snapshots.size(); i++) {
+                if (snapshots.get(i).mKey.equals(key)) return i;
+            }
+            return -1;
+        }
+
+        void add(int source, int index, String key, int value) {
+            Item item = new Item(source, key, value);
+            mSources.get(source).mSnapshots.add(index, item);
+            mSources.get(source).dispatch(ChangeEventType.ADDED, item, index, -1);
+        }
+
+        void change(int source, int index, int value) {
+            List<Item> snapshots = mSources.get(source).mSnapshots;
+            Item item = new Item(source, snapshots.get(index).mKey, value);
+            snapshots.set(index, item);
+            mSources.get(source).dispatch(ChangeEventType.CHANGED, item, index, -1);
+        }
+
+        void remove(int source, int index) {
+            Item item = mSources.get(source).mSnapshots.remove(index);
+            if (mIsRemovalReportedAtNewIndex) {
+                mSources.get(source).dispatch(ChangeEventType.REMOVED, item, index, -1);
+            } else {
+                mSources.get(source).dispatch(ChangeEventType.REMOVED, item, -1, index);
+            }
+        }
+
+        void move(int source, int oldIndex, int newIndex) {
+            List<Item> snapshots = mSources.get(source).mSnapshots;
+            Item item = snapshots.remove(oldIndex);
+            snapshots.add(newIndex, item);
+            mSources.get(source).dispatch(ChangeEventType.MOVED, item, newIndex, oldIndex);
+        }
+
+        List<String> getRows() {
+            check();
+            List<String> rows = new ArrayList<>();
+            for (Item item : mView) {
+                rows.add(item.toString());
+            }
+            return rows;
+        }
+
+        String lastEvent() {
+            return mEvents.get(mEvents.size() - 1);
+        }
+
+        List<String> lastEvents(int count) {
+            return mEvents.subList(mEvents.size() - count, mEvents.size());
+        }
+
+        /**
+         * Compares the index and the mirrored view to a naive merge: the first source containing
+         * each key wins, ordered by value then key.
+         */
+        void check() {
+            Map<String, Item> visible = new LinkedHashMap<>();
+            for (SourceArray source : mSources) {
+                Set<String> keys = new HashSet<>();
+                for (Item item : source.mSnapshots) {
+                    assertTrue("Duplicate key in a source", keys.add(item.mKey));
+                    if (!visible.containsKey(item.mKey)) { visible.put(item.mKey, item); }
+                }
+            }
+            List<Item> expected = new ArrayList<>(visible.values());
+            Collections.sort(expected, new Comparator<Item>() {
+                @Override
+                public int compare(Item a, Item b) {
+                    int result = ASCENDING.compare(a.mValue, b.mValue);
+                    return result != 0 ? result : a.mKey.compareTo(b.mKey);
+                }
+            });
+
+            assertEquals(expected, mView);
+            assertEquals(expected, mIndex.getSnapshots());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(Integer.valueOf(expected.get(i).mValue), mIndex.getModel(i));
+            }
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex,
+                                   @Nullable Item previousSnapshot) {
+            mEvents.add(type + " " + snapshot.mKey + " " + newIndex + " " + oldIndex);
+            switch (type) {
+                case ADDED:
+                    mView.add(newIndex, snapshot);
+                    break;
+                case CHANGED:
+                    assertEquals(newIndex, oldIndex);
+                    assertEquals(mView.get(newIndex).mKey, snapshot.mKey);
+                    assertEquals(mView.get(newIndex), previousSnapshot);
+                    mLastPrevious = String.valueOf(previousSnapshot);
+                    mView.set(newIndex, snapshot);
+                    break;
+                case REMOVED:
+                    assertEquals(-1, newIndex);
+                    assertEquals(mView.remove(oldIndex), snapshot);
+                    break;
+                case MOVED:
+                    assertEquals(mView.get(oldIndex).mKey, snapshot.mKey);
+                    mView.add(newIndex, mView.remove(oldIndex));
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProvisionalRowsTest {
+    @Test
+    public void testEditIsConfirmedByNextChange() {
+        TestArray array = new TestArray(false, item("a", "1"), item("b", "1"));
+        Display display = new Display(array);
+
+        array.setProvisional("b", "2");
+        assertEquals(Arrays.asList("a=1", "b=2"), display.getRows());
+        int parses = array.mParses;
+
+        // Models without equals() are confirmed, only the listener's rebind reads the snapshot
+        array.serverChange(1, item("b", "2"));
+        assertEquals(parses + 1, array.mParses);
+        assertEquals(Arrays.asList("a=1", "b=2"), display.getRows());
+
+        array.serverChange(1, item("b", "3"));
+        assertEquals(Arrays.asList("a=1", "b=3"), display.getRows());
+    }
+
+    @Test
+    public void testInsertIsReplacedByAddedSnapshot() {
+        TestArray array = new TestArray(false, item("a", "1"), item("b", "1"));
+        Display display = new Display(array);
+
+        array.addProvisionalModel(1, "x", new Model("1"));
+        assertEquals(Arrays.asList("a=1", "x=1", "b=1"), display.getRows());
+        assertFalse(array.hasSnapshot(1));
+
+        array.serverAdd(2, item("x", "2"));
+        assertEquals(Arrays.asList("a=1", "b=1", "x=2"), display.getRows());
+        assertEquals(Arrays.asList("MOVED x 2 1", "CHANGED x 2 -1"), display.lastEvents(2));
+        assertTrue(array.hasSnapshot(2));
+    }
+
+    @Test
+    public void testHiddenRemovalIsntNotifiedTwice() {
+        for (boolean atNewIndex : new boolean[]{false, true}) {
+            TestArray array = new TestArray(atNewIndex, item("a", "1"), item("b", "1"));
+            Display display = new Display(array);
+
+            array.removeProvisionally("a");
+            assertEquals(Arrays.asList("b=1"), display.getRows());
+            int events = display.mEvents.size();
+
+            array.serverRemove(0);
+            assertEquals(events, display.mEvents.size());
+            assertEquals(Arrays.asList("b=1"), display.getRows());
+        }
+    }
+
+    @Test
+    public void testHiddenRowFollowsMoves() {
+        TestArray array = new TestArray(
+                false, item("a", "1"), item("b", "1"), item("c", "1"));
+        Display display = new Display(array);
+
+        array.removeProvisionally("a");
+        array.serverMove(0, 2);
+        assertEquals(Arrays.asList("b=1", "c=1"), display.getRows());
+
+        array.clearProvisionalModel("a");
+        assertEquals(Arrays.asList("b=1", "c=1", "a=1"), display.getRows());
+    }
+
+    @Test
+    public void testInsertedRowStaysBeforeSnapshotsAddedAfterIt() {
+        TestArray array = new TestArray(false, item("a", "1"), item("b", "1"));
+        Display display = new Display(array);
+
+        array.addProvisionalModel(1, "x", new Model("1"));
+        array.serverAdd(1, item("c", "1"));
+        array.serverRemove(0);
+        assertEquals(Arrays.asList("x=1", "c=1", "b=1"), display.getRows());
+
+        array.clearProvisionalModel("x");
+        assertEquals(Arrays.asList("c=1", "b=1"), display.getRows());
+    }
+
+    @Test
+    public void testRandomInterleavings() {
+        for (boolean atNewIndex : new boolean[]{false, true}) {
+            Random random = new Random(atNewIndex ? 11 : 5);
+            for (int run = 0; run < 200; run++) {
+                replay(new TestArray(atNewIndex), random, 60);
+            }
+        }
+    }
+
+    /**
+     * Applies random server events and provisional edits, checking after each step that the
+     * listener's copy matches the array and that every row displays the expected model.
+     */
+    private static void replay(TestArray array, Random random, int steps) {
+        Display display = new Display(array);
+        Map<String, String> expected = new HashMap<>();
+        int nextId = 0;
+
+        for (int step = 0; step < steps; step++) {
+            List<Item> snapshots = array.getSnapshots();
+            int count = snapshots.size();
+            String value = String.valueOf(step);
+            switch (random.nextInt(9)) {
+                case 0: {
+                    // A new snapshot, or the one confirming a provisional insert
+                    String id = pickInsertedId(array, random);
+                    if (id == null) { id = "k" + nextId++; }
+                    array.serverAdd(random.nextInt(count + 1), item(id, value));
+                    expected.remove(id);
+                    break;
+                }
+                case 1:
+                    if (count == 0) break;
+                    int index = random.nextInt(count);
+                    array.serverChange(index, item(snapshots.get(index).mKey, value));
+                    expected.remove(snapshots.get(index).mKey);
+                    break;
+                case 2:
+                    if (count == 0) break;
+                    expected.remove(array.serverRemove(random.nextInt(count)).mKey);
+                    break;
+                case 3:
+                    if (count < 2) break;
+                    array.serverMove(random.nextInt(count), random.nextInt(count));
+                    break;
+                case 4: {
+                    if (count == 0) break;
+                    String id = snapshots.get(random.nextInt(count)).mKey;
+                    array.setProvisional(id, value);
+                    expected.put(id, value);
+                    break;
+                }
+                case 5: {
+                    String id = "k" + nextId++;
+                    array.addProvisionalModel(
+                            random.nextInt(array.size() + 1), id, new Model(value));
+                    expected.put(id, value);
+                    break;
+                }
+                case 6:
+                    if (array.isEmpty()) break;
+                    array.removeProvisionally(array.getId(random.nextInt(array.size())));
+                    break;
+                case 7: {
+                    if (count == 0) break;
+                    String id = snapshots.get(random.nextInt(count)).mKey;
+                    array.removeProvisionally(id);
+                    break;
+                }
+                case 8: {
+                    String id = "k" + random.nextInt(nextId + 1);
+                    array.clearProvisionalModel(id);
+                    expected.remove(id);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException();
+            }
+
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < array.size(); i++) {
+                String id = array.getId(i);
+                String model = array.get(i).mValue;
+                if (expected.containsKey(id)) {
+                    assertEquals(expected.get(id), model);
+                } else {
+                    assertTrue(array.hasSnapshot(i));
+                    assertEquals(array.getSnapshot(i).mData, model);
+                }
+                rows.add(id + "=" + model);
+            }
+            assertEquals(rows, display.getRows());
+        }
+    }
+
+    @Nullable
+    private static String pickInsertedId(TestArray array, Random random) {
+        List<String> inserted = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            if (!array.hasSnapshot(i)) { inserted.add(array.getId(i)); }
+        }
+        return inserted.isEmpty() || random.nextBoolean()
+                ? null : inserted.get(random.nextInt(inserted.size()));
+    }
+
+    private static Item item(String key, String data) {
+        return new Item(key, data);
+    }
+
+    private static final class Item {
+        private final String mKey;
+        private final String mData;
+
+        Item(String key, String data) {
+            mKey = key;
+            mData = data;
+        }
+    }
+
+    /**
+     * Deliberately doesn't implement {@link Object#equals(Object)}.
+     */
+    private static final class Model {
+        private final String mValue;
+
+        Model(String value) {
+            mValue = value;
+        }
+    }
+
+    private static final class TestArray
+            extends BaseObservableSnapshotArray<Item, Exception, Display, Model> {
+        private final List<Item> mSnapshots = new ArrayList<>();
+        private final boolean mIsRemovalReportedAtNewIndex;
+        private int mParses;
+
+        TestArray(boolean isRemovalReportedAtNewIndex, Item... items) {
+            super(new BaseCachingSnapshotParser<Item, Model>(new Parser()) {
+                @NonNull
+                @Override
+                public String getId(@NonNull Item snapshot) {
+                    return snapshot.mKey;
+                }
+            });
+            mIsRemovalReportedAtNewIndex = isRemovalReportedAtNewIndex;
+            mSnapshots.addAll(Arrays.asList(items));
+        }
+
+        @NonNull
+        @Override
+        protected List<Item> getSnapshots() {
+            return mSnapshots;
+        }
+
+        @NonNull
+        @Override
+        protected Model getModel(int index) {
+            mParses++;
+            return super.getModel(index);
+        }
+
+        @Override
+        protected boolean isRemovalReportedAtNewIndex() {
+            return mIsRemovalReportedAtNewIndex;
+        }
+
+        void setProvisional(String id, String value) {
+            setProvisionalModel(id, new Model(value));
+        }
+
+        void serverAdd(int index, Item item) {
+            mSnapshots.add(index, item);
+            notifyOnChildChanged(ChangeEventType.ADDED, item, index, -1);
+        }
+
+        void serverChange(int index, Item item) {
+            Item previous = mSnapshots.set(index, item);
+            notifyOnChildChanged(ChangeEventType.CHANGED, item, index, -1, previous);
+        }
+
+        Item serverRemove(int index) {
+            Item item = mSnapshots.remove(index);
+            if (mIsRemovalReportedAtNewIndex) {
+                notifyOnChildChanged(ChangeEventType.REMOVED, item, index, -1);
+            } else {
+                notifyOnChildChanged(ChangeEventType.REMOVED, item, -1, index);
+            }
+            return item;
+        }
+
+        void serverMove(int oldIndex, int newIndex) {
+            Item item = mSnapshots.remove(oldIndex);
+            mSnapshots.add(newIndex, item);
+            notifyOnChildChanged(ChangeEventType.MOVED, item, newIndex, oldIndex);
+        }
+    }
+
+    private static final class Parser implements BaseSnapshotParser<Item, Model> {
+        @NonNull
+        @Override
+        public Model parseSnapshot(@NonNull Item snapshot) {
+            return new Model(snapshot.mData);
+        }
+    }
+
+    /**
+     * Mirrors the rows an adapter would display from the events it receives.
+     */
+    private static final class Display
+            implements BaseChangeEventListener<Item, Exception>, ProvisionalRowListener {
+        private final TestArray mArray;
+        private final List<String> mIds = new ArrayList<>();
+        private final List<String> mValues = new ArrayList<>();
+        private final List<String> mEvents = new ArrayList<>();
+
+        Display(TestArray array) {
+            mArray = array;
+            array.addChangeEventListener(this);
+        }
+
+        List<String> getRows() {
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < mIds.size(); i++) {
+                rows.add(mIds.get(i) + "=" + mValues.get(i));
+            }
+            return rows;
+        }
+
+        List<String> lastEvents(int count) {
+            return mEvents.subList(mEvents.size() - count, mEvents.size());
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            if (type == ChangeEventType.REMOVED) {
+                // Each module reports removals at its own index
+                if (mArray.isRemovalReportedAtNewIndex()) {
+                    assertEquals(-1, oldIndex);
+                } else {
+                    assertEquals(-1, newIndex);
+                }
+            }
+            onRowChanged(type, snapshot.mKey, newIndex, oldIndex);
+        }
+
+        @Override
+        public void onProvisionalRowChanged(@NonNull ChangeEventType type,
+                                            @NonNull String id,
+                                            int newIndex,
+                                            int oldIndex) {
+            onRowChanged(type, id, newIndex, oldIndex);
+        }
+
+        private void onRowChanged(ChangeEventType type, String id, int newIndex, int oldIndex) {
+            mEvents.add(type + " " + id + " " + newIndex + " " + oldIndex);
+            switch (type) {
+                case ADDED:
+                    mIds.add(newIndex, id);
+                    mValues.add(newIndex, mArray.get(newIndex).mValue);
+                    break;
+                case CHANGED:
+                    assertEquals(id, mIds.get(newIndex));
+                    mValues.set(newIndex, mArray.get(newIndex).mValue);
+                    break;
+                case REMOVED:
+                    int index = newIndex == -1 ? oldIndex : newIndex;
+                    assertEquals(id, mIds.remove(index));
+                    mValues.remove(index);
+                    break;
+                case MOVED:
+                    assertEquals(id, mIds.get(oldIndex));
+                    mIds.add(newIndex, mIds.remove(oldIndex));
+                    mValues.add(newIndex, mValues.remove(oldIndex));
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+
+        @Override
+        public void onDataChanged() {}
+
+        @Override
+        public void onError(@NonNull Exception e) {}
+    }
+}
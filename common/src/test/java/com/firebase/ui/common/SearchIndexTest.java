@@ -0,0 +1,342 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchIndexTest {
+    private static final String[] WORDS = {"apple", "apricot", "banana", "band", "cherry", "Ch"};
+
+    @Test
+    public void testSplitsOnNonLetters() {
+        Harness harness = new Harness();
+        harness.add(0, "a", "Hello, World!");
+        harness.add(1, "b", "hello-kitty");
+        harness.add(2, "c", "Word_play 42");
+
+        harness.setQuery("world");
+        assertEquals(Arrays.asList("a"), harness.getKeys());
+        harness.setQuery("KITTY");
+        assertEquals(Arrays.asList("b"), harness.getKeys());
+        harness.setQuery("play 42");
+        assertEquals(Arrays.asList("c"), harness.getKeys());
+        harness.setQuery("hello, kitty!");
+        assertEquals(Arrays.asList("b"), harness.getKeys());
+    }
+
+    @Test
+    public void testMatchesPrefixesOfEachWord() {
+        Harness harness = new Harness();
+        harness.add(0, "a", "Hello World");
+        harness.add(1, "b", "hello kitty");
+        harness.add(2, "c", "Word play");
+
+        harness.setQuery("wor");
+        assertEquals(Arrays.asList("a", "c"), harness.getKeys());
+        harness.setQuery("HEL wor");
+        assertEquals(Arrays.asList("a"), harness.getKeys());
+        harness.setQuery("orld");
+        assertEquals(Collections.emptyList(), harness.getKeys());
+        harness.setQuery("   ");
+        assertEquals(Arrays.asList("a", "b", "c"), harness.getKeys());
+    }
+
+    @Test
+    public void testSetQueryKeepsSourceOrder() {
+        Harness harness = new Harness();
+        harness.add(0, "a", "banana");
+        harness.add(1, "b", "apple");
+        harness.add(2, "c", "band");
+        harness.add(3, "d", "apricot");
+
+        harness.setQuery("ap");
+        assertEquals(Arrays.asList("b", "d"), harness.getKeys());
+        harness.setQuery("ban");
+        assertEquals(Arrays.asList("a", "c"), harness.getKeys());
+        harness.setQuery(null);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), harness.getKeys());
+    }
+
+    @Test
+    public void testChangesShowAndHideEntries() {
+        Harness harness = new Harness();
+        harness.add(0, "a", "apple");
+        harness.add(1, "b", "banana");
+        harness.add(2, "c", "apricot");
+        harness.setQuery("ap");
+
+        harness.change(1, "apple pie");
+        assertEquals(Arrays.asList("a", "b", "c"), harness.getKeys());
+        assertEquals("ADDED b 1 -1", harness.lastEvent());
+
+        harness.change(0, "cherry");
+        assertEquals(Arrays.asList("b", "c"), harness.getKeys());
+        assertEquals("REMOVED a -1 0", harness.lastEvent());
+
+        harness.change(2, "apricot jam");
+        assertEquals(Arrays.asList("b", "c"), harness.getKeys());
+        assertEquals("CHANGED c 1 1", harness.lastEvent());
+    }
+
+    @Test
+    public void testMovesAcrossHiddenEntries() {
+        Harness harness = new Harness();
+        harness.add(0, "a", "apple");
+        harness.add(1, "b", "banana");
+        harness.add(2, "c", "apricot");
+        harness.add(3, "d", "cherry");
+        harness.setQuery("ap");
+
+        // Only moves past another match are visible
+        int events = harness.mEvents.size();
+        harness.move(0, 1);
+        harness.move(3, 0);
+        assertEquals(events, harness.mEvents.size());
+
+        harness.move(2, 3);
+        assertEquals(Arrays.asList("c", "a"), harness.getKeys());
+        assertEquals("MOVED a 1 0", harness.lastEvent());
+
+        harness.remove(2);
+        assertEquals(Arrays.asList("a"), harness.getKeys());
+        assertEquals("REMOVED c -1 0", harness.lastEvent());
+    }
+
+    @Test
+    public void testRandomEventsMatchNaiveFilter() {
+        Random random = new Random(39);
+        for (int run = 0; run < 100; run++) {
+            Harness harness = new Harness();
+            int nextKey = 0;
+            for (int step = 0; step < 150; step++) {
+                int size = harness.mSource.size();
+                switch (random.nextInt(6)) {
+                    case 0:
+                    case 1:
+                        harness.add(random.nextInt(size + 1), "k" + nextKey++, text(random));
+                        break;
+                    case 2:
+                        if (size > 0) { harness.change(random.nextInt(size), text(random)); }
+                        break;
+                    case 3:
+                        if (size > 0) { harness.remove(random.nextInt(size)); }
+                        break;
+                    case 4:
+                        if (size > 1) { harness.move(random.nextInt(size), random.nextInt(size)); }
+                        break;
+                    case 5:
+                        harness.setQuery(random.nextInt(4) == 0 ? null : text(random));
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+                harness.check();
+            }
+        }
+    }
+
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(3); i >= 0; i--) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(word, 0, 1 + random.nextInt(word.length())).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static final class Item {
+        private final String mKey;
+        private final String mText;
+
+        Item(String key, String text) {
+            mKey = key;
+            mText = text;
+        }
+    }
+
+    private static final class SourceArray extends BaseObservableSnapshotArray<
+            Item, Exception, BaseChangeEventListener<Item, Exception>, String> {
+        private final List<Item> mSnapshots = new ArrayList<>();
+
+        SourceArray() {
+            super(new BaseCachingSnapshotParser<Item, String>(new TextParser()) {
+                @NonNull
+                @Override
+                public String getId(@NonNull Item snapshot) {
+                    return snapshot.mKey;
+                }
+            });
+        }
+
+        @NonNull
+        @Override
+        protected List<Item> getSnapshots() {
+            return mSnapshots;
+        }
+
+        void notify(ChangeEventType type, Item item, int newIndex, int oldIndex) {
+            notifyOnChildChanged(type, item, newIndex, oldIndex);
+        }
+    }
+
+    private static final class TextParser implements BaseSnapshotParser<Item, String> {
+        @NonNull
+        @Override
+        public String parseSnapshot(@NonNull Item snapshot) {
+            return snapshot.mText;
+        }
+    }
+
+    /**
+     * Drives a source array through an index, mirroring the view from the index's events.
+     */
+    private static final class Harness
+            implements BaseChangeEventListener<Item, Exception>,
+            DerivedSnapshotIndex.Callback<Item> {
+        private final SourceArray mSource = new SourceArray();
+        private final SearchIndex<Item, String> mIndex;
+        private final List<Item> mView = new ArrayList<>();
+        private final List<String> mEvents = new ArrayList<>();
+        private String mQuery;
+
+        Harness() {
+            mIndex = new SearchIndex<>(mSource,
+                    Collections.<Selector<String, String>>singletonList(
+                            new Selector<String, String>() {
+                                @Override
+                                public String select(@NonNull String model) {
+                                    return model;
+                                }
+                            }),
+                    this);
+            mSource.addChangeEventListener(this);
+        }
+
+        void add(int index, String key, String text) {
+            Item item = new Item(key, text);
+            mSource.mSnapshots.add(index, item);
+            mSource.notify(ChangeEventType.ADDED, item, index, -1);
+        }
+
+        void change(int index, String text) {
+            Item item = new Item(mSource.mSnapshots.get(index).mKey, text);
+            mSource.mSnapshots.set(index, item);
+            mSource.notify(ChangeEventType.CHANGED, item, index, -1);
+        }
+
+        void remove(int index) {
+            mSource.notify(ChangeEventType.REMOVED, mSource.mSnapshots.remove(index), -1, index);
+        }
+
+        void move(int oldIndex, int newIndex) {
+            Item item = mSource.mSnapshots.remove(oldIndex);
+            mSource.mSnapshots.add(newIndex, item);
+            mSource.notify(ChangeEventType.MOVED, item, newIndex, oldIndex);
+        }
+
+        void setQuery(@Nullable String query) {
+            mQuery = query;
+            mIndex.setQuery(query);
+        }
+
+        List<String> getKeys() {
+            check();
+            List<String> keys = new ArrayList<>();
+            for (Item item : mView) {
+                keys.add(item.mKey);
+            }
+            return keys;
+        }
+
+        String lastEvent() {
+            return mEvents.get(mEvents.size() - 1);
+        }
+
+        /**
+         * Compares the index and the mirrored view to a naive filter of the source.
+         */
+        void check() {
+            List<Item> expected = new ArrayList<>();
+            for (Item item : mSource.mSnapshots) {
+                if (matches(item.mText)) { expected.add(item); }
+            }
+            assertEquals(expected, mView);
+            assertEquals(expected, mIndex.getSnapshots());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).mText, mIndex.getModel(i));
+            }
+        }
+
+        private boolean matches(String text) {
+            if (mQuery == null) return true;
+            List<String> words = naiveSplit(text);
+            for (String query : naiveSplit(mQuery)) {
+                boolean isFound = false;
+                for (String word : words) {
+                    isFound |= word.startsWith(query);
+                }
+                if (!isFound) return false;
+            }
+            return true;
+        }
+
+        private static List<String> naiveSplit(String text) {
+            List<String> words = new ArrayList<>();
+            for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+                if (!word.isEmpty()) { words.add(word); }
+            }
+            return words;
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mIndex.onSourceChanged(type, snapshot, newIndex, oldIndex);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex,
+                                   @Nullable Item previousSnapshot) {
+            mEvents.add(type + " " + snapshot.mKey + " " + newIndex + " " + oldIndex);
+            switch (type) {
+                case ADDED:
+                    mView.add(newIndex, snapshot);
+                    break;
+                case CHANGED:
+                    assertEquals(mView.get(newIndex).mKey, snapshot.mKey);
+                    mView.set(newIndex, snapshot);
+                    break;
+                case REMOVED:
+                    assertEquals(-1, newIndex);
+                    assertEquals(mView.remove(oldIndex).mKey, snapshot.mKey);
+                    break;
+                case MOVED:
+                    mView.add(newIndex, mView.remove(oldIndex));
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+
+        @Override
+        public void onDataChanged() {}
+
+        @Override
+        public void onError(@NonNull Exception e) {}
+    }
+}
@@ -0,0 +1,286 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SectionIndexTest {
+    /** Items are named by their section's letter followed by a number. */
+    private static final SectionMapper<String, String> FIRST_LETTER =
+            new SectionMapper<String, String>() {
+                @NonNull
+                @Override
+                public String getSection(@NonNull String model) {
+                    return model.substring(0, 1);
+                }
+            };
+
+    /** Flat rows still waiting for their content after being inserted or changed. */
+    private static final String PENDING = "?";
+
+    @Test
+    public void testResetBuildsHeaders() {
+        Harness harness = new Harness("a1", "a2", "b1", "c1", "c2");
+        assertEquals(
+                Arrays.asList("#a", "a1", "a2", "#b", "b1", "#c", "c1", "c2"),
+                harness.getRows());
+        assertEquals(Arrays.asList("inserted 0 8"), harness.mEvents);
+
+        assertEquals(3, harness.mIndex.getSectionCount());
+        assertTrue(harness.mIndex.isHeader(3));
+        assertEquals(-1, harness.mIndex.getSourceIndex(3));
+        assertEquals("b", harness.mIndex.getSection(3));
+        assertEquals(2, harness.mIndex.getSourceIndex(4));
+        assertEquals(7, harness.mIndex.getPosition(4));
+    }
+
+    @Test
+    public void testResetReplacesPreviousRows() {
+        Harness harness = new Harness("a1", "b1");
+        harness.mSource.clear();
+        Collections.addAll(harness.mSource, "b1", "b2", "c1");
+        harness.mIndex.reset();
+
+        assertEquals(Arrays.asList("#b", "b1", "b2", "#c", "c1"), harness.getRows());
+        assertEquals(Arrays.asList("removed 0 4", "inserted 0 5"), harness.lastEvents(2));
+
+        harness.mSource.clear();
+        harness.mIndex.reset();
+        assertEquals(Collections.<String>emptyList(), harness.getRows());
+        assertEquals("removed 0 5", harness.lastEvent());
+        assertEquals(0, harness.mIndex.getSectionCount());
+    }
+
+    @Test
+    public void testAddingCreatesSections() {
+        Harness harness = new Harness();
+        harness.add(0, "b1");
+        assertEquals(Arrays.asList("#b", "b1"), harness.getRows());
+
+        // Before, after and inside an existing section
+        harness.add(0, "a1");
+        harness.add(2, "c1");
+        harness.add(1, "b0");
+        assertEquals(Arrays.asList("#a", "a1", "#b", "b0", "b1", "#c", "c1"), harness.getRows());
+        assertEquals("inserted 3 1", harness.lastEvent());
+    }
+
+    @Test
+    public void testAddingSplitsASection() {
+        Harness harness = new Harness("a1", "a2");
+        harness.add(1, "b1");
+        assertEquals(Arrays.asList("#a", "a1", "#b", "b1", "#a", "a2"), harness.getRows());
+        assertEquals(Arrays.asList("inserted 2 2", "inserted 4 1"), harness.lastEvents(2));
+    }
+
+    @Test
+    public void testRemovingEmptiesSections() {
+        Harness harness = new Harness("a1", "b1", "b2", "c1");
+        harness.remove(3);
+        assertEquals(Arrays.asList("#a", "a1", "#b", "b1", "b2"), harness.getRows());
+        assertEquals("removed 5 2", harness.lastEvent());
+
+        harness.remove(1);
+        assertEquals(Arrays.asList("#a", "a1", "#b", "b2"), harness.getRows());
+        assertEquals("removed 3 1", harness.lastEvent());
+
+        harness.remove(0);
+        assertEquals(Arrays.asList("#b", "b2"), harness.getRows());
+        assertEquals("removed 0 2", harness.lastEvent());
+    }
+
+    @Test
+    public void testRemovingMergesSections() {
+        Harness harness = new Harness("a1", "b1", "a2");
+        harness.remove(1);
+        assertEquals(Arrays.asList("#a", "a1", "a2"), harness.getRows());
+        assertEquals("removed 2 3", harness.lastEvent());
+    }
+
+    @Test
+    public void testChangingSectionMovesTheItem() {
+        Harness harness = new Harness("a1", "a2", "b1");
+        harness.change(1, "a3");
+        assertEquals("changed 2 payload", harness.lastEvent());
+
+        harness.change(1, "b0");
+        assertEquals(Arrays.asList("#a", "a1", "#b", "b0", "b1"), harness.getRows());
+    }
+
+    @Test
+    public void testMovingWithinASectionIsASingleMove() {
+        Harness harness = new Harness("a1", "a2", "a3", "b1");
+        harness.move(0, 2);
+        assertEquals(Arrays.asList("#a", "a2", "a3", "a1", "#b", "b1"), harness.getRows());
+        assertEquals("moved 1 3", harness.lastEvent());
+
+        harness.move(3, 0);
+        assertEquals(Arrays.asList("#b", "b1", "#a", "a2", "a3", "a1"), harness.getRows());
+    }
+
+    @Test
+    public void testRandomEventsMatchNaiveSections() {
+        Random random = new Random(37);
+        for (int run = 0; run < 200; run++) {
+            Harness harness = new Harness();
+            int nextItem = 0;
+            for (int step = 0; step < 100; step++) {
+                int size = harness.mSource.size();
+                String item = (char) ('a' + random.nextInt(3)) + String.valueOf(nextItem++);
+                switch (size == 0 ? 0 : random.nextInt(9)) {
+                    case 0:
+                    case 1:
+                    case 2:
+                        harness.add(random.nextInt(size + 1), item);
+                        break;
+                    case 3:
+                    case 4:
+                        harness.remove(random.nextInt(size));
+                        break;
+                    case 5:
+                        harness.change(random.nextInt(size), item);
+                        break;
+                    case 6:
+                    case 7:
+                        harness.move(random.nextInt(size), random.nextInt(size));
+                        break;
+                    case 8:
+                        // Rebuild from scratch after arbitrary changes
+                        Collections.shuffle(harness.mSource, random);
+                        harness.mIndex.reset();
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+                harness.check();
+            }
+        }
+    }
+
+    /**
+     * Drives an index over a plain list, mirroring the flat rows from its callbacks.
+     */
+    private static final class Harness implements SectionIndex.Callback {
+        private final List<String> mSource = new ArrayList<>();
+        private final SectionIndex<String, String> mIndex;
+        private final List<String> mRows = new ArrayList<>();
+        private final List<String> mEvents = new ArrayList<>();
+
+        Harness(String... items) {
+            Collections.addAll(mSource, items);
+            mIndex = new SectionIndex<>(mSource, FIRST_LETTER, this);
+            mIndex.reset();
+        }
+
+        void add(int index, String item) {
+            mSource.add(index, item);
+            mIndex.onItemAdded(index);
+        }
+
+        void remove(int index) {
+            mSource.remove(index);
+            mIndex.onItemRemoved(index);
+        }
+
+        void change(int index, String item) {
+            mSource.set(index, item);
+            mIndex.onItemChanged(index, "payload");
+        }
+
+        void move(int from, int to) {
+            mSource.add(to, mSource.remove(from));
+            mIndex.onItemMoved(from, to);
+        }
+
+        List<String> getRows() {
+            check();
+            return mRows;
+        }
+
+        String lastEvent() {
+            return mEvents.get(mEvents.size() - 1);
+        }
+
+        List<String> lastEvents(int count) {
+            return mEvents.subList(mEvents.size() - count, mEvents.size());
+        }
+
+        /**
+         * Compares the index and the mirrored rows to naively computed sections. Rows that were
+         * inserted or changed take their expected content, every other row must have kept its
+         * own.
+         */
+        void check() {
+            List<String> expected = new ArrayList<>();
+            List<Integer> sourceIndices = new ArrayList<>();
+            String previous = null;
+            for (int i = 0; i < mSource.size(); i++) {
+                String section = FIRST_LETTER.getSection(mSource.get(i));
+                if (!section.equals(previous)) {
+                    expected.add("#" + section);
+                    sourceIndices.add(-1);
+                }
+                expected.add(mSource.get(i));
+                sourceIndices.add(i);
+                previous = section;
+            }
+
+            assertEquals(expected.size(), mRows.size());
+            for (int i = 0; i < mRows.size(); i++) {
+                if (mRows.get(i).equals(PENDING)) { mRows.set(i, expected.get(i)); }
+            }
+            assertEquals(expected, mRows);
+
+            assertEquals(expected.size(), mIndex.getItemCount());
+            for (int position = 0; position < expected.size(); position++) {
+                int sourceIndex = sourceIndices.get(position);
+                String row = expected.get(position);
+                assertEquals(sourceIndex, mIndex.getSourceIndex(position));
+                assertEquals(sourceIndex == -1, mIndex.isHeader(position));
+                assertEquals(FIRST_LETTER.getSection(row.replace("#", "")),
+                        mIndex.getSection(position));
+                if (sourceIndex != -1) {
+                    assertEquals(position, mIndex.getPosition(sourceIndex));
+                }
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mEvents.add("inserted " + position + " " + count);
+            for (int i = 0; i < count; i++) {
+                mRows.add(position, PENDING);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mEvents.add("removed " + position + " " + count);
+            assertFalse(position + count > mRows.size());
+            mRows.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onChanged(int position, @Nullable Object payload) {
+            mEvents.add("changed " + position + " " + payload);
+            mRows.set(position, PENDING);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mEvents.add("moved " + fromPosition + " " + toPosition);
+            mRows.add(toPosition, mRows.remove(fromPosition));
+        }
+    }
+}
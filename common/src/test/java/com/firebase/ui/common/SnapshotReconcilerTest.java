@@ -0,0 +1,261 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotReconcilerTest {
+    @Test
+    public void testReorder() {
+        Recorder recorder =
+                reconcile(items("a", "b", "c", "d", "e"), items("e", "d", "c", "b", "a"));
+
+        assertEquals(4, recorder.count(ChangeEventType.MOVED));
+        assertEquals(4, recorder.size());
+    }
+
+    @Test
+    public void testMoveOne() {
+        Recorder recorder = reconcile(items("a", "b", "c", "d"), items("b", "c", "d", "a"));
+
+        assertEquals(Collections.singletonList("MOVED a 3 0"), recorder.mEvents);
+    }
+
+    @Test
+    public void testInsertAtHead() {
+        Recorder recorder = reconcile(items("a", "b", "c"), items("x", "a", "b", "c"));
+
+        assertEquals(Collections.singletonList("ADDED x 0 -1"), recorder.mEvents);
+    }
+
+    @Test
+    public void testRemoveEverything() {
+        Recorder recorder = reconcile(items("a", "b", "c"), items());
+
+        assertEquals(Arrays.asList("REMOVED c -1 2", "REMOVED b -1 1", "REMOVED a -1 0"),
+                recorder.mEvents);
+    }
+
+    @Test
+    public void testAddEverything() {
+        Recorder recorder = reconcile(items(), items("a", "b", "c"));
+
+        assertEquals(Arrays.asList("ADDED a 0 -1", "ADDED b 1 -1", "ADDED c 2 -1"),
+                recorder.mEvents);
+    }
+
+    @Test
+    public void testChangedData() {
+        List<Item> current = items("a", "b", "c");
+        List<Item> fresh = items("a", "b", "c");
+        fresh.set(1, new Item("b", "changed"));
+        Item previous = current.get(1);
+
+        Recorder recorder = reconcile(current, fresh);
+
+        assertEquals(Collections.singletonList("CHANGED b 1 -1"), recorder.mEvents);
+        assertSame(previous, recorder.mLastPrevious);
+    }
+
+    @Test
+    public void testMovesAreMinimalAndDuplicateFree() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            int size = random.nextInt(50);
+            List<Item> current = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                current.add(new Item("k" + i, "v"));
+            }
+            List<Item> fresh = new ArrayList<>(current);
+            Collections.shuffle(fresh, random);
+
+            int[] targets = new int[current.size()];
+            for (int i = 0; i < current.size(); i++) {
+                targets[i] = fresh.indexOf(current.get(i));
+            }
+
+            Recorder recorder = reconcile(current, fresh);
+
+            assertEquals(current.size() - longestIncreasingRun(targets),
+                    recorder.count(ChangeEventType.MOVED));
+            Set<String> moved = new HashSet<>();
+            for (String event : recorder.mEvents) {
+                assertTrue("Moved twice: " + event, moved.add(event.split(" ")[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testRandomChanges() {
+        Random random = new Random(7);
+        for (int run = 0; run < 500; run++) {
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                keys.add("k" + i);
+            }
+
+            Collections.shuffle(keys, random);
+            List<Item> current = new ArrayList<>();
+            for (String key : keys.subList(0, random.nextInt(keys.size()))) {
+                current.add(new Item(key, String.valueOf(random.nextInt(2))));
+            }
+
+            Collections.shuffle(keys, random);
+            List<Item> fresh = new ArrayList<>();
+            for (String key : keys.subList(0, random.nextInt(keys.size()))) {
+                fresh.add(new Item(key, String.valueOf(random.nextInt(2))));
+            }
+
+            // Checks every intermediate state and the final list
+            reconcile(current, fresh);
+        }
+    }
+
+    private static List<Item> items(String... keys) {
+        List<Item> items = new ArrayList<>();
+        for (String key : keys) {
+            items.add(new Item(key, "v"));
+        }
+        return items;
+    }
+
+    /**
+     * Reconciles the lists, checking that a copy of {@code current} updated with each event
+     * matches it after every event and ends up equal to {@code fresh}.
+     */
+    private static Recorder reconcile(List<Item> current, List<Item> fresh) {
+        List<Item> live = new ArrayList<>(current);
+        Recorder recorder = new Recorder(live);
+        SnapshotReconciler.reconcile(live, fresh, recorder);
+
+        assertEquals(fresh, live);
+        assertEquals(fresh, recorder.mMirror);
+        for (int i = 0; i < fresh.size(); i++) {
+            assertSame(fresh.get(i), live.get(i));
+        }
+        return recorder;
+    }
+
+    private static int longestIncreasingRun(int[] values) {
+        int[] lengths = new int[values.length];
+        int longest = 0;
+        for (int i = 0; i < values.length; i++) {
+            lengths[i] = 1;
+            for (int j = 0; j < i; j++) {
+                if (values[j] < values[i]) { lengths[i] = Math.max(lengths[i], lengths[j] + 1); }
+            }
+            longest = Math.max(longest, lengths[i]);
+        }
+        return longest;
+    }
+
+    private static final class Item {
+        private final String mKey;
+        private final String mData;
+
+        Item(String key, String data) {
+            mKey = key;
+            mData = data;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Item)) return false;
+            Item item = (Item) o;
+            return mKey.equals(item.mKey) && mData.equals(item.mData);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mKey.hashCode() + mData.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return mKey + "=" + mData;
+        }
+    }
+
+    private static final class Recorder implements SnapshotReconciler.Callback<Item> {
+        private final List<Item> mLive;
+        private final List<Item> mMirror;
+        private final List<String> mEvents = new ArrayList<>();
+        private Item mLastPrevious;
+
+        Recorder(List<Item> live) {
+            mLive = live;
+            mMirror = new ArrayList<>(live);
+        }
+
+        int size() {
+            return mEvents.size();
+        }
+
+        int count(ChangeEventType type) {
+            int count = 0;
+            for (String event : mEvents) {
+                if (event.startsWith(type.name())) { count++; }
+            }
+            return count;
+        }
+
+        @NonNull
+        @Override
+        public String getKey(@NonNull Item snapshot) {
+            return snapshot.mKey;
+        }
+
+        @Nullable
+        @Override
+        public Object getData(@NonNull Item snapshot) {
+            return snapshot.mData;
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull Item snapshot,
+                                   int newIndex,
+                                   int oldIndex,
+                                   @Nullable Item previousSnapshot) {
+            mEvents.add(type + " " + snapshot.mKey + " " + newIndex + " " + oldIndex);
+            switch (type) {
+                case ADDED:
+                    mMirror.add(newIndex, snapshot);
+                    break;
+                case CHANGED:
+                    assertNotNull(previousSnapshot);
+                    assertSame(previousSnapshot, mMirror.set(newIndex, snapshot));
+                    mLastPrevious = previousSnapshot;
+                    break;
+                case REMOVED:
+                    assertSame(snapshot, mMirror.remove(oldIndex));
+                    break;
+                case MOVED:
+                    Item moved = mMirror.remove(oldIndex);
+                    assertSame(snapshot, moved);
+                    mMirror.add(newIndex, moved);
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+
+            // The indices must be valid against the list as it is when the event is emitted
+            assertEquals(mLive, mMirror);
+        }
+    }
+}
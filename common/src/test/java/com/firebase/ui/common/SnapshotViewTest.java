@@ -0,0 +1,206 @@
+package com.firebase.ui.common;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotViewTest {
+    @Test
+    public void testBuildIsBalanced() {
+        for (int size = 0; size < 70; size++) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                expected.add(i);
+            }
+            check(expected, SnapshotView.build(expected));
+        }
+    }
+
+    @Test
+    public void testRandomReplayWithRemovalsAtOldIndex() {
+        replay(false, new Random(42));
+    }
+
+    @Test
+    public void testRandomReplayWithRemovalsAtNewIndex() {
+        replay(true, new Random(43));
+    }
+
+    @Test
+    public void testAscendingAndDescendingInsertsStayBalanced() {
+        List<Integer> expected = new ArrayList<>();
+        SnapshotView.Node<Integer> root = null;
+        for (int i = 0; i < 500; i++) {
+            boolean atEnd = i % 2 == 0;
+            int index = atEnd ? expected.size() : 0;
+            expected.add(index, i);
+            root = SnapshotView.apply(root, ChangeEventType.ADDED, i, index, -1);
+            check(expected, root);
+        }
+        while (!expected.isEmpty()) {
+            expected.remove(0);
+            root = SnapshotView.apply(root, ChangeEventType.REMOVED, -1, -1, 0);
+            check(expected, root);
+        }
+    }
+
+    @Test
+    public void testPublishedViewsAreUnchangedByLaterEvents() {
+        TestArray array = new TestArray("a", "b", "c");
+        array.setSnapshotViewEnabled(true);
+        SnapshotView<String> first = array.getSnapshotView();
+
+        array.serverMove(0, 2);
+        array.serverChange(1, "x");
+        array.serverRemove(0);
+        // Events are only published at the end of the batch
+        assertTrue(first == array.getSnapshotView());
+
+        array.notifyOnDataChanged();
+        SnapshotView<String> second = array.getSnapshotView();
+        assertEquals(Arrays.asList("a", "b", "c"), first);
+        assertEquals(Arrays.asList("x", "a"), second);
+        assertEquals(array.getSnapshots(), second);
+        assertEquals(first.getVersion() + 1, second.getVersion());
+    }
+
+    /**
+     * Applies random events to both a tree and an {@link ArrayList}, checking after each step that
+     * they hold the same elements and the tree is still a valid AVL tree. Views of earlier trees
+     * must not change.
+     */
+    private static void replay(boolean isRemovalReportedAtNewIndex, Random random) {
+        for (int run = 0; run < 50; run++) {
+            List<Integer> expected = new ArrayList<>();
+            SnapshotView.Node<Integer> root = null;
+            List<List<Integer>> history = new ArrayList<>();
+            List<SnapshotView<Integer>> views = new ArrayList<>();
+            int nextValue = 0;
+
+            for (int step = 0; step < 300; step++) {
+                int size = expected.size();
+                // Grow a little faster than shrinking to reach deeper trees
+                int type = size == 0 ? 0 : random.nextInt(7);
+                if (type <= 2) {
+                    int index = random.nextInt(size + 1);
+                    Integer value = nextValue++;
+                    expected.add(index, value);
+                    root = SnapshotView.apply(root, ChangeEventType.ADDED, value, index, -1);
+                } else if (type == 3) {
+                    int index = random.nextInt(size);
+                    Integer value = nextValue++;
+                    expected.set(index, value);
+                    root = SnapshotView.apply(root, ChangeEventType.CHANGED, value, index, -1);
+                } else if (type <= 5) {
+                    int index = random.nextInt(size);
+                    Integer value = expected.remove(index);
+                    root = isRemovalReportedAtNewIndex
+                            ? SnapshotView.apply(root, ChangeEventType.REMOVED, value, index, -1)
+                            : SnapshotView.apply(root, ChangeEventType.REMOVED, value, -1, index);
+                } else {
+                    int oldIndex = random.nextInt(size);
+                    int newIndex = random.nextInt(size);
+                    Integer value = expected.remove(oldIndex);
+                    expected.add(newIndex, value);
+                    root = SnapshotView.apply(
+                            root, ChangeEventType.MOVED, value, newIndex, oldIndex);
+                }
+
+                check(expected, root);
+                if (step % 25 == 0) {
+                    history.add(new ArrayList<>(expected));
+                    views.add(new SnapshotView<>(root, step));
+                }
+            }
+
+            for (int i = 0; i < views.size(); i++) {
+                assertEquals(history.get(i), views.get(i));
+            }
+        }
+    }
+
+    private static void check(List<Integer> expected, SnapshotView.Node<Integer> root) {
+        SnapshotView<Integer> view = new SnapshotView<>(root, 0);
+        assertEquals(expected.size(), view.size());
+        assertEquals(expected, view);
+
+        List<Integer> inOrder = new ArrayList<>();
+        int height = checkNode(root, inOrder);
+        assertEquals(expected, inOrder);
+        // An AVL tree's height is at most about 1.44 log2(n + 2)
+        double limit = 1.4405 * Math.log(expected.size() + 2) / Math.log(2);
+        assertTrue("Height " + height + " for " + expected.size(), height <= limit);
+    }
+
+    /**
+     * @return the height of the subtree, after checking its cached size and height and its
+     * balance
+     */
+    private static int checkNode(SnapshotView.Node<Integer> node, List<Integer> inOrder) {
+        if (node == null) return 0;
+
+        int sizeBefore = inOrder.size();
+        int left = checkNode(node.mLeft, inOrder);
+        inOrder.add(node.mValue);
+        int right = checkNode(node.mRight, inOrder);
+
+        assertTrue("Unbalanced: " + left + " and " + right, Math.abs(left - right) <= 1);
+        assertEquals(Math.max(left, right) + 1, node.mHeight);
+        assertEquals(inOrder.size() - sizeBefore, node.mSize);
+        return node.mHeight;
+    }
+
+    private static final class TestArray extends BaseObservableSnapshotArray<
+            String, Exception, BaseChangeEventListener<String, Exception>, String> {
+        private final List<String> mSnapshots = new ArrayList<>();
+
+        TestArray(String... snapshots) {
+            super(new BaseCachingSnapshotParser<String, String>(new IdentityParser()) {
+                @NonNull
+                @Override
+                public String getId(@NonNull String snapshot) {
+                    return snapshot;
+                }
+            });
+            Collections.addAll(mSnapshots, snapshots);
+        }
+
+        @NonNull
+        @Override
+        protected List<String> getSnapshots() {
+            return mSnapshots;
+        }
+
+        void serverChange(int index, String snapshot) {
+            mSnapshots.set(index, snapshot);
+            notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1);
+        }
+
+        void serverRemove(int index) {
+            notifyOnChildChanged(ChangeEventType.REMOVED, mSnapshots.remove(index), -1, index);
+        }
+
+        void serverMove(int oldIndex, int newIndex) {
+            String snapshot = mSnapshots.remove(oldIndex);
+            mSnapshots.add(newIndex, snapshot);
+            notifyOnChildChanged(ChangeEventType.MOVED, snapshot, newIndex, oldIndex);
+        }
+    }
+
+    private static final class IdentityParser implements BaseSnapshotParser<String, String> {
+        @NonNull
+        @Override
+        public String parseSnapshot(@NonNull String snapshot) {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.firebase.ui.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VisibilityListTest {
+    @Test
+    public void testCountsVisibleElements() {
+        VisibilityList<String> list = new VisibilityList<>();
+        list.add(0, "b", false);
+        list.add(0, "a", true);
+        list.add(2, "c", true);
+
+        assertEquals(0, list.countVisibleBefore(0));
+        assertEquals(1, list.countVisibleBefore(2));
+        assertEquals(2, list.countVisibleBefore(3));
+
+        list.setVisible(1, true);
+        assertTrue(list.isVisible(1));
+        assertEquals(2, list.countVisibleBefore(2));
+
+        assertEquals("a", list.remove(0));
+        assertEquals(0, list.countVisibleBefore(0));
+        assertEquals(2, list.countVisibleBefore(2));
+    }
+
+    @Test
+    public void testRejectsInvalidIndices() {
+        VisibilityList<String> list = new VisibilityList<>();
+        list.add(0, "a", true);
+        try {
+            list.add(2, "b", true);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+            // Expected
+        }
+        try {
+            list.get(1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+            // Expected
+        }
+        assertEquals(1, list.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchNaiveList() {
+        Random random = new Random(35);
+        for (int run = 0; run < 50; run++) {
+            VisibilityList<Integer> list = new VisibilityList<>();
+            List<Integer> elements = new ArrayList<>();
+            List<Boolean> visibility = new ArrayList<>();
+            List<VisibilityList.Node<Integer>> nodes = new ArrayList<>();
+
+            for (int step = 0; step < 400; step++) {
+                int size = elements.size();
+                int type = size == 0 ? 0 : random.nextInt(5);
+                if (type <= 1) {
+                    int index = random.nextInt(size + 1);
+                    boolean isVisible = random.nextBoolean();
+                    nodes.add(index, list.add(index, step, isVisible));
+                    elements.add(index, step);
+                    visibility.add(index, isVisible);
+                } else if (type == 2) {
+                    int index = random.nextInt(size);
+                    assertEquals(elements.remove(index), list.remove(index));
+                    visibility.remove(index);
+                    nodes.remove(index);
+                } else if (type == 3) {
+                    int index = random.nextInt(size);
+                    boolean isVisible = random.nextBoolean();
+                    list.setVisible(index, isVisible);
+                    visibility.set(index, isVisible);
+                } else {
+                    // A move, as derived indices do it
+                    int oldIndex = random.nextInt(size);
+                    int newIndex = random.nextInt(size);
+                    boolean isVisible = list.isVisible(oldIndex);
+                    Integer element = list.remove(oldIndex);
+                    nodes.remove(oldIndex);
+                    nodes.add(newIndex, list.add(newIndex, element, isVisible));
+                    elements.add(newIndex, elements.remove(oldIndex));
+                    visibility.add(newIndex, visibility.remove(oldIndex));
+                }
+
+                check(list, elements, visibility, nodes);
+            }
+
+            list.clear();
+            assertEquals(0, list.size());
+            assertEquals(0, list.countVisibleBefore(0));
+        }
+    }
+
+    private static void check(VisibilityList<Integer> list,
+                              List<Integer> elements,
+                              List<Boolean> visibility,
+                              List<VisibilityList.Node<Integer>> nodes) {
+        assertEquals(elements.size(), list.size());
+        int visibleBefore = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            assertEquals(elements.get(i), list.get(i));
+            assertEquals(visibility.get(i), list.isVisible(i));
+            assertEquals(visibleBefore, list.countVisibleBefore(i));
+            assertEquals(i, list.indexOf(nodes.get(i)));
+            if (visibility.get(i)) { visibleBefore++; }
+        }
+        assertEquals(visibleBefore, list.countVisibleBefore(elements.size()));
+        assertFalse(visibleBefore > list.size());
+    }
+}
@@ -0,0 +1,13 @@
+plugins {
+    `java-library`
+}
+
+configure<JavaPluginConvention> {
+    sourceCompatibility = JavaVersion.VERSION_1_7
+    targetCompatibility = JavaVersion.VERSION_1_7
+}
+
+dependencies {
+    testImplementation(Config.Libs.Test.junit)
+    testImplementation(Config.Libs.Test.compileTesting)
+}
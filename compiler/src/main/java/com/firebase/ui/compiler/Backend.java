@@ -0,0 +1,30 @@
+package com.firebase.ui.compiler;
+
+/**
+ * The Firebase products a parser can be generated for.
+ */
+enum Backend {
+    DATABASE("com.firebase.ui.database.SnapshotParser",
+            "com.google.firebase.database.DataSnapshot",
+            "com.google.firebase.database",
+            "_DatabaseParser"),
+    FIRESTORE("com.firebase.ui.firestore.SnapshotParser",
+            "com.google.firebase.firestore.DocumentSnapshot",
+            "com.google.firebase.firestore",
+            "_FirestoreParser");
+
+    /** Must match the parser interface in the corresponding FirebaseUI module. */
+    final String parserInterface;
+    final String snapshotClass;
+    /** Package of the SDK's {@code @PropertyName} and {@code @Exclude} annotations. */
+    final String sdkPackage;
+    /** Must match the suffix used to look up generated parsers at runtime. */
+    final String suffix;
+
+    Backend(String parserInterface, String snapshotClass, String sdkPackage, String suffix) {
+        this.parserInterface = parserInterface;
+        this.snapshotClass = snapshotClass;
+        this.sdkPackage = sdkPackage;
+        this.suffix = suffix;
+    }
+}
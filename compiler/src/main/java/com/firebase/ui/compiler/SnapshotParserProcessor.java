@@ -0,0 +1,617 @@
+package com.firebase.ui.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates reflection-free snapshot parsers for classes annotated with {@code
+ * GenerateSnapshotParser}.
+ * <p>
+ * One parser is generated for each Firebase product whose FirebaseUI module is on the compile
+ * classpath. Values are read straight from the snapshot's data map and assigned through the same
+ * setters and fields the SDK would use. Only those the parser can't access directly, such as
+ * private fields, are written through reflection.
+ */
+@SupportedAnnotationTypes(SnapshotParserProcessor.ANNOTATION)
+public final class SnapshotParserProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "com.firebase.ui.common.GenerateSnapshotParser";
+
+    /** Prefix of the static fields holding members written through reflection. */
+    private static final String REFLECTIVE_MEMBER = "MEMBER_";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : env.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GenerateSnapshotParser can only be applied to classes.");
+                } else if (isValidModel((TypeElement) element)) {
+                    generateParsers((TypeElement) element);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidModel(TypeElement model) {
+        Set<Modifier> modifiers = model.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(model, "Models must be non-private concrete classes.");
+            return false;
+        }
+        if (model.getNestingKind() == NestingKind.MEMBER
+                && !modifiers.contains(Modifier.STATIC)) {
+            error(model, "Nested models must be static.");
+            return false;
+        }
+        if (model.getNestingKind() == NestingKind.LOCAL
+                || model.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(model, "Models must be top level or nested classes.");
+            return false;
+        }
+        if (!model.getTypeParameters().isEmpty()) {
+            error(model, "Models cannot have type parameters.");
+            return false;
+        }
+
+        for (ExecutableElement constructor
+                : ElementFilter.constructorsIn(model.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(model, "Models must have a non-private no-argument constructor.");
+        return false;
+    }
+
+    private void generateParsers(TypeElement model) {
+        boolean generated = false;
+        String failure = null;
+
+        for (Backend backend : Backend.values()) {
+            if (processingEnv.getElementUtils().getTypeElement(backend.parserInterface) == null) {
+                continue;
+            }
+
+            List<Property> properties = new ArrayList<>();
+            String unsupported = getProperties(model, backend, properties);
+            if (unsupported == null) {
+                writeParser(model, backend, properties);
+                generated = true;
+            } else {
+                failure = unsupported;
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "Skipping " + backend.name().toLowerCase() + " parser. " + unsupported,
+                        model);
+            }
+        }
+
+        if (!generated) {
+            error(model, failure == null
+                    ? "No FirebaseUI database or firestore module found on the classpath."
+                    : failure + " Use a custom SnapshotParser for this model instead.");
+        }
+    }
+
+    /**
+     * Collect the properties the SDK would deserialize. Like the SDKs' bean mappers, public getters
+     * and fields define the properties, each of which is then written through the most derived
+     * setter or field of the same name, whatever its visibility.
+     *
+     * @return null if every property is supported, or an error message otherwise
+     */
+    private String getProperties(TypeElement model, Backend backend, List<Property> out) {
+        // Maps lower cased names to property names, the SDKs reject names which only differ by case
+        Map<String, String> names = new LinkedHashMap<>();
+        List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(model);
+
+        List<String> found = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+            String prefix = getGetterPrefix(method, backend);
+            if (prefix == null) continue;
+
+            String methodName = method.getSimpleName().toString();
+            found.add(getPropertyName(
+                    method, backend, getSerializedName(methodName.substring(prefix.length()))));
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(members)) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PUBLIC)
+                    && !modifiers.contains(Modifier.STATIC)
+                    && !modifiers.contains(Modifier.TRANSIENT)
+                    && !isExcluded(field, backend)) {
+                found.add(getPropertyName(field, backend, field.getSimpleName().toString()));
+            }
+        }
+        for (String name : found) {
+            String existing = names.put(name.toLowerCase(Locale.US), name);
+            if (existing != null && !existing.equals(name)) {
+                return "Properties '" + existing + "' and '" + name + "' only differ by case.";
+            }
+        }
+
+        Map<String, ExecutableElement> setters = new HashMap<>();
+        Map<String, VariableElement> fields = new HashMap<>();
+        for (TypeElement type = model; type != null; type = getSuperclass(type)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (!isSetter(method, backend)) continue;
+
+                String name = getPropertyName(method, backend,
+                        getSerializedName(method.getSimpleName().toString().substring(3)));
+                String property = names.get(name.toLowerCase(Locale.US));
+                if (property == null) continue;
+                if (!property.equals(name)) {
+                    return "Setter " + method + " doesn't match the case of property '"
+                            + property + "'.";
+                }
+
+                ExecutableElement existing = setters.get(name);
+                if (existing == null) {
+                    setters.put(name, method);
+                } else if (!processingEnv.getElementUtils().overrides(existing, method, model)) {
+                    return "Property '" + name + "' has conflicting setters.";
+                }
+            }
+
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) continue;
+
+                // Only the most derived field is used, like in the SDKs
+                String name = getPropertyName(field, backend, field.getSimpleName().toString());
+                if (name.equals(names.get(name.toLowerCase(Locale.US)))
+                        && !fields.containsKey(name)) {
+                    fields.put(name, field);
+                }
+            }
+        }
+
+        DeclaredType modelType = (DeclaredType) model.asType();
+        int reflectiveCount = 0;
+        for (String name : names.values()) {
+            Element writer = setters.get(name);
+            TypeMirror type;
+            if (writer != null) {
+                type = ((ExecutableType) processingEnv.getTypeUtils()
+                        .asMemberOf(modelType, writer)).getParameterTypes().get(0);
+            } else {
+                writer = fields.get(name);
+                // The SDKs skip read-only properties too
+                if (writer == null) continue;
+                type = processingEnv.getTypeUtils().asMemberOf(modelType, writer);
+            }
+
+            if (getConversion(type, backend, "value") == null) {
+                return "Property '" + name + "' of type " + type
+                        + " is not supported for " + backend.name().toLowerCase() + " parsers.";
+            }
+
+            int reflectiveIndex = isAccessible(writer, model) ? -1 : reflectiveCount++;
+            out.add(new Property(name, writer, type, writer == setters.get(name), reflectiveIndex));
+        }
+        return null;
+    }
+
+    /**
+     * @return "get" or "is" if the method is a getter the SDKs would read, null otherwise
+     */
+    private String getGetterPrefix(ExecutableElement method, Backend backend) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC)
+                || modifiers.contains(Modifier.STATIC)
+                || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID
+                || isObjectMember(method)
+                || isExcluded(method, backend)) {
+            return null;
+        }
+
+        String methodName = method.getSimpleName().toString();
+        if (methodName.startsWith("get") && methodName.length() > 3) {
+            return "get";
+        } else if (methodName.startsWith("is") && methodName.length() > 2) {
+            return "is";
+        } else {
+            return null;
+        }
+    }
+
+    private boolean isSetter(ExecutableElement method, Backend backend) {
+        String methodName = method.getSimpleName().toString();
+        return methodName.startsWith("set")
+                && methodName.length() > 3
+                && !method.getModifiers().contains(Modifier.STATIC)
+                && method.getParameters().size() == 1
+                && method.getReturnType().getKind() == TypeKind.VOID
+                && !isExcluded(method, backend);
+    }
+
+    private boolean isObjectMember(Element member) {
+        return ((TypeElement) member.getEnclosingElement())
+                .getQualifiedName().contentEquals("java.lang.Object");
+    }
+
+    /**
+     * @return true if the parser, generated in the model's package, can write to the member
+     * without reflection
+     */
+    private boolean isAccessible(Element member, TypeElement model) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)
+                || (member.getKind() == ElementKind.FIELD && modifiers.contains(Modifier.FINAL))) {
+            return false;
+        }
+
+        Elements elements = processingEnv.getElementUtils();
+        return modifiers.contains(Modifier.PUBLIC)
+                || elements.getPackageOf(member).equals(elements.getPackageOf(model));
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private void writeParser(TypeElement model, Backend backend, List<Property> properties) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(model);
+        String packageName = pkg.isUnnamed() ? null : pkg.getQualifiedName().toString();
+        String parserName = getFlatName(model) + backend.suffix;
+        String modelName = model.getQualifiedName().toString();
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by FirebaseUI. Do not edit.\n");
+        if (packageName != null) source.append("package ").append(packageName).append(";\n");
+        source.append('\n')
+                .append("public final class ").append(parserName)
+                .append(" implements ").append(backend.parserInterface)
+                .append('<').append(modelName).append("> {\n")
+                .append("    @android.support.annotation.Nullable\n")
+                .append("    @java.lang.Override\n")
+                .append("    public ").append(modelName).append(" parseSnapshot(\n")
+                .append("            @android.support.annotation.NonNull ")
+                .append(backend.snapshotClass).append(" snapshot) {\n");
+        boolean hasReflectiveMembers = false;
+        for (Property property : properties) {
+            hasReflectiveMembers |= property.reflectiveIndex != -1;
+        }
+
+        if (backend == Backend.DATABASE) {
+            source.append("        java.lang.Object data = snapshot.getValue();\n")
+                    .append("        if (data == null) return null;\n")
+                    .append("        if (!(data instanceof java.util.Map)) {\n")
+                    .append("            throw new java.lang.IllegalArgumentException(")
+                    .append("\"Can't convert \" + data.getClass() + \" to ")
+                    .append(modelName).append(" at \" + snapshot.getRef());\n")
+                    .append("        }\n")
+                    .append("        java.util.Map<?, ?> values = (java.util.Map<?, ?>) data;\n");
+        } else {
+            source.append("        java.util.Map<java.lang.String, java.lang.Object> values = ")
+                    .append("snapshot.getData();\n")
+                    .append("        if (values == null) return null;\n");
+        }
+
+        source.append('\n')
+                .append("        ").append(modelName).append(" model = new ")
+                .append(modelName).append("();\n");
+        if (!properties.isEmpty()) source.append("        java.lang.Object value;\n");
+
+        for (Property property : properties) {
+            String literal = getStringLiteral(property.name);
+            String conversion = getConversion(property.type, backend, "value");
+            if (isDate(property.type)) {
+                // Dates may be stored as timestamps, let the SDK handle the conversion
+                conversion = "snapshot.getDate(" + literal + ")";
+            }
+
+            source.append("        value = values.get(").append(literal).append(");\n")
+                    .append("        if (value != null) ");
+            if (property.reflectiveIndex != -1) {
+                source.append(property.isSetter ? "invoke(" : "set(")
+                        .append(REFLECTIVE_MEMBER).append(property.reflectiveIndex)
+                        .append(", model, ").append(conversion).append(");\n");
+            } else if (property.isSetter) {
+                source.append("model.").append(property.element.getSimpleName())
+                        .append('(').append(conversion).append(");\n");
+            } else {
+                source.append("model.").append(property.element.getSimpleName())
+                        .append(" = ").append(conversion).append(";\n");
+            }
+        }
+
+        source.append("        return model;\n")
+                .append("    }\n");
+        if (hasReflectiveMembers) writeReflectiveMembers(source, modelName, properties);
+        source.append("}\n");
+
+        String qualifiedName = packageName == null ? parserName : packageName + "." + parserName;
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(qualifiedName, model)
+                .openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            error(model, "Failed to write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Members the parser can't access directly, such as private fields backing a getter, are
+     * written through reflection like the SDKs do. They are only looked up once per parser class.
+     */
+    private void writeReflectiveMembers(StringBuilder source,
+                                        String modelName,
+                                        List<Property> properties) {
+        source.append('\n');
+        for (Property property : properties) {
+            if (property.reflectiveIndex == -1) continue;
+
+            String name = getStringLiteral(property.element.getSimpleName().toString());
+            source.append("    private static final java.lang.reflect.");
+            if (property.isSetter) {
+                TypeMirror parameter =
+                        ((ExecutableElement) property.element).getParameters().get(0).asType();
+                source.append("Method ").append(REFLECTIVE_MEMBER)
+                        .append(property.reflectiveIndex).append(" =\n")
+                        .append("            method(").append(modelName).append(".class, ")
+                        .append(name).append(", ")
+                        .append(processingEnv.getTypeUtils().erasure(parameter))
+                        .append(".class);\n");
+            } else {
+                source.append("Field ").append(REFLECTIVE_MEMBER)
+                        .append(property.reflectiveIndex).append(" =\n")
+                        .append("            field(").append(modelName).append(".class, ")
+                        .append(name).append(");\n");
+            }
+        }
+
+        source.append('\n')
+                .append("    private static java.lang.reflect.Field field(")
+                .append("java.lang.Class<?> type, java.lang.String name) {\n")
+                .append("        for (java.lang.Class<?> c = type; c != null; ")
+                .append("c = c.getSuperclass()) {\n")
+                .append("            try {\n")
+                .append("                java.lang.reflect.Field field = ")
+                .append("c.getDeclaredField(name);\n")
+                .append("                field.setAccessible(true);\n")
+                .append("                return field;\n")
+                .append("            } catch (java.lang.NoSuchFieldException e) {\n")
+                .append("                // Declared in a superclass\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        throw new java.lang.IllegalStateException(")
+                .append("\"No field \" + name + \" in \" + type);\n")
+                .append("    }\n")
+                .append('\n')
+                .append("    private static java.lang.reflect.Method method(")
+                .append("java.lang.Class<?> type, java.lang.String name, ")
+                .append("java.lang.Class<?> parameter) {\n")
+                .append("        for (java.lang.Class<?> c = type; c != null; ")
+                .append("c = c.getSuperclass()) {\n")
+                .append("            try {\n")
+                .append("                java.lang.reflect.Method method = ")
+                .append("c.getDeclaredMethod(name, parameter);\n")
+                .append("                method.setAccessible(true);\n")
+                .append("                return method;\n")
+                .append("            } catch (java.lang.NoSuchMethodException e) {\n")
+                .append("                // Declared in a superclass\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        throw new java.lang.IllegalStateException(")
+                .append("\"No method \" + name + \" in \" + type);\n")
+                .append("    }\n")
+                .append('\n')
+                .append("    private static void set(java.lang.reflect.Field field, ")
+                .append("java.lang.Object model, java.lang.Object value) {\n")
+                .append("        try {\n")
+                .append("            field.set(model, value);\n")
+                .append("        } catch (java.lang.IllegalAccessException e) {\n")
+                .append("            throw new java.lang.IllegalStateException(e);\n")
+                .append("        }\n")
+                .append("    }\n")
+                .append('\n')
+                .append("    private static void invoke(java.lang.reflect.Method method, ")
+                .append("java.lang.Object model, java.lang.Object value) {\n")
+                .append("        try {\n")
+                .append("            method.invoke(model, value);\n")
+                .append("        } catch (java.lang.IllegalAccessException e) {\n")
+                .append("            throw new java.lang.IllegalStateException(e);\n")
+                .append("        } catch (java.lang.reflect.InvocationTargetException e) {\n")
+                .append("            throw new java.lang.RuntimeException(e.getCause());\n")
+                .append("        }\n")
+                .append("    }\n");
+    }
+
+    /**
+     * @return a Java expression converting the raw value in {@code value} to {@code type}, or null
+     * if the type isn't supported
+     */
+    private String getConversion(TypeMirror type, Backend backend, String value) {
+        TypeKind kind = type.getKind();
+        if (kind.isPrimitive()) {
+            return getPrimitiveConversion(kind, value);
+        } else if (kind != TypeKind.DECLARED) {
+            return null;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+        if (element.getKind() == ElementKind.ENUM) {
+            // Both SDKs store enums by name
+            return name + ".valueOf((java.lang.String) " + value + ")";
+        } else if (isDate(type)) {
+            return backend == Backend.FIRESTORE ? "(java.util.Date) " + value : null;
+        }
+
+        switch (name) {
+            case "java.lang.String":
+                return "(java.lang.String) " + value;
+            case "java.lang.Boolean":
+                return getPrimitiveConversion(TypeKind.BOOLEAN, value);
+            case "java.lang.Integer":
+                return getPrimitiveConversion(TypeKind.INT, value);
+            case "java.lang.Long":
+                return getPrimitiveConversion(TypeKind.LONG, value);
+            case "java.lang.Double":
+                return getPrimitiveConversion(TypeKind.DOUBLE, value);
+            case "java.lang.Float":
+                return getPrimitiveConversion(TypeKind.FLOAT, value);
+            case "java.lang.Short":
+                return getPrimitiveConversion(TypeKind.SHORT, value);
+            case "java.lang.Byte":
+                return getPrimitiveConversion(TypeKind.BYTE, value);
+            default:
+                return null;
+        }
+    }
+
+    private String getPrimitiveConversion(TypeKind kind, String value) {
+        // Numbers come back as either Long or Double depending on how they were written
+        String number = "((java.lang.Number) " + value + ")";
+        switch (kind) {
+            case BOOLEAN:
+                return "(java.lang.Boolean) " + value;
+            case INT:
+                return number + ".intValue()";
+            case LONG:
+                return number + ".longValue()";
+            case DOUBLE:
+                return number + ".doubleValue()";
+            case FLOAT:
+                return number + ".floatValue()";
+            case SHORT:
+                return number + ".shortValue()";
+            case BYTE:
+                return number + ".byteValue()";
+            default:
+                return null;
+        }
+    }
+
+    private boolean isDate(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && ((TypeElement) ((DeclaredType) type)
+                .asElement()).getQualifiedName().contentEquals("java.util.Date");
+    }
+
+    private boolean isExcluded(Element element, Backend backend) {
+        return getAnnotation(element, backend.sdkPackage + ".Exclude") != null;
+    }
+
+    private String getPropertyName(Element element, Backend backend, String defaultName) {
+        AnnotationMirror annotation = getAnnotation(element, backend.sdkPackage + ".PropertyName");
+        if (annotation == null) return defaultName;
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return (String) entry.getValue().getValue();
+            }
+        }
+        return defaultName;
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(name)) return annotation;
+        }
+        return null;
+    }
+
+    /**
+     * Mirrors the SDKs' setter naming: leading upper case letters are lower cased, so {@code
+     * setURL} maps to {@code url}.
+     */
+    private static String getSerializedName(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Nested classes are flattened with underscores: {@code Outer.Inner} becomes {@code
+     * Outer_Inner}. This must stay in sync with the runtime lookup.
+     */
+    private static String getFlatName(TypeElement model) {
+        String name = model.getSimpleName().toString();
+        Element enclosing = model.getEnclosingElement();
+        while (enclosing.getKind().isClass() || enclosing.getKind().isInterface()) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private static String getStringLiteral(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') literal.append('\\');
+            literal.append(c);
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static final class Property {
+        final String name;
+        /** The setter or field the property is written through. */
+        final Element element;
+        final TypeMirror type;
+        final boolean isSetter;
+        /** The index of the reflective member used to write the property, or -1. */
+        final int reflectiveIndex;
+
+        Property(String name,
+                 Element element,
+                 TypeMirror type,
+                 boolean isSetter,
+                 int reflectiveIndex) {
+            this.name = name;
+            this.element = element;
+            this.type = type;
+            this.isSetter = isSetter;
+            this.reflectiveIndex = reflectiveIndex;
+        }
+    }
+}
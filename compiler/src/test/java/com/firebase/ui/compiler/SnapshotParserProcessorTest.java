@@ -0,0 +1,460 @@
+package com.firebase.ui.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SnapshotParserProcessorTest {
+    /** Suffix of generated database parsers, as passed to GeneratedParsers by SnapshotParsers. */
+    private static final String DATABASE_SUFFIX = "_DatabaseParser";
+
+    private static final JavaFileObject GENERATE_SNAPSHOT_PARSER = JavaFileObjects.forSourceLines(
+            "com.firebase.ui.common.GenerateSnapshotParser",
+            "package com.firebase.ui.common;",
+            "public @interface GenerateSnapshotParser {}");
+    private static final JavaFileObject NULLABLE = JavaFileObjects.forSourceLines(
+            "android.support.annotation.Nullable",
+            "package android.support.annotation;",
+            "public @interface Nullable {}");
+    private static final JavaFileObject NON_NULL = JavaFileObjects.forSourceLines(
+            "android.support.annotation.NonNull",
+            "package android.support.annotation;",
+            "public @interface NonNull {}");
+
+    private static final JavaFileObject DATA_SNAPSHOT = JavaFileObjects.forSourceLines(
+            "com.google.firebase.database.DataSnapshot",
+            "package com.google.firebase.database;",
+            "public class DataSnapshot {",
+            "    private final Object mValue;",
+            "    public DataSnapshot(Object value) { mValue = value; }",
+            "    public Object getValue() { return mValue; }",
+            "    public String getRef() { return \"ref\"; }",
+            "}");
+    private static final JavaFileObject DATABASE_PROPERTY_NAME = JavaFileObjects.forSourceLines(
+            "com.google.firebase.database.PropertyName",
+            "package com.google.firebase.database;",
+            "public @interface PropertyName { String value(); }");
+    private static final JavaFileObject DATABASE_EXCLUDE = JavaFileObjects.forSourceLines(
+            "com.google.firebase.database.Exclude",
+            "package com.google.firebase.database;",
+            "public @interface Exclude {}");
+    private static final JavaFileObject DATABASE_PARSER = JavaFileObjects.forSourceLines(
+            "com.firebase.ui.database.SnapshotParser",
+            "package com.firebase.ui.database;",
+            "public interface SnapshotParser<T> {",
+            "    T parseSnapshot(com.google.firebase.database.DataSnapshot snapshot);",
+            "}");
+
+    private static final JavaFileObject DOCUMENT_SNAPSHOT = JavaFileObjects.forSourceLines(
+            "com.google.firebase.firestore.DocumentSnapshot",
+            "package com.google.firebase.firestore;",
+            "public class DocumentSnapshot {",
+            "    public java.util.Map<String, Object> getData() { return null; }",
+            "    public java.util.Date getDate(String field) { return null; }",
+            "}");
+    private static final JavaFileObject FIRESTORE_PARSER = JavaFileObjects.forSourceLines(
+            "com.firebase.ui.firestore.SnapshotParser",
+            "package com.firebase.ui.firestore;",
+            "public interface SnapshotParser<T> {",
+            "    T parseSnapshot(com.google.firebase.firestore.DocumentSnapshot snapshot);",
+            "}");
+
+    /** The database sample app's model. */
+    private static final JavaFileObject CHAT = JavaFileObjects.forSourceLines(
+            "test.Chat",
+            "package test;",
+            "@com.firebase.ui.common.GenerateSnapshotParser",
+            "public class Chat {",
+            "    private String mName;",
+            "    private String mMessage;",
+            "    private String mUid;",
+            "    public Chat() {}",
+            "    public String getName() { return mName; }",
+            "    public void setName(String name) { mName = name; }",
+            "    public String getMessage() { return mMessage; }",
+            "    public void setMessage(String message) { mMessage = message; }",
+            "    public String getUid() { return mUid; }",
+            "    public void setUid(String uid) { mUid = uid; }",
+            "}");
+
+    @Test
+    public void testSampleModel() {
+        Compilation compilation = compile(databaseClasspath(), CHAT);
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Chat_DatabaseParser")
+                .hasSourceEquivalentTo(JavaFileObjects.forSourceLines(
+                        "test.Chat_DatabaseParser",
+                        "// Generated by FirebaseUI. Do not edit.",
+                        "package test;",
+                        "",
+                        "public final class Chat_DatabaseParser",
+                        "        implements com.firebase.ui.database.SnapshotParser<test.Chat> {",
+                        "    @android.support.annotation.Nullable",
+                        "    @java.lang.Override",
+                        "    public test.Chat parseSnapshot(",
+                        "            @android.support.annotation.NonNull",
+                        "            com.google.firebase.database.DataSnapshot snapshot) {",
+                        "        java.lang.Object data = snapshot.getValue();",
+                        "        if (data == null) return null;",
+                        "        if (!(data instanceof java.util.Map)) {",
+                        "            throw new java.lang.IllegalArgumentException(",
+                        "                    \"Can't convert \" + data.getClass()",
+                        "                    + \" to test.Chat at \"",
+                        "                    + snapshot.getRef());",
+                        "        }",
+                        "        java.util.Map<?, ?> values = (java.util.Map<?, ?>) data;",
+                        "",
+                        "        test.Chat model = new test.Chat();",
+                        "        java.lang.Object value;",
+                        "        value = values.get(\"name\");",
+                        "        if (value != null) model.setName((java.lang.String) value);",
+                        "        value = values.get(\"message\");",
+                        "        if (value != null) model.setMessage((java.lang.String) value);",
+                        "        value = values.get(\"uid\");",
+                        "        if (value != null) model.setUid((java.lang.String) value);",
+                        "        return model;",
+                        "    }",
+                        "}"));
+    }
+
+    @Test
+    public void testParsesValues() throws Exception {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Post",
+                "package test;",
+                "import com.google.firebase.database.Exclude;",
+                "import com.google.firebase.database.PropertyName;",
+                "@com.firebase.ui.common.GenerateSnapshotParser",
+                "public class Post {",
+                "    public enum State { DRAFT, PUBLISHED }",
+                "    public String title;",
+                "    public int likes;",
+                "    public Double rating;",
+                "    public State state;",
+                "    @Exclude public String local = \"local\";",
+                "    private String mAuthor;",
+                "    @PropertyName(\"author_name\")",
+                "    public void setAuthor(String author) { mAuthor = author; }",
+                "    @PropertyName(\"author_name\")",
+                "    public String getAuthor() { return mAuthor; }",
+                "}");
+        Compilation compilation = compile(databaseClasspath(), model);
+        assertThat(compilation).succeeded();
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("title", "Hello");
+        // Numbers are read back as longs or doubles whatever their declared type
+        values.put("likes", 3L);
+        values.put("rating", 4L);
+        values.put("state", "PUBLISHED");
+        values.put("local", "remote");
+        values.put("author_name", "Alice");
+
+        ClassLoader loader = new CompiledClassLoader(compilation);
+        Object post = parse(loader, "test.Post", values);
+
+        assertEquals("Hello", get(post, "title"));
+        assertEquals(3, get(post, "likes"));
+        assertEquals(4.0, get(post, "rating"));
+        assertEquals("PUBLISHED", get(post, "state").toString());
+        assertEquals("local", get(post, "local"));
+        assertEquals("Alice", post.getClass().getMethod("getAuthor").invoke(post));
+        assertNull(parse(loader, "test.Post", null));
+    }
+
+    @Test
+    public void testBeanRules() throws Exception {
+        JavaFileObject base = JavaFileObjects.forSourceLines(
+                "test.Base",
+                "package test;",
+                "public class Base {",
+                "    private String base;",
+                "    public String getBase() { return base; }",
+                "}");
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Profile",
+                "package test;",
+                "@com.firebase.ui.common.GenerateSnapshotParser",
+                "public class Profile extends Base {",
+                "    private String name;",
+                "    private boolean admin;",
+                "    private int count;",
+                "    private String title;",
+                "    private String mOnly;",
+                "    public String getName() { return name; }",
+                "    public boolean isAdmin() { return admin; }",
+                "    public int getCount() { return count; }",
+                "    void setCount(int count) { this.count = count; }",
+                "    public String getTitle() { return title; }",
+                "    private void setTitle(String title) { this.title = \"set \" + title; }",
+                "    public void setOnly(String only) { mOnly = only; }",
+                "}");
+        List<JavaFileObject> classpath = databaseClasspath();
+        classpath.add(base);
+        Compilation compilation = compile(classpath, model);
+        assertThat(compilation).succeeded();
+
+        // Members the parser can access are written directly, the others through reflection
+        assertThat(compilation).generatedSourceFile("test.Profile_DatabaseParser")
+                .contentsAsUtf8String().contains("model.setCount(");
+        assertThat(compilation).generatedSourceFile("test.Profile_DatabaseParser")
+                .contentsAsUtf8String().contains("method(test.Profile.class, \"setTitle\"");
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("base", "inherited");
+        values.put("name", "Alice");
+        values.put("admin", true);
+        values.put("count", 2L);
+        values.put("title", "Dr");
+        values.put("only", "ignored");
+
+        Object profile = parse(new CompiledClassLoader(compilation), "test.Profile", values);
+        assertEquals("inherited", call(profile, "getBase"));
+        assertEquals("Alice", call(profile, "getName"));
+        assertEquals(true, call(profile, "isAdmin"));
+        assertEquals(2, call(profile, "getCount"));
+        assertEquals("set Dr", call(profile, "getTitle"));
+        // Like the SDKs, setters without a getter or public field don't define a property
+        Field only = profile.getClass().getDeclaredField("mOnly");
+        only.setAccessible(true);
+        assertNull(only.get(profile));
+    }
+
+    @Test
+    public void testPropertiesDifferingByCase() {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Model",
+                "package test;",
+                "@com.firebase.ui.common.GenerateSnapshotParser",
+                "public class Model {",
+                "    public String URL;",
+                "    public String getUrl() { return URL; }",
+                "}");
+        Compilation compilation = compile(databaseClasspath(), model);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("only differ by case");
+    }
+
+    @Test
+    public void testNestedModelMatchesRuntimeLookup() throws Exception {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Outer",
+                "package test;",
+                "public class Outer {",
+                "    public static class Inner {",
+                "        @com.firebase.ui.common.GenerateSnapshotParser",
+                "        public static class Model {",
+                "            public String name;",
+                "        }",
+                "    }",
+                "}");
+        Compilation compilation = compile(databaseClasspath(), model);
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Outer_Inner_Model_DatabaseParser");
+
+        // GeneratedParsers finds the parser from the model's binary name, Outer$Inner$Model
+        ClassLoader loader = new CompiledClassLoader(compilation);
+        Object parsed = parse(loader, "test.Outer$Inner$Model",
+                Collections.<String, Object>singletonMap("name", "nested"));
+        assertEquals("nested", get(parsed, "name"));
+    }
+
+    @Test
+    public void testBothProducts() {
+        List<JavaFileObject> classpath = databaseClasspath();
+        classpath.add(DOCUMENT_SNAPSHOT);
+        classpath.add(FIRESTORE_PARSER);
+
+        Compilation compilation = compile(classpath, CHAT);
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Chat_DatabaseParser");
+        assertThat(compilation).generatedSourceFile("test.Chat_FirestoreParser");
+    }
+
+    @Test
+    public void testFirestoreOnlyDates() {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Event",
+                "package test;",
+                "@com.firebase.ui.common.GenerateSnapshotParser",
+                "public class Event {",
+                "    public java.util.Date time;",
+                "}");
+        List<JavaFileObject> classpath = databaseClasspath();
+        classpath.add(DOCUMENT_SNAPSHOT);
+        classpath.add(FIRESTORE_PARSER);
+
+        Compilation compilation = compile(classpath, model);
+
+        // The database can't store dates, so only the Firestore parser is generated
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Event_FirestoreParser");
+        assertEquals(0, countGeneratedSources(compilation, "test.Event_DatabaseParser"));
+    }
+
+    @Test
+    public void testNonStaticNestedModel() {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Outer",
+                "package test;",
+                "public class Outer {",
+                "    @com.firebase.ui.common.GenerateSnapshotParser",
+                "    public class Model {}",
+                "}");
+        Compilation compilation = compile(databaseClasspath(), model);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("Nested models must be static.");
+    }
+
+    @Test
+    public void testMissingConstructor() {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Model",
+                "package test;",
+                "@com.firebase.ui.common.GenerateSnapshotParser",
+                "public class Model {",
+                "    public Model(String name) {}",
+                "}");
+        Compilation compilation = compile(databaseClasspath(), model);
+
+        assertThat(compilation).failed();
+        assertThat(compilation)
+                .hadErrorContaining("Models must have a non-private no-argument constructor.");
+    }
+
+    @Test
+    public void testUnsupportedProperty() {
+        JavaFileObject model = JavaFileObjects.forSourceLines(
+                "test.Model",
+                "package test;",
+                "@com.firebase.ui.common.GenerateSnapshotParser",
+                "public class Model {",
+                "    public java.util.List<String> tags;",
+                "}");
+        Compilation compilation = compile(databaseClasspath(), model);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("Property 'tags'");
+    }
+
+    @Test
+    public void testNoFirebaseUiModule() {
+        Compilation compilation = compile(
+                new ArrayList<>(Arrays.asList(GENERATE_SNAPSHOT_PARSER)), CHAT);
+
+        assertThat(compilation).failed();
+        assertThat(compilation)
+                .hadErrorContaining("No FirebaseUI database or firestore module found");
+    }
+
+    private static List<JavaFileObject> databaseClasspath() {
+        return new ArrayList<>(Arrays.asList(GENERATE_SNAPSHOT_PARSER, NULLABLE, NON_NULL,
+                DATA_SNAPSHOT, DATABASE_PROPERTY_NAME, DATABASE_EXCLUDE, DATABASE_PARSER));
+    }
+
+    private static Compilation compile(List<JavaFileObject> classpath, JavaFileObject model) {
+        List<JavaFileObject> sources = new ArrayList<>(classpath);
+        sources.add(model);
+        return javac().withProcessors(new SnapshotParserProcessor()).compile(sources);
+    }
+
+    private static int countGeneratedSources(Compilation compilation, String qualifiedName) {
+        int count = 0;
+        for (JavaFileObject file : compilation.generatedSourceFiles()) {
+            if (file.toUri().getPath().endsWith(qualifiedName.replace('.', '/') + ".java")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parse the values with the generated database parser, found the same way as in {@code
+     * GeneratedParsers#newInstance}.
+     */
+    private static Object parse(ClassLoader loader,
+                                String modelName,
+                                Map<String, Object> values) throws Exception {
+        Class<?> modelClass = loader.loadClass(modelName);
+        Class<?> parserClass = loader.loadClass(
+                modelClass.getName().replace('$', '_') + DATABASE_SUFFIX);
+        Class<?> snapshotClass = loader.loadClass("com.google.firebase.database.DataSnapshot");
+
+        Object snapshot = snapshotClass.getConstructor(Object.class).newInstance(values);
+        Method parseSnapshot = parserClass.getMethod("parseSnapshot", snapshotClass);
+        return parseSnapshot.invoke(parserClass.getConstructor().newInstance(), snapshot);
+    }
+
+    private static Object call(Object model, String getter) throws Exception {
+        return model.getClass().getMethod(getter).invoke(model);
+    }
+
+    private static Object get(Object model, String field) throws Exception {
+        Field f = model.getClass().getField(field);
+        return f.get(model);
+    }
+
+    /**
+     * Loads the classes output by a compilation.
+     */
+    private static final class CompiledClassLoader extends ClassLoader {
+        private final Compilation mCompilation;
+
+        CompiledClassLoader(Compilation compilation) {
+            super(CompiledClassLoader.class.getClassLoader());
+            mCompilation = compilation;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            String path = "/" + name.replace('.', '/') + ".class";
+            for (JavaFileObject file : mCompilation.generatedFiles()) {
+                if (file.getKind() == JavaFileObject.Kind.CLASS
+                        && file.toUri().getPath().endsWith(path)) {
+                    byte[] bytes = read(file);
+                    return defineClass(name, bytes, 0, bytes.length);
+                }
+            }
+            throw new ClassNotFoundException(name);
+        }
+
+        private static byte[] read(JavaFileObject file) throws ClassNotFoundException {
+            try (InputStream in = file.openInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(file.getName(), e);
+            }
+        }
+    }
+}
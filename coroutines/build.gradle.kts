@@ -0,0 +1,26 @@
+import com.android.build.gradle.internal.dsl.TestOptions
+
+plugins {
+    id("kotlin-android")
+}
+
+android {
+    testOptions {
+        unitTests(closureOf<TestOptions.UnitTestOptions> {
+            // Snapshot arrays create a main thread Handler
+            isReturnDefaultValues = true
+        })
+    }
+}
+
+dependencies {
+    api(project(":common"))
+    api(Config.Libs.Kotlin.android)
+    api(Config.Libs.Kotlin.coroutines)
+
+    // Only the extensions for the products an app uses are available at runtime
+    compileOnly(project(":database"))
+    compileOnly(project(":firestore"))
+
+    testImplementation(Config.Libs.Test.junit)
+}
@@ -0,0 +1,22 @@
+package com.firebase.ui.coroutines
+
+import com.firebase.ui.common.ChangeEventType
+
+/**
+ * A single child event of a snapshot array.
+ *
+ * @see com.firebase.ui.common.BaseChangeEventListener.onChildChanged
+ */
+data class Change<out S>(
+        val type: ChangeEventType,
+        val snapshot: S,
+        val newIndex: Int,
+        val oldIndex: Int
+)
+
+/**
+ * All child events of a snapshot array up to and including an `onDataChanged` callback. The first
+ * batch received after subscribing contains an [ChangeEventType.ADDED] event for every item the
+ * array already held.
+ */
+data class ChangeBatch<out S>(val changes: List<Change<S>>)
@@ -0,0 +1,43 @@
+@file:JvmName("FirestoreChannels")
+
+package com.firebase.ui.coroutines
+
+import com.firebase.ui.common.BaseChangeEventListener
+import com.firebase.ui.firestore.ChangeEventListener
+import com.firebase.ui.firestore.ObservableSnapshotArray
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.FirebaseFirestoreException
+import kotlinx.coroutines.experimental.CommonPool
+import kotlinx.coroutines.experimental.android.UI
+import kotlinx.coroutines.experimental.channels.ReceiveChannel
+import kotlin.coroutines.experimental.CoroutineContext
+
+/**
+ * Listens to this array until the returned channel is cancelled and emits its child events in
+ * batches ending with `onDataChanged`. Errors close the channel with the
+ * [com.google.firebase.firestore.FirebaseFirestoreException].
+ *
+ * Every batch is buffered: skipping one would lose its events, so consumers only interested in
+ * the latest state should use [items] instead.
+ */
+fun <T> ObservableSnapshotArray<T>.changeBatches(): ReceiveChannel<ChangeBatch<DocumentSnapshot>> =
+        produceChangeBatches(UI, ::FirestoreListener) { it }
+
+/**
+ * Listens to this array until the returned channel is cancelled and emits its parsed items after
+ * each batch of changes. The snapshots are captured on the main thread without copying them and
+ * parsed again on [parseContext] by the array's parser, which must therefore be thread safe.
+ * Arrays holding provisional models, or merging several sources, are copied on the main thread
+ * instead.
+ *
+ * @param conflate if true, slow consumers skip intermediate states and receive the latest one
+ * once they are ready. Otherwise, every state is buffered.
+ */
+fun <T> ObservableSnapshotArray<T>.items(
+        conflate: Boolean = true,
+        parseContext: CoroutineContext = CommonPool
+): ReceiveChannel<List<T>> = produceItems(UI, parseContext, conflate, ::FirestoreListener) { it }
+
+private class FirestoreListener(
+        listener: BaseChangeEventListener<DocumentSnapshot, FirebaseFirestoreException>
+) : ChangeEventListener, BaseChangeEventListener<DocumentSnapshot, FirebaseFirestoreException> by listener
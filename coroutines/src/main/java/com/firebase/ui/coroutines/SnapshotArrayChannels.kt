@@ -0,0 +1,166 @@
+package com.firebase.ui.coroutines
+
+import com.firebase.ui.common.BaseChangeEventListener
+import com.firebase.ui.common.BaseObservableSnapshotArray
+import com.firebase.ui.common.BaseSnapshotParser
+import com.firebase.ui.common.ChangeEventType
+import com.firebase.ui.common.SnapshotView
+import kotlinx.coroutines.experimental.channels.Channel
+import kotlinx.coroutines.experimental.channels.ReceiveChannel
+import kotlinx.coroutines.experimental.channels.produce
+import kotlinx.coroutines.experimental.withContext
+import java.util.IdentityHashMap
+import kotlin.coroutines.experimental.CoroutineContext
+
+/*
+ * Listeners are added and removed on the main thread, which the given context must run on, and
+ * only ever offer to unlimited or conflated channels, so a slow consumer never blocks the thread
+ * delivering SDK events.
+ */
+
+internal fun <S, E, L : BaseChangeEventListener<S, E>>
+        BaseObservableSnapshotArray<S, E, L, *>.produceChangeBatches(
+        context: CoroutineContext,
+        wrap: (BaseChangeEventListener<S, E>) -> L,
+        toThrowable: (E) -> Throwable
+): ReceiveChannel<ChangeBatch<S>> = produce(context, Channel.UNLIMITED) {
+    val array = this@produceChangeBatches
+    val batches = Channel<ChangeBatch<S>>(Channel.UNLIMITED)
+    val listener = wrap(object : BaseChangeEventListener<S, E> {
+        private var changes = ArrayList<Change<S>>()
+
+        override fun onChildChanged(
+                type: ChangeEventType,
+                snapshot: S,
+                newIndex: Int,
+                oldIndex: Int
+        ) {
+            changes.add(Change(type, snapshot, newIndex, oldIndex))
+        }
+
+        override fun onDataChanged() {
+            batches.offer(ChangeBatch(changes))
+            changes = ArrayList()
+        }
+
+        override fun onError(e: E) {
+            batches.close(toThrowable(e))
+        }
+    })
+
+    array.addChangeEventListener(listener)
+    try {
+        for (batch in batches) send(batch)
+    } finally {
+        array.removeChangeEventListener(listener)
+    }
+}
+
+internal fun <S, E, L : BaseChangeEventListener<S, E>, T>
+        BaseObservableSnapshotArray<S, E, L, T>.produceItems(
+        context: CoroutineContext,
+        parseContext: CoroutineContext,
+        conflate: Boolean,
+        wrap: (BaseChangeEventListener<S, E>) -> L,
+        toThrowable: (E) -> Throwable
+): ReceiveChannel<List<T>> = produce(context, if (conflate) 0 else Channel.UNLIMITED) {
+    // Each state is captured on the main thread as a snapshot view, which shares its structure
+    // with the array instead of copying it, and parsed on the parse context. When conflating, only
+    // remember that the array changed and capture it once the previous list was received by the
+    // rendezvous channel.
+    val array = this@produceItems
+    val states = Channel<State<T>?>(capacity(conflate))
+    val listener = wrap(object : BaseChangeEventListener<S, E> {
+        override fun onChildChanged(
+                type: ChangeEventType,
+                snapshot: S,
+                newIndex: Int,
+                oldIndex: Int
+        ) = Unit
+
+        override fun onDataChanged() {
+            states.offer(if (conflate) null else array.capture())
+        }
+
+        override fun onError(e: E) {
+            states.close(toThrowable(e))
+        }
+    })
+
+    SnapshotViewUsers.add(array)
+    array.addChangeEventListener(listener)
+    var version: Long? = null
+    try {
+        for (state in states) {
+            val current = state ?: array.capture()
+            // Conflated changes may already have been captured with the previous state
+            if (current.version != null && current.version == version) continue
+            version = current.version
+            send(current.getItems(parseContext))
+        }
+    } finally {
+        array.removeChangeEventListener(listener)
+        SnapshotViewUsers.remove(array)
+    }
+}
+
+private fun capacity(conflate: Boolean) = if (conflate) Channel.CONFLATED else Channel.UNLIMITED
+
+/**
+ * The contents of an array at the end of a batch.
+ *
+ * @property version the version of the captured snapshot view, if any
+ */
+private abstract class State<out T>(val version: Long?) {
+    abstract suspend fun getItems(parseContext: CoroutineContext): List<T>
+}
+
+private class SnapshotState<S, out T>(
+        private val snapshots: SnapshotView<S>,
+        private val parser: BaseSnapshotParser<S, T>
+) : State<T>(snapshots.version) {
+    override suspend fun getItems(parseContext: CoroutineContext): List<T> =
+            withContext(parseContext) { snapshots.map { parser.parseSnapshot(it) } }
+}
+
+/**
+ * Models copied on the main thread, for arrays whose models can't all be parsed from snapshots.
+ */
+private class ModelState<out T>(private val models: List<T>) : State<T>(null) {
+    override suspend fun getItems(parseContext: CoroutineContext): List<T> = models
+}
+
+private fun <S, T> BaseObservableSnapshotArray<S, *, *, T>.capture(): State<T> {
+    val parser = backgroundParser
+    return if (parser == null) ModelState(ArrayList(this)) else SnapshotState(snapshotView, parser)
+}
+
+/**
+ * Counts the channels reading the snapshot views of each array, to disable the views enabled for
+ * them once the last one is cancelled. Views enabled by the app are left alone. Only used on the
+ * main thread.
+ */
+private object SnapshotViewUsers {
+    // Arrays are lists, which compare by content
+    private val counts = IdentityHashMap<BaseObservableSnapshotArray<*, *, *, *>, Int>()
+
+    fun add(array: BaseObservableSnapshotArray<*, *, *, *>) {
+        val count = counts[array]
+        if (count != null) {
+            counts[array] = count + 1
+        } else if (!array.isSnapshotViewEnabled) {
+            array.isSnapshotViewEnabled = true
+            counts[array] = 1
+        }
+    }
+
+    fun remove(array: BaseObservableSnapshotArray<*, *, *, *>) {
+        val count = counts[array] ?: return
+        if (count > 1) {
+            counts[array] = count - 1
+        } else {
+            counts.remove(array)
+            array.isSnapshotViewEnabled = false
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.firebase.ui.coroutines
+
+import com.firebase.ui.common.BaseCachingSnapshotParser
+import com.firebase.ui.common.BaseChangeEventListener
+import com.firebase.ui.common.BaseObservableSnapshotArray
+import com.firebase.ui.common.BaseSnapshotParser
+import com.firebase.ui.common.ChangeEventType
+import kotlinx.coroutines.experimental.channels.ReceiveChannel
+import kotlinx.coroutines.experimental.newSingleThreadContext
+import kotlinx.coroutines.experimental.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.Collections
+
+private typealias Listener = BaseChangeEventListener<String, Exception>
+
+class SnapshotArrayChannelsTest {
+    // Stands in for the main thread: the array is only touched from it
+    private val main = newSingleThreadContext("main")
+    private val parse = newSingleThreadContext("parse")
+    private val parser = RecordingParser()
+    private val array = TestArray(parser, "a=1", "b=2")
+
+    @After
+    fun tearDown() {
+        main.close()
+        parse.close()
+    }
+
+    @Test
+    fun itemsAreParsedOffTheMainThread() = runBlocking<Unit> {
+        val items = items(conflate = false)
+        onMain { array.dataChanged() }
+
+        assertEquals(listOf("1", "2"), items.receive())
+        assertEquals(setOf("parse"), parser.threads.toSet())
+        items.cancel()
+    }
+
+    @Test
+    fun bufferedStatesKeepTheirOwnSnapshots() = runBlocking<Unit> {
+        val items = items(conflate = false)
+        onMain {
+            array.serverAdd("c=3")
+            array.dataChanged()
+            array.serverChange(0, "a=9")
+            array.serverRemove(1)
+            array.dataChanged()
+        }
+
+        assertEquals(listOf("1", "2", "3"), items.receive())
+        assertEquals(listOf("9", "3"), items.receive())
+        assertEquals(setOf("parse"), parser.threads.toSet())
+        items.cancel()
+    }
+
+    @Test
+    fun conflatedStatesSkipToTheLatest() = runBlocking<Unit> {
+        val items = items(conflate = true)
+        onMain {
+            array.dataChanged()
+            array.serverAdd("c=3")
+            array.dataChanged()
+            array.serverAdd("d=4")
+            array.dataChanged()
+        }
+
+        assertEquals(listOf("1", "2", "3", "4"), items.receive())
+        onMain {}
+        assertTrue(items.isEmpty)
+        items.cancel()
+    }
+
+    @Test
+    fun provisionalModelsAreCopiedOnTheMainThread() = runBlocking<Unit> {
+        val items = items(conflate = false)
+        onMain {
+            array.setProvisionalModel("a", "edited")
+            array.dataChanged()
+        }
+
+        assertEquals(listOf("edited", "2"), items.receive())
+        assertEquals(listOf("main"), parser.threads)
+        items.cancel()
+    }
+
+    @Test
+    fun snapshotViewsAreDisabledWithTheirLastChannel() = runBlocking<Unit> {
+        val first = items(conflate = true)
+        val second = items(conflate = true)
+        onMain { assertTrue(array.isSnapshotViewEnabled) }
+
+        first.cancel()
+        onMain { assertTrue(array.isSnapshotViewEnabled) }
+        second.cancel()
+        onMain { assertFalse(array.isSnapshotViewEnabled) }
+
+        // Views enabled by the app stay enabled
+        onMain { array.isSnapshotViewEnabled = true }
+        val third = items(conflate = true)
+        onMain {}
+        third.cancel()
+        onMain { assertTrue(array.isSnapshotViewEnabled) }
+    }
+
+    @Test
+    fun errorsCloseTheChannel() = runBlocking<Unit> {
+        val items = items(conflate = false)
+        onMain { array.error(IllegalStateException("Permission denied")) }
+
+        try {
+            items.receive()
+            fail()
+        } catch (e: IllegalStateException) {
+            assertEquals("Permission denied", e.message)
+        }
+    }
+
+    @Test
+    fun changeBatchesStartWithExistingItems() = runBlocking<Unit> {
+        val batches = array.produceChangeBatches(main, { it }, { it })
+        onMain {
+            array.dataChanged()
+            array.serverAdd("c=3")
+            array.dataChanged()
+        }
+
+        assertEquals(ChangeBatch(listOf(
+                Change(ChangeEventType.ADDED, "a=1", 0, -1),
+                Change(ChangeEventType.ADDED, "b=2", 1, -1))), batches.receive())
+        assertEquals(ChangeBatch(listOf(
+                Change(ChangeEventType.ADDED, "c=3", 2, -1))), batches.receive())
+        batches.cancel()
+    }
+
+    private fun items(conflate: Boolean): ReceiveChannel<List<String>> =
+            array.produceItems(main, parse, conflate, { it }, { it })
+
+    private fun onMain(block: () -> Unit) = runBlocking(main) { block() }
+
+    private class RecordingParser : BaseSnapshotParser<String, String> {
+        val threads: MutableList<String> = Collections.synchronizedList(ArrayList<String>())
+
+        override fun parseSnapshot(snapshot: String): String {
+            threads.add(Thread.currentThread().name)
+            return snapshot.substringAfter('=')
+        }
+    }
+
+    /**
+     * Holds "key=value" snapshots, whose models are their values.
+     */
+    private class TestArray(
+            parser: RecordingParser,
+            vararg snapshots: String
+    ) : BaseObservableSnapshotArray<String, Exception, Listener, String>(
+            object : BaseCachingSnapshotParser<String, String>(parser) {
+                override fun getId(snapshot: String) = snapshot.substringBefore('=')
+            }) {
+        private val snapshots = snapshots.toMutableList()
+
+        override fun getSnapshots(): List<String> = snapshots
+
+        fun serverAdd(snapshot: String) {
+            snapshots.add(snapshot)
+            notifyOnChildChanged(ChangeEventType.ADDED, snapshot, snapshots.size - 1, -1)
+        }
+
+        fun serverChange(index: Int, snapshot: String) {
+            snapshots[index] = snapshot
+            notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1)
+        }
+
+        fun serverRemove(index: Int) {
+            notifyOnChildChanged(ChangeEventType.REMOVED, snapshots.removeAt(index), -1, index)
+        }
+
+        fun dataChanged() = notifyOnDataChanged()
+
+        fun error(e: Exception) = notifyOnError(e)
+    }
+}
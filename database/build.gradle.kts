@@ -4,6 +4,14 @@ android {
     defaultConfig {
         testInstrumentationRunner = "android.support.test.runner.AndroidJUnitRunner"
     }
+
+    buildTypes {
+        getByName("release") {
+            postprocessing {
+                consumerProguardFiles("proguard-rules.pro")
+            }
+        }
+    }
 }
 
 dependencies {
@@ -14,6 +22,8 @@ dependencies {
     api(Config.Libs.Support.recyclerView)
     annotationProcessor(Config.Libs.Arch.compiler)
 
+    compileOnly(Config.Libs.Arch.paging)
+
     androidTestImplementation(Config.Libs.Test.junit)
     androidTestImplementation(Config.Libs.Test.runner)
     androidTestImplementation(Config.Libs.Test.rules)
@@ -0,0 +1,5 @@
+-dontwarn com.firebase.ui.database.paging.**
+
+# Generated parsers are looked up by their model's name
+-keepnames @com.firebase.ui.common.GenerateSnapshotParser class *
+-keep class **_DatabaseParser { <init>(); }
@@ -14,10 +14,16 @@
 
 package com.firebase.ui.database;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.firebase.ui.common.ChangeEventType;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 
@@ -26,15 +32,27 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import static com.firebase.ui.database.TestUtils.getAppInstance;
 import static com.firebase.ui.database.TestUtils.isValuesEqual;
 import static com.firebase.ui.database.TestUtils.runAndWaitUntil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class FirebaseArrayTest {
     private static final int INITIAL_SIZE = 3;
+    private static final int BURST_SIZE = 5;
+    private static final int TIMEOUT_SECONDS = 10;
+    /** How long to wait for stray data changes after the expected ones. */
+    private static final long SETTLE_MILLIS = 1000;
     private DatabaseReference mRef;
     private FirebaseArray<Integer> mArray;
     private ChangeEventListener mListener;
@@ -140,4 +158,134 @@ public class FirebaseArrayTest {
             }
         });
     }
+
+    @Test
+    public void testOneDataChangedPerBurst() throws Exception {
+        final DataChangeCounter counter = new DataChangeCounter();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mArray.addChangeEventListener(counter);
+                // Ignore the catch up event of the populated array
+                counter.reset();
+
+                mRef.updateChildren(newBurst());
+            }
+        });
+
+        assertTrue(counter.awaitDataChanged());
+        Thread.sleep(SETTLE_MILLIS);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(1, counter.getCount());
+        assertEquals(INITIAL_SIZE + BURST_SIZE, (int) counter.getSizes().get(0));
+        mArray.removeChangeEventListener(counter);
+    }
+
+    @Test
+    public void testNoDataChangedAfterStopListening() throws Exception {
+        final DataChangeCounter restarted = new DataChangeCounter();
+        final ChangeEventListener stopper = new DataChangeCounter() {
+            private boolean mIsStopping;
+
+            @Override
+            public void onChildChanged(@NonNull ChangeEventType type,
+                                       @NonNull DataSnapshot snapshot,
+                                       int newIndex,
+                                       int oldIndex) {
+                // Skip the catch up events for the initial children
+                if (mIsStopping || snapshot.getValue(Integer.class) <= INITIAL_SIZE) return;
+                mIsStopping = true;
+
+                // Runs after the burst but before the array's pending data change
+                final ChangeEventListener self = this;
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mArray.removeChangeEventListener(self);
+                        mArray.removeChangeEventListener(mListener);
+
+                        mListener = mArray.addChangeEventListener(restarted);
+                    }
+                });
+            }
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mArray.addChangeEventListener(stopper);
+                mRef.updateChildren(newBurst());
+            }
+        });
+
+        // The data change of the stopped session must not leak into the restarted one
+        assertTrue(restarted.awaitDataChanged());
+        Thread.sleep(SETTLE_MILLIS);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(1, restarted.getCount());
+        assertEquals(INITIAL_SIZE + BURST_SIZE, (int) restarted.getSizes().get(0));
+    }
+
+    /**
+     * @return values for several new children, to be written in a single update
+     */
+    private Map<String, Object> newBurst() {
+        Map<String, Object> burst = new HashMap<>();
+        for (int i = 1; i <= BURST_SIZE; i++) {
+            burst.put(mRef.push().getKey(), INITIAL_SIZE + i);
+        }
+        return burst;
+    }
+
+    /**
+     * Records the array's size at each data change.
+     */
+    private class DataChangeCounter implements ChangeEventListener {
+        private final Semaphore mDataChanged = new Semaphore(0);
+        private final List<Integer> mSizes = new ArrayList<>();
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull DataSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+        }
+
+        @Override
+        public void onDataChanged() {
+            synchronized (mSizes) {
+                mSizes.add(mArray.size());
+            }
+            mDataChanged.release();
+        }
+
+        @Override
+        public void onError(@NonNull DatabaseError error) {
+            throw new IllegalStateException(error.toException());
+        }
+
+        boolean awaitDataChanged() throws InterruptedException {
+            return mDataChanged.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        void reset() {
+            synchronized (mSizes) {
+                mSizes.clear();
+            }
+            mDataChanged.drainPermits();
+        }
+
+        int getCount() {
+            synchronized (mSizes) {
+                return mSizes.size();
+            }
+        }
+
+        List<Integer> getSizes() {
+            synchronized (mSizes) {
+                return new ArrayList<>(mSizes);
+            }
+        }
+    }
 }
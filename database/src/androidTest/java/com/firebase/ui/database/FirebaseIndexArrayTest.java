@@ -14,9 +14,13 @@
 
 package com.firebase.ui.database;
 
+import android.support.annotation.NonNull;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.firebase.ui.common.ChangeEventType;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 
@@ -25,11 +29,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import static com.firebase.ui.database.TestUtils.getAppInstance;
 import static com.firebase.ui.database.TestUtils.isValuesEqual;
 import static com.firebase.ui.database.TestUtils.runAndWaitUntil;
+import static org.junit.Assert.assertEquals;
 
 @RunWith(AndroidJUnit4.class)
 public class FirebaseIndexArrayTest {
@@ -131,4 +139,119 @@ public class FirebaseIndexArrayTest {
             }
         });
     }
+
+    @Test
+    public void testMaxConcurrentJoins() throws Exception {
+        final FirebaseIndexArray<Integer> array =
+                new FirebaseIndexArray<>(mKeyRef, mRef, new ClassSnapshotParser<>(Integer.class));
+        array.setMaxConcurrentJoins(1);
+        array.setVisibleRange(INITIAL_SIZE - 1, INITIAL_SIZE - 1);
+
+        final List<Integer> added = new ArrayList<>();
+        ChangeEventListener listener = array.addChangeEventListener(new ChangeEventListener() {
+            @Override
+            public void onChildChanged(@NonNull ChangeEventType type,
+                                       @NonNull DataSnapshot snapshot,
+                                       int newIndex,
+                                       int oldIndex) {
+                if (type == ChangeEventType.ADDED) added.add(snapshot.getValue(Integer.class));
+            }
+
+            @Override
+            public void onDataChanged() {
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                throw new IllegalStateException(error.toException());
+            }
+        });
+
+        try {
+            runAndWaitUntil(array, new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return array.size() == INITIAL_SIZE;
+                }
+            });
+
+            // The first key's join starts right away, then the visible last key jumps the queue
+            assertEquals(Arrays.asList(1, 3, 2), added);
+            assertEquals(Arrays.asList(1, 2, 3),
+                    Arrays.asList(array.get(0), array.get(1), array.get(2)));
+        } finally {
+            array.removeChangeEventListener(listener);
+        }
+    }
+
+    @Test
+    public void testOneShotJoins() throws Exception {
+        final FirebaseIndexArray<Integer> array =
+                new FirebaseIndexArray<>(mKeyRef, mRef, new ClassSnapshotParser<>(Integer.class));
+        array.setOneShotJoins(true);
+
+        ChangeEventListener listener = runAndWaitUntil(array, new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return array.size() == INITIAL_SIZE;
+            }
+        });
+        final String key = array.getSnapshot(0).getKey();
+
+        try {
+            // Changes to joined data are ignored, new keys are still joined
+            runAndWaitUntil(array, new Runnable() {
+                @Override
+                public void run() {
+                    mRef.child(key).setValue(10);
+                    TestUtils.pushValue(mKeyRef, mRef, 4, null);
+                }
+            }, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return array.size() == INITIAL_SIZE + 1;
+                }
+            });
+            assertEquals(1, (int) array.get(0));
+            assertEquals(4, (int) array.get(INITIAL_SIZE));
+        } finally {
+            array.removeChangeEventListener(listener);
+        }
+
+        // Restarting reuses the cached data instead of fetching it again
+        listener = runAndWaitUntil(array, new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return array.size() == INITIAL_SIZE + 1;
+            }
+        });
+        assertEquals(1, (int) array.get(0));
+        array.removeChangeEventListener(listener);
+
+        // Leaving one-shot mode drops the cache so the current data is joined
+        array.setOneShotJoins(false);
+        listener = runAndWaitUntil(array, new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return array.size() == INITIAL_SIZE + 1 && array.get(0).equals(10);
+            }
+        });
+        array.removeChangeEventListener(listener);
+    }
 }
@@ -14,6 +14,8 @@
 
 package com.firebase.ui.database;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 
 import com.firebase.ui.common.ChangeEventType;
@@ -34,6 +36,38 @@ public class FirebaseArray<T> extends ObservableSnapshotArray<T>
     private final Query mQuery;
     private final List<DataSnapshot> mSnapshots = new ArrayList<>();
 
+    /**
+     * The SDK raises all child events resulting from a single update in one main thread message,
+     * so posting to the back of the queue lets us detect the end of a batch without a value
+     * listener that would rebuild a snapshot of the entire query on every change.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mNotifyDataChanged = new Runnable() {
+        @Override
+        public void run() {
+            mIsDataChangePending = false;
+            notifyOnDataChanged();
+        }
+    };
+    private boolean mIsDataChangePending;
+
+    /**
+     * True once the initial value event has been received. Until then, child events are part of
+     * the initial load and {@link #onDataChange(DataSnapshot)} signals its end.
+     */
+    private boolean mIsInitialLoadComplete;
+
+    /**
+     * True if the snapshots should be kept while the array is stopped, see {@link
+     * #setReconcileOnRestart(boolean)}.
+     */
+    private boolean mReconcileOnRestart;
+    /**
+     * The initial load after a restart with retained snapshots. It is reconciled against them once
+     * complete, until then child events are applied silently to this list.
+     */
+    private List<DataSnapshot> mLoadingSnapshots;
+
     /**
      * Create a new FirebaseArray with a custom {@link SnapshotParser}.
      *
@@ -47,11 +81,31 @@ public class FirebaseArray<T> extends ObservableSnapshotArray<T>
         mQuery = query;
     }
 
+    /**
+     * Keep the snapshots while the array is stopped. When it restarts, listeners immediately see
+     * the previous results and, once the fresh initial load is complete, only receive the events
+     * needed to bring them up to date instead of the whole list being cleared and added again.
+     * <p>
+     * This avoids flashing and rebuilding lists when returning to a screen, at the cost of keeping
+     * the snapshots in memory while it isn't visible.
+     */
+    public void setReconcileOnRestart(boolean enabled) {
+        mReconcileOnRestart = enabled;
+    }
+
+    @Override
+    protected boolean shouldRetainSnapshots() {
+        return mReconcileOnRestart;
+    }
+
     @Override
     protected void onCreate() {
         super.onCreate();
+        if (!mSnapshots.isEmpty()) { mLoadingSnapshots = new ArrayList<>(); }
         mQuery.addChildEventListener(this);
-        mQuery.addValueEventListener(this);
+        // A single value event is enough to know when the initial load is complete, even if the
+        // query is empty. Afterwards, batches are detected by `onChildEvent()`.
+        mQuery.addListenerForSingleValueEvent(this);
     }
 
     @Override
@@ -59,6 +113,11 @@ public class FirebaseArray<T> extends ObservableSnapshotArray<T>
         super.onDestroy();
         mQuery.removeEventListener((ValueEventListener) this);
         mQuery.removeEventListener((ChildEventListener) this);
+
+        mHandler.removeCallbacks(mNotifyDataChanged);
+        mIsDataChangePending = false;
+        mIsInitialLoadComplete = false;
+        mLoadingSnapshots = null;
     }
 
     @Override
@@ -68,39 +127,70 @@ public class FirebaseArray<T> extends ObservableSnapshotArray<T>
             index = getIndexForKey(previousChildKey) + 1;
         }
 
+        if (mLoadingSnapshots != null) {
+            mLoadingSnapshots.add(index, snapshot);
+            return;
+        }
+
         mSnapshots.add(index, snapshot);
         notifyOnChildChanged(ChangeEventType.ADDED, snapshot, index, -1);
+        onChildEvent();
     }
 
     @Override
     public void onChildChanged(DataSnapshot snapshot, String previousChildKey) {
         int index = getIndexForKey(snapshot.getKey());
 
-        mSnapshots.set(index, snapshot);
-        notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1);
+        if (mLoadingSnapshots != null) {
+            mLoadingSnapshots.set(index, snapshot);
+            return;
+        }
+
+        DataSnapshot previous = mSnapshots.set(index, snapshot);
+        notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1, previous);
+        onChildEvent();
     }
 
     @Override
     public void onChildRemoved(DataSnapshot snapshot) {
         int index = getIndexForKey(snapshot.getKey());
 
+        if (mLoadingSnapshots != null) {
+            mLoadingSnapshots.remove(index);
+            return;
+        }
+
         mSnapshots.remove(index);
         notifyOnChildChanged(ChangeEventType.REMOVED, snapshot, index, -1);
+        onChildEvent();
     }
 
     @Override
     public void onChildMoved(DataSnapshot snapshot, String previousChildKey) {
+        List<DataSnapshot> snapshots = getLoadingOrCurrentSnapshots();
         int oldIndex = getIndexForKey(snapshot.getKey());
-        mSnapshots.remove(oldIndex);
+        snapshots.remove(oldIndex);
 
         int newIndex = previousChildKey == null ? 0 : getIndexForKey(previousChildKey) + 1;
-        mSnapshots.add(newIndex, snapshot);
+        snapshots.add(newIndex, snapshot);
+        if (mLoadingSnapshots != null) return;
 
         notifyOnChildChanged(ChangeEventType.MOVED, snapshot, newIndex, oldIndex);
+        onChildEvent();
     }
 
     @Override
     public void onDataChange(DataSnapshot dataSnapshot) {
+        // Single value listeners can't be removed so this could be left over from a previous
+        // listening session.
+        if (mIsInitialLoadComplete || !isListening()) return;
+
+        mIsInitialLoadComplete = true;
+        if (mLoadingSnapshots != null) {
+            List<DataSnapshot> snapshots = mLoadingSnapshots;
+            mLoadingSnapshots = null;
+            reconcile(snapshots);
+        }
         notifyOnDataChanged();
     }
 
@@ -109,9 +199,20 @@ public class FirebaseArray<T> extends ObservableSnapshotArray<T>
         notifyOnError(error);
     }
 
+    private void onChildEvent() {
+        if (mIsInitialLoadComplete && !mIsDataChangePending) {
+            mIsDataChangePending = true;
+            mHandler.post(mNotifyDataChanged);
+        }
+    }
+
+    private List<DataSnapshot> getLoadingOrCurrentSnapshots() {
+        return mLoadingSnapshots == null ? mSnapshots : mLoadingSnapshots;
+    }
+
     private int getIndexForKey(String key) {
         int index = 0;
-        for (DataSnapshot snapshot : mSnapshots) {
+        for (DataSnapshot snapshot : getLoadingOrCurrentSnapshots()) {
             if (snapshot.getKey().equals(key)) {
                 return index;
             } else {
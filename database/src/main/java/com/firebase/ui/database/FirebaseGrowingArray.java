@@ -0,0 +1,538 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exposes a window of a Firebase query which grows by a page whenever the user nears its end, while
+ * keeping realtime updates for everything loaded so far.
+ * <p>
+ * Each page is listened to separately. The page at the growing end is limited to the page size and
+ * starts where the previous one ends. When the window grows, it is replaced by a query spanning
+ * the items it holds, so that items added to it later don't push others out, and the next page
+ * starts after its last item. Both are loaded in the background and reconciled against the page
+ * they replace, so listeners are only told about new or changed items. Each page is therefore
+ * downloaded about twice, however many pages are loaded.
+ */
+public class FirebaseGrowingArray<T> extends ObservableSnapshotArray<T> {
+    private static final SnapshotParser<String> KEY_PARSER = new SnapshotParser<String>() {
+        @NonNull
+        @Override
+        public String parseSnapshot(@NonNull DataSnapshot snapshot) {
+            return snapshot.getKey();
+        }
+    };
+
+    private final Query mQuery;
+    private final Order mOrder;
+    private final int mPageSize;
+    private final boolean mAnchorToLast;
+    private final List<DataSnapshot> mSnapshots = new ArrayList<>();
+    /** Pages in display order, the one at the growing end is last unless anchored to the last. */
+    private final List<Page> mPages = new ArrayList<>();
+
+    private int mPrefetchDistance;
+    /** The pages which replace the one at the growing end once both have loaded. */
+    private Page mPendingRange;
+    private Page mPendingPage;
+
+    /**
+     * Create a new FirebaseGrowingArray which loads the first items of the query.
+     *
+     * @see #FirebaseGrowingArray(Query, Order, int, boolean, SnapshotParser)
+     */
+    public FirebaseGrowingArray(@NonNull Query query,
+                                @NonNull Order order,
+                                int pageSize,
+                                @NonNull SnapshotParser<T> parser) {
+        this(query, order, pageSize, false, parser);
+    }
+
+    /**
+     * @param query        the location to page through, such as a {@link
+     *                     com.google.firebase.database.DatabaseReference}. It must not be ordered,
+     *                     filtered or limited.
+     * @param order        how to order the items
+     * @param pageSize     the number of items to load initially and each time the window grows
+     * @param anchorToLast true to load the last items of the query and grow towards its start, for
+     *                     example to show the latest messages of a chat
+     * @param parser       the {@link SnapshotParser} to use
+     */
+    public FirebaseGrowingArray(@NonNull Query query,
+                                @NonNull Order order,
+                                int pageSize,
+                                boolean anchorToLast,
+                                @NonNull SnapshotParser<T> parser) {
+        super(parser);
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1: " + pageSize);
+        }
+
+        mQuery = query;
+        mOrder = order;
+        mPageSize = pageSize;
+        mAnchorToLast = anchorToLast;
+        mPrefetchDistance = pageSize;
+        mPages.add(new Page(null, null, pageSize));
+    }
+
+    /**
+     * Set how close to the end of the window an item passed to {@link #loadAround(int)} must be to
+     * grow it. Defaults to the page size.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * Call when the item at the given position is displayed, for example from {@code
+     * onBindViewHolder}, to grow the window once the user nears its end.
+     */
+    public void loadAround(int position) {
+        int distanceToEnd = mAnchorToLast ? position : size() - 1 - position;
+        if (distanceToEnd < mPrefetchDistance) loadMore();
+    }
+
+    /**
+     * Grow the window by a page, unless it is already growing or the query has no more items.
+     *
+     * @throws IllegalStateException if the query is ordered by a child holding an object at the
+     *                               window's end, which can't be started at
+     */
+    public void loadMore() {
+        if (!isListening() || mPendingPage != null || !hasMore()) return;
+
+        Page edge = getGrowingPage();
+        Cursor cursor;
+        if (mAnchorToLast) {
+            cursor = new Cursor(mOrder, edge.mArray.getSnapshot(0));
+            mPendingRange = new Page(cursor, edge.mEnd, 0);
+            mPendingPage = new Page(null, cursor, mPageSize + 1);
+        } else {
+            cursor = new Cursor(mOrder, edge.mArray.getSnapshot(edge.mArray.size() - 1));
+            mPendingRange = new Page(edge.mStart, cursor, 0);
+            mPendingPage = new Page(cursor, null, mPageSize + 1);
+        }
+        mPendingRange.start();
+        mPendingPage.start();
+    }
+
+    /**
+     * @return false if the whole query fits in the current window
+     */
+    public boolean hasMore() {
+        return getGrowingPage().isFull();
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        for (Page page : mPages) {
+            page.start();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (Page page : mPages) {
+            page.stop();
+        }
+        stopPendingPages();
+    }
+
+    @NonNull
+    @Override
+    protected List<DataSnapshot> getSnapshots() {
+        return mSnapshots;
+    }
+
+    private Page getGrowingPage() {
+        return mPages.get(mAnchorToLast ? 0 : mPages.size() - 1);
+    }
+
+    private int getOffset(Page target) {
+        int offset = 0;
+        for (Page page : mPages) {
+            if (page == target) break;
+            offset += page.size();
+        }
+        return offset;
+    }
+
+    private void stopPendingPages() {
+        if (mPendingPage == null) return;
+
+        mPendingRange.stop();
+        mPendingPage.stop();
+        mPendingRange = null;
+        mPendingPage = null;
+    }
+
+    private void onPendingPagesLoaded() {
+        int edgeIndex = mAnchorToLast ? 0 : mPages.size() - 1;
+        Page edge = mPages.get(edgeIndex);
+        int start = getOffset(edge);
+        int end = start + edge.size();
+
+        edge.stop();
+        mPages.set(edgeIndex, mPendingRange);
+        mPages.add(mAnchorToLast ? 0 : mPages.size(), mPendingPage);
+        List<DataSnapshot> snapshots = new ArrayList<>();
+        if (mAnchorToLast) { mPendingPage.addSnapshotsTo(snapshots); }
+        mPendingRange.addSnapshotsTo(snapshots);
+        if (!mAnchorToLast) { mPendingPage.addSnapshotsTo(snapshots); }
+        mPendingRange = null;
+        mPendingPage = null;
+
+        // The other pages are unchanged
+        reconcile(start, end, snapshots);
+        notifyOnDataChanged();
+    }
+
+    /**
+     * How a {@link FirebaseGrowingArray} orders its query, so that each page can start where the
+     * previous one ends.
+     */
+    public abstract static class Order {
+        private Order() {}
+
+        /**
+         * @see Query#orderByKey()
+         */
+        @NonNull
+        public static Order byKey() {
+            return new Order() {
+                @NonNull
+                @Override
+                Query orderBy(@NonNull Query query) {
+                    return query.orderByKey();
+                }
+
+                @Nullable
+                @Override
+                Object getValue(@NonNull DataSnapshot snapshot) {
+                    return null;
+                }
+
+                @NonNull
+                @Override
+                Query startAt(@NonNull Query query, @NonNull Cursor cursor) {
+                    return query.startAt(cursor.mKey);
+                }
+
+                @NonNull
+                @Override
+                Query endAt(@NonNull Query query, @NonNull Cursor cursor) {
+                    return query.endAt(cursor.mKey);
+                }
+            };
+        }
+
+        /**
+         * @see Query#orderByChild(String)
+         */
+        @NonNull
+        public static Order byChild(@NonNull final String path) {
+            return new Order() {
+                @NonNull
+                @Override
+                Query orderBy(@NonNull Query query) {
+                    return query.orderByChild(path);
+                }
+
+                @Nullable
+                @Override
+                Object getValue(@NonNull DataSnapshot snapshot) {
+                    return snapshot.child(path).getValue();
+                }
+            };
+        }
+
+        /**
+         * @see Query#orderByValue()
+         */
+        @NonNull
+        public static Order byValue() {
+            return new Order() {
+                @NonNull
+                @Override
+                Query orderBy(@NonNull Query query) {
+                    return query.orderByValue();
+                }
+
+                @Nullable
+                @Override
+                Object getValue(@NonNull DataSnapshot snapshot) {
+                    return snapshot.getValue();
+                }
+            };
+        }
+
+        /**
+         * @see Query#orderByPriority()
+         */
+        @NonNull
+        public static Order byPriority() {
+            return new Order() {
+                @NonNull
+                @Override
+                Query orderBy(@NonNull Query query) {
+                    return query.orderByPriority();
+                }
+
+                @Nullable
+                @Override
+                Object getValue(@NonNull DataSnapshot snapshot) {
+                    return snapshot.getPriority();
+                }
+            };
+        }
+
+        @NonNull
+        abstract Query orderBy(@NonNull Query query);
+
+        /**
+         * @return the value the query orders the snapshot by
+         */
+        @Nullable
+        abstract Object getValue(@NonNull DataSnapshot snapshot);
+
+        @NonNull
+        Query startAt(@NonNull Query query, @NonNull Cursor cursor) {
+            Object value = cursor.mValue;
+            if (value instanceof Boolean) return query.startAt((Boolean) value, cursor.mKey);
+            if (value instanceof Number) {
+                return query.startAt(((Number) value).doubleValue(), cursor.mKey);
+            }
+            return query.startAt((String) value, cursor.mKey);
+        }
+
+        @NonNull
+        Query endAt(@NonNull Query query, @NonNull Cursor cursor) {
+            Object value = cursor.mValue;
+            if (value instanceof Boolean) return query.endAt((Boolean) value, cursor.mKey);
+            if (value instanceof Number) {
+                return query.endAt(((Number) value).doubleValue(), cursor.mKey);
+            }
+            return query.endAt((String) value, cursor.mKey);
+        }
+
+        /**
+         * @return true if the snapshot is at the cursor's position
+         */
+        boolean isAt(@NonNull DataSnapshot snapshot, @NonNull Cursor cursor) {
+            if (!snapshot.getKey().equals(cursor.mKey)) return false;
+
+            Object value = getValue(snapshot);
+            if (value instanceof Number && cursor.mValue instanceof Number) {
+                return ((Number) value).doubleValue() == ((Number) cursor.mValue).doubleValue();
+            }
+            return value == null ? cursor.mValue == null : value.equals(cursor.mValue);
+        }
+    }
+
+    /**
+     * The position of an item in the query's order.
+     */
+    static final class Cursor {
+        final Object mValue;
+        final String mKey;
+
+        Cursor(@NonNull Order order, @NonNull DataSnapshot snapshot) {
+            mValue = order.getValue(snapshot);
+            mKey = snapshot.getKey();
+            if (mValue != null && !(mValue instanceof Boolean)
+                    && !(mValue instanceof Number) && !(mValue instanceof String)) {
+                throw new IllegalStateException(
+                        "Can't start a page at " + mKey + ", its order value is an object.");
+            }
+        }
+    }
+
+    /**
+     * Listens to the items between two cursors, or to a page of items after one. Queries can only
+     * start and end at an item, so the item at the cursor shared with the neighbouring page on the
+     * growing end's side belongs to that page and is left out of this one.
+     */
+    private final class Page implements ChangeEventListener {
+        private final Cursor mStart;
+        private final Cursor mEnd;
+        private final Cursor mExcluded;
+        /** The number of items to listen to, or 0 for all items between the cursors. */
+        private final int mLimit;
+        private final FirebaseArray<String> mArray;
+
+        /** The index in {@link #mArray} of the item at {@link #mExcluded}, or -1. */
+        private int mExcludedIndex = -1;
+        private boolean mIsLoaded;
+
+        Page(@Nullable Cursor start, @Nullable Cursor end, int limit) {
+            mStart = start;
+            mEnd = end;
+            mExcluded = mAnchorToLast ? end : start;
+            mLimit = limit;
+
+            Query query = mOrder.orderBy(mQuery);
+            if (start != null) query = mOrder.startAt(query, start);
+            if (end != null) query = mOrder.endAt(query, end);
+            if (limit > 0) {
+                query = mAnchorToLast ? query.limitToLast(limit) : query.limitToFirst(limit);
+            }
+            mArray = new FirebaseArray<>(query, KEY_PARSER);
+        }
+
+        void start() {
+            mExcludedIndex = -1;
+            mIsLoaded = false;
+            mArray.addChangeEventListener(this);
+        }
+
+        void stop() {
+            mArray.removeChangeEventListener(this);
+        }
+
+        boolean isFull() {
+            return mLimit > 0 && mArray.size() >= mLimit;
+        }
+
+        int size() {
+            return mExcludedIndex == -1 ? mArray.size() : mArray.size() - 1;
+        }
+
+        void addSnapshotsTo(List<DataSnapshot> snapshots) {
+            for (int i = 0; i < mArray.size(); i++) {
+                if (i != mExcludedIndex) { snapshots.add(mArray.getSnapshot(i)); }
+            }
+        }
+
+        /**
+         * @return the index among this page's items of the item at the given index of {@link
+         * #mArray}, which isn't the excluded one
+         */
+        private int toPageIndex(int arrayIndex) {
+            return mExcludedIndex != -1 && arrayIndex > mExcludedIndex
+                    ? arrayIndex - 1 : arrayIndex;
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull DataSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            boolean isExcluded = mExcluded != null && mOrder.isAt(snapshot, mExcluded);
+            switch (type) {
+                case ADDED:
+                    if (mExcludedIndex >= newIndex) mExcludedIndex++;
+                    if (isExcluded) {
+                        mExcludedIndex = newIndex;
+                    } else {
+                        dispatch(type, snapshot, toPageIndex(newIndex), -1);
+                    }
+                    break;
+                case CHANGED:
+                    // The item only moves once it has changed, so check its new position now
+                    if (newIndex == mExcludedIndex) {
+                        if (!isExcluded) {
+                            mExcludedIndex = -1;
+                            dispatch(ChangeEventType.ADDED, snapshot, newIndex, -1);
+                        }
+                    } else if (isExcluded) {
+                        int index = toPageIndex(newIndex);
+                        mExcludedIndex = newIndex;
+                        dispatch(ChangeEventType.REMOVED, snapshot, index, -1);
+                    } else {
+                        dispatch(type, snapshot, toPageIndex(newIndex), -1);
+                    }
+                    break;
+                case REMOVED:
+                    if (newIndex == mExcludedIndex) {
+                        mExcludedIndex = -1;
+                    } else {
+                        int index = toPageIndex(newIndex);
+                        if (mExcludedIndex > newIndex) mExcludedIndex--;
+                        dispatch(type, snapshot, index, -1);
+                    }
+                    break;
+                case MOVED:
+                    if (oldIndex == mExcludedIndex) {
+                        mExcludedIndex = newIndex;
+                    } else {
+                        int index = toPageIndex(oldIndex);
+                        if (mExcludedIndex > oldIndex) mExcludedIndex--;
+                        if (mExcludedIndex >= newIndex) mExcludedIndex++;
+                        if (toPageIndex(newIndex) != index) {
+                            dispatch(type, snapshot, toPageIndex(newIndex), index);
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+
+        /**
+         * Forward an event of this page's items if it is displayed.
+         */
+        private void dispatch(ChangeEventType type,
+                              DataSnapshot snapshot,
+                              int newIndex,
+                              int oldIndex) {
+            if (!mPages.contains(this)) return;
+
+            int offset = getOffset(this);
+            int index = offset + newIndex;
+            switch (type) {
+                case ADDED:
+                    mSnapshots.add(index, snapshot);
+                    notifyOnChildChanged(type, snapshot, index, -1);
+                    break;
+                case CHANGED:
+                    DataSnapshot previous = mSnapshots.set(index, snapshot);
+                    notifyOnChildChanged(type, snapshot, index, -1, previous);
+                    break;
+                case REMOVED:
+                    mSnapshots.remove(index);
+                    notifyOnChildChanged(type, snapshot, index, -1);
+                    break;
+                case MOVED:
+                    mSnapshots.remove(offset + oldIndex);
+                    mSnapshots.add(index, snapshot);
+                    notifyOnChildChanged(type, snapshot, index, offset + oldIndex);
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+
+        @Override
+        public void onDataChanged() {
+            if (this == mPendingRange || this == mPendingPage) {
+                mIsLoaded = true;
+                if (mPendingRange.mIsLoaded && mPendingPage.mIsLoaded) onPendingPagesLoaded();
+            } else if (mPages.contains(this)) {
+                notifyOnDataChanged();
+            }
+        }
+
+        @Override
+        public void onError(@NonNull DatabaseError error) {
+            if (this == mPendingRange || this == mPendingPage) {
+                // Let the next loadMore() try again
+                stopPendingPages();
+            } else if (!mPages.contains(this)) {
+                return;
+            }
+
+            notifyOnError(error);
+        }
+    }
+}
@@ -14,11 +14,14 @@
 
 package com.firebase.ui.database;
 
+import android.content.ComponentCallbacks2;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.MemoryTrimmer;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
@@ -32,6 +35,13 @@ import java.util.Map;
 
 public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         implements ChangeEventListener {
+    /**
+     * Data kept by {@link #setOneShotJoins(boolean)} was cleared.
+     *
+     * @see MemoryTrimmer.Listener
+     */
+    public static final String STEP_JOIN_CACHE = "join_cache";
+
     private static final String TAG = "FirebaseIndexArray";
 
     private final DatabaseReference mDataRef;
@@ -40,6 +50,19 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
     private final FirebaseArray<String> mKeySnapshots;
     private final List<DataSnapshot> mDataSnapshots = new ArrayList<>();
 
+    private final JoinScheduler mJoinScheduler;
+    private JoinProgressListener mJoinProgressListener;
+
+    /**
+     * True if each key's data should only be fetched once, see {@link #setOneShotJoins(boolean)}.
+     */
+    private boolean mOneShotJoins;
+    /**
+     * Data fetched in one-shot mode. It outlives {@link #onDestroy()} so restarting the array
+     * doesn't require downloading everything again.
+     */
+    private final Map<String, DataSnapshot> mJoinCache = new HashMap<>();
+
     /**
      * When keys are added in {@link FirebaseArray}, we need to fetch the data async. This list
      * contains keys that exist in the backing {@link FirebaseArray}, but their data hasn't been
@@ -47,9 +70,9 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
      */
     private final List<String> mKeysWithPendingUpdate = new ArrayList<>();
     /**
-     * Moves or deletions don't need to fetch new data so they can be performed instantly once the
-     * backing {@link FirebaseArray} is done updating. This will be true if the backing {@link
-     * FirebaseArray} is in the middle of an update, false otherwise.
+     * Moves, deletions, or additions with cached data don't need to fetch new data so they can be
+     * performed instantly once the backing {@link FirebaseArray} is done updating. This will be
+     * true if the backing {@link FirebaseArray} is in the middle of an update, false otherwise.
      */
     private boolean mHasPendingMoveOrDelete;
 
@@ -75,6 +98,79 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
                 return snapshot.getKey();
             }
         });
+        mJoinScheduler = new JoinScheduler(new JoinScheduler.Callback() {
+            @Override
+            public int getIndex(@NonNull String key, int lastIndex) {
+                return getKeyIndex(key, lastIndex);
+            }
+
+            @Override
+            public void onStartJoin(@NonNull String key, int index) {
+                DatabaseReference ref = mDataRef.child(key);
+                if (mOneShotJoins) {
+                    ref.addListenerForSingleValueEvent(new DataRefListener(key, index));
+                } else {
+                    mRefs.put(ref, ref.addValueEventListener(new DataRefListener(key, index)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Limit the number of data joins which may be outstanding at once. Keys beyond this limit are
+     * queued and fetched in order of their distance from the range set with {@link
+     * #setVisibleRange(int, int)}.
+     * <p>
+     * By default, there is no limit and every key's data is fetched as soon as the key arrives.
+     *
+     * @param maxConcurrentJoins the maximum number of keys whose data may be loading at once, must
+     *                           be at least 1
+     */
+    public void setMaxConcurrentJoins(int maxConcurrentJoins) {
+        mJoinScheduler.setMaxInFlight(maxConcurrentJoins);
+    }
+
+    /**
+     * Hint which items are currently on screen so their data is fetched before others when joins
+     * are limited by {@link #setMaxConcurrentJoins(int)}.
+     * <p>
+     * Positions are adapter positions which match key positions as long as every key has data.
+     *
+     * @param first the first visible position, inclusive
+     * @param last  the last visible position, inclusive
+     */
+    public void setVisibleRange(int first, int last) {
+        mJoinScheduler.setVisibleRange(first, last);
+    }
+
+    /**
+     * Set a listener to be notified each time a key's data has been fetched for the first time.
+     * Useful for showing how much of a large index has loaded before {@link
+     * ChangeEventListener#onDataChanged()} is called.
+     */
+    public void setJoinProgressListener(@Nullable JoinProgressListener listener) {
+        mJoinProgressListener = listener;
+    }
+
+    /**
+     * Fetch each key's data only once instead of listening to it for changes. Use this for data
+     * that never changes after being created, such as posts referenced from a feed index, to avoid
+     * holding one listener per key.
+     * <p>
+     * Fetched data is cached and reused if the array is restarted. Keys are still listened to so
+     * additions, removals, and moves in the index are reflected as usual. Changing the mode
+     * discards the cache.
+     * <p>
+     * Must be called before the array starts listening.
+     */
+    public void setOneShotJoins(boolean oneShotJoins) {
+        if (isListening()) {
+            throw new IllegalStateException("Join mode cannot be changed while listening.");
+        }
+
+        // Cached data is never updated, so it must not be shown once joins are listened to again
+        if (oneShotJoins != mOneShotJoins) mJoinCache.clear();
+        mOneShotJoins = oneShotJoins;
     }
 
     @Override
@@ -88,12 +184,27 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         super.onDestroy();
         mKeySnapshots.removeChangeEventListener(this);
 
+        mJoinScheduler.clear();
+        mKeysWithPendingUpdate.clear();
         for (DatabaseReference ref : mRefs.keySet()) {
             ref.removeEventListener(mRefs.get(ref));
         }
         mRefs.clear();
     }
 
+    @Override
+    protected void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // Cached joins only save downloads, give them up once the app is at risk of being killed
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            int count = mJoinCache.size();
+            mJoinCache.clear();
+            notifyOnTrimmed(level, STEP_JOIN_CACHE, count);
+        }
+    }
+
     @Override
     public void onChildChanged(@NonNull ChangeEventType type,
                                @NonNull DataSnapshot snapshot,
@@ -143,7 +254,7 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
             // correctly indexing their data (i.e. no null values) don't take a performance hit.
             realIndex = index;
         } else {
-            int dataCount = size();
+            int dataCount = mDataSnapshots.size();
             int dataIndex = 0;
             int keyIndex = 0;
 
@@ -163,20 +274,54 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         return realIndex;
     }
 
+    /**
+     * Find a key in the key query, searching outwards from where it was last seen since keys
+     * usually only shift by a few positions.
+     *
+     * @return the index of the key, or -1 if it isn't in the key query
+     */
+    private int getKeyIndex(String key, int lastIndex) {
+        int size = mKeySnapshots.size();
+        if (size == 0) return -1;
+
+        int start = Math.max(0, Math.min(lastIndex, size - 1));
+        for (int distance = 0; start - distance >= 0 || start + distance < size; distance++) {
+            int before = start - distance;
+            if (before >= 0 && key.equals(mKeySnapshots.getSnapshot(before).getKey())) {
+                return before;
+            }
+            int after = start + distance;
+            if (distance > 0 && after < size
+                    && key.equals(mKeySnapshots.getSnapshot(after).getKey())) {
+                return after;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Determines if a DataSnapshot with the given key is present at the given index.
      */
     private boolean isKeyAtIndex(String key, int index) {
-        return index >= 0 && index < size() && mDataSnapshots.get(index).getKey().equals(key);
+        return index >= 0 && index < mDataSnapshots.size()
+                && mDataSnapshots.get(index).getKey().equals(key);
     }
 
     private void onKeyAdded(DataSnapshot data, int newIndex) {
         String key = data.getKey();
-        DatabaseReference ref = mDataRef.child(key);
 
-        mKeysWithPendingUpdate.add(key);
-        // Start listening
-        mRefs.put(ref, ref.addValueEventListener(new DataRefListener(newIndex)));
+        DataSnapshot cached = mOneShotJoins ? mJoinCache.get(key) : null;
+        if (cached != null) {
+            int index = returnOrFindIndexForKey(newIndex, key);
+            mDataSnapshots.add(index, cached);
+            mHasPendingMoveOrDelete = true;
+            notifyOnChildChanged(ChangeEventType.ADDED, cached, index, -1);
+        } else {
+            mKeysWithPendingUpdate.add(key);
+            // Start listening once there's room for another join
+            mJoinScheduler.enqueue(key, newIndex);
+        }
+        notifyOnJoinProgress();
     }
 
     private void onKeyMoved(DataSnapshot data, int index, int oldIndex) {
@@ -199,6 +344,14 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         String key = data.getKey();
         ValueEventListener listener = mRefs.remove(mDataRef.getRef().child(key));
         if (listener != null) mDataRef.child(key).removeEventListener(listener);
+        mJoinCache.remove(key);
+
+        if (mJoinScheduler.cancel(key)) {
+            // The data never arrived so don't wait for it before calling `notifyOnDataChanged()`
+            mKeysWithPendingUpdate.remove(key);
+            if (mKeysWithPendingUpdate.isEmpty()) mHasPendingMoveOrDelete = true;
+        }
+        notifyOnJoinProgress();
 
         int realIndex = returnOrFindIndexForKey(index, key);
         if (isKeyAtIndex(key, realIndex)) {
@@ -208,27 +361,42 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
         }
     }
 
+    private void notifyOnJoinProgress() {
+        if (mJoinProgressListener != null) {
+            int total = mKeySnapshots.size();
+            mJoinProgressListener.onJoinProgress(total - mKeysWithPendingUpdate.size(), total);
+        }
+    }
+
     /**
      * A ValueEventListener attached to the joined child data.
      */
     private final class DataRefListener implements ValueEventListener {
+        private final String mKey;
         /** Cached index to skip searching for the current index on each update */
         private int currentIndex;
 
-        public DataRefListener(int index) {
+        public DataRefListener(String key, int index) {
+            mKey = key;
             currentIndex = index;
         }
 
         @Override
         public void onDataChange(DataSnapshot snapshot) {
             String key = snapshot.getKey();
+
+            if (mOneShotJoins) {
+                // Single value listeners can't be removed, so ignore keys removed in the meantime
+                if (!mJoinScheduler.isScheduled(key)) return;
+                if (snapshot.getValue() != null) mJoinCache.put(key, snapshot);
+            }
             int index = currentIndex = returnOrFindIndexForKey(currentIndex, key);
 
             if (snapshot.getValue() != null) {
                 if (isKeyAtIndex(key, index)) {
                     // We already know about this data, just update it
-                    mDataSnapshots.set(index, snapshot);
-                    notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1);
+                    DataSnapshot previous = mDataSnapshots.set(index, snapshot);
+                    notifyOnChildChanged(ChangeEventType.CHANGED, snapshot, index, -1, previous);
                 } else {
                     // We don't already know about this data, add it
                     mDataSnapshots.add(index, snapshot);
@@ -250,12 +418,14 @@ public class FirebaseIndexArray<T> extends ObservableSnapshotArray<T>
             // mistake and `snapshot.value == null`, we will never pop the queue and
             // `notifyOnDataChanged()` will never be called. Thus, we pop the queue anytime
             // an update is received.
-            mKeysWithPendingUpdate.remove(key);
+            if (mKeysWithPendingUpdate.remove(key)) notifyOnJoinProgress();
+            mJoinScheduler.onJoinComplete(key);
             if (mKeysWithPendingUpdate.isEmpty()) notifyOnDataChanged();
         }
 
         @Override
         public void onCancelled(DatabaseError error) {
+            mJoinScheduler.onJoinComplete(mKey);
             notifyOnError(error);
         }
     }
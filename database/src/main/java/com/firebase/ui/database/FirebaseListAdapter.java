@@ -5,16 +5,25 @@ import android.arch.lifecycle.LifecycleOwner;
 import android.arch.lifecycle.OnLifecycleEvent;
 import android.support.annotation.NonNull;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.MainThreadWatchdog;
+import com.firebase.ui.common.ProvisionalRowListener;
+import com.firebase.ui.common.ResetListener;
+import com.firebase.ui.common.StableIds;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * This class is a generic way of backing an Android {@link android.widget.ListView} with a Firebase
  * location. It handles all of the child events at the given Firebase location. It marshals received
@@ -26,12 +35,36 @@ import com.google.firebase.database.DatabaseReference;
  * @param <T> The class type to use as a model for the data contained in the children of the given
  *            Firebase location
  */
-public abstract class FirebaseListAdapter<T> extends BaseAdapter implements FirebaseAdapter<T> {
+public abstract class FirebaseListAdapter<T> extends BaseAdapter
+        implements FirebaseAdapter<T>, ResetListener, ProvisionalRowListener {
     private static final String TAG = "FirebaseListAdapter";
 
     private final ObservableSnapshotArray<T> mSnapshots;
     protected final int mLayout;
 
+    /**
+     * Content changes don't affect positions, so they are batched into a single refresh per frame.
+     */
+    private final Choreographer.FrameCallback mRefreshCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsRefreshPending = false;
+            FirebaseListAdapter.super.notifyDataSetChanged();
+        }
+    };
+    private boolean mIsRefreshPending;
+
+    /**
+     * What each view was last populated with, so rows whose data hasn't changed can be reused as
+     * is after a refresh.
+     */
+    private final Map<View, BoundRow> mBoundRows = new WeakHashMap<>();
+    /**
+     * Incremented each time the developer calls {@link #notifyDataSetChanged()} to force every row
+     * to be repopulated.
+     */
+    private int mGeneration;
+
     public FirebaseListAdapter(@NonNull FirebaseListOptions<T> options) {
         mSnapshots = options.getSnapshots();
         mLayout = options.getLayout();
@@ -53,7 +86,7 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
     @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
     public void stopListening() {
         mSnapshots.removeChangeEventListener(this);
-        notifyDataSetChanged();
+        refreshNow();
     }
 
     @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
@@ -66,7 +99,42 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
                                @NonNull DataSnapshot snapshot,
                                int newIndex,
                                int oldIndex) {
-        notifyDataSetChanged();
+        onRowChanged(type, newIndex);
+    }
+
+    @Override
+    public void onProvisionalRowChanged(@NonNull ChangeEventType type,
+                                        @NonNull String id,
+                                        int newIndex,
+                                        int oldIndex) {
+        onRowChanged(type, newIndex);
+    }
+
+    private void onRowChanged(ChangeEventType type, int index) {
+        if (type == ChangeEventType.CHANGED) {
+            // The row may display a provisional model while its snapshot stays the same
+            forgetBoundRow(index);
+            if (!mIsRefreshPending) {
+                mIsRefreshPending = true;
+                Choreographer.getInstance().postFrameCallback(mRefreshCallback);
+            }
+        } else {
+            // Structural changes must be applied right away or the ListView could request
+            // positions which no longer exist.
+            refreshNow();
+        }
+    }
+
+    private void forgetBoundRow(int position) {
+        Iterator<BoundRow> rows = mBoundRows.values().iterator();
+        while (rows.hasNext()) {
+            if (rows.next().mPosition == position) { rows.remove(); }
+        }
+    }
+
+    @Override
+    public void onReset() {
+        refreshNow();
     }
 
     @Override
@@ -104,7 +172,26 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
     @Override
     public long getItemId(int i) {
         // http://stackoverflow.com/questions/5100071/whats-the-purpose-of-item-ids-in-android-listview-adapter
-        return mSnapshots.getSnapshot(i).getKey().hashCode();
+        return StableIds.forKey(mSnapshots.getId(i));
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        // IDs are derived from keys which never change, this lets the ListView hand us back the
+        // same view for an item after a refresh.
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Calling this method directly repopulates every visible row, even those whose data hasn't
+     * changed.
+     */
+    @Override
+    public void notifyDataSetChanged() {
+        mGeneration++;
+        refreshNow();
     }
 
     @Override
@@ -113,13 +200,39 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
             view = LayoutInflater.from(viewGroup.getContext()).inflate(mLayout, viewGroup, false);
         }
 
+        // Provisional rows have no snapshot, their model identifies the data instead
+        Object data = mSnapshots.hasSnapshot(position)
+                ? mSnapshots.getSnapshot(position) : getItem(position);
+        BoundRow row = mBoundRows.get(view);
+        if (row != null && row.isBoundTo(data, position, mGeneration)) {
+            // The view already displays this exact data
+            return view;
+        }
+
         T model = getItem(position);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
 
         // Call out to subclass to marshall this model into the provided view
         populateView(view, model, position);
+
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            mSnapshots.reportSlowCall(
+                    MainThreadWatchdog.OPERATION_BIND, duration, getClass(), position);
+        }
+        mBoundRows.put(view, new BoundRow(data, position, mGeneration));
         return view;
     }
 
+    private void refreshNow() {
+        if (mIsRefreshPending) {
+            mIsRefreshPending = false;
+            Choreographer.getInstance().removeFrameCallback(mRefreshCallback);
+        }
+        super.notifyDataSetChanged();
+    }
+
     /**
      * Each time the data at the given Firebase location changes, this method will be called for
      * each item that needs to be displayed. The first two arguments correspond to the mLayout and
@@ -133,4 +246,25 @@ public abstract class FirebaseListAdapter<T> extends BaseAdapter implements Fire
      * @param position The position in the list of the view being populated
      */
     protected abstract void populateView(View v, T model, int position);
+
+    private static final class BoundRow {
+        private final Object mData;
+        private final int mPosition;
+        private final int mGeneration;
+
+        public BoundRow(Object data, int position, int generation) {
+            mData = data;
+            mPosition = position;
+            mGeneration = generation;
+        }
+
+        /**
+         * Snapshots are immutable and replaced on every change, so identity is enough to know
+         * whether the data is the same. Rows are forgotten when a provisional model changes
+         * without a new snapshot.
+         */
+        public boolean isBoundTo(Object data, int position, int generation) {
+            return mData == data && mPosition == position && mGeneration == generation;
+        }
+    }
 }
@@ -8,10 +8,17 @@ import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.ChangedFields;
+import com.firebase.ui.common.MainThreadWatchdog;
+import com.firebase.ui.common.ProvisionalRowListener;
+import com.firebase.ui.common.ResetListener;
+import com.firebase.ui.common.StableIds;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 
+import java.util.List;
+
 /**
  * This class is a generic way of backing a {@link RecyclerView} with a Firebase location. It
  * handles all of the child events at the given Firebase location and marshals received data into
@@ -25,11 +32,24 @@ import com.google.firebase.database.DatabaseReference;
  *             is shown for each object.
  */
 public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHolder>
-        extends RecyclerView.Adapter<VH> implements FirebaseAdapter<T> {
+        extends RecyclerView.Adapter<VH>
+        implements FirebaseAdapter<T>, ResetListener, ProvisionalRowListener {
     private static final String TAG = "FirebaseRecyclerAdapter";
 
     private final ObservableSnapshotArray<T> mSnapshots;
 
+    /**
+     * Tells a {@link FirebaseIndexArray} which rows are on screen so their data is joined first.
+     * {@link RecyclerView} calls it after each layout as well as when scrolling.
+     */
+    private final RecyclerView.OnScrollListener mVisibleRangeListener =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    updateVisibleRange(recyclerView);
+                }
+            };
+
     /**
      * Initialize a {@link RecyclerView.Adapter} that listens to a Firebase query. See
      * {@link FirebaseRecyclerOptions} for configuration options.
@@ -72,7 +92,8 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
                 notifyItemInserted(newIndex);
                 break;
             case CHANGED:
-                notifyItemChanged(newIndex);
+                // Lets rows be partially rebound, see onBindViewHolder(VH, int, T, List)
+                notifyItemChanged(newIndex, mSnapshots.getChangedFields());
                 break;
             case REMOVED:
                 notifyItemRemoved(newIndex);
@@ -85,6 +106,36 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
         }
     }
 
+    @Override
+    public void onProvisionalRowChanged(@NonNull ChangeEventType type,
+                                        @NonNull String id,
+                                        int newIndex,
+                                        int oldIndex) {
+        switch (type) {
+            case ADDED:
+                notifyItemInserted(newIndex);
+                break;
+            case CHANGED:
+                notifyItemChanged(newIndex);
+                break;
+            case REMOVED:
+                notifyItemRemoved(oldIndex);
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    /**
+     * Reloads all items at once when listening starts on a populated array, or when a stopped
+     * array released the snapshots it retained. Inserting them as a range would be inconsistent
+     * when the retained snapshots are still displayed.
+     */
+    @Override
+    public void onReset() {
+        notifyDataSetChanged();
+    }
+
     @Override
     public void onDataChanged() {
     }
@@ -117,6 +168,47 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
         return mSnapshots.isListening(this) ? mSnapshots.size() : 0;
     }
 
+    /**
+     * Returns an ID derived from the key of the item at the given position. Call {@link
+     * #setHasStableIds(boolean)} to let the {@link RecyclerView} use it to reuse views across
+     * {@link #notifyDataSetChanged()} calls.
+     */
+    @Override
+    public long getItemId(int position) {
+        return StableIds.forKey(mSnapshots.getId(position));
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (mSnapshots instanceof FirebaseIndexArray) {
+            recyclerView.addOnScrollListener(mVisibleRangeListener);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mVisibleRangeListener);
+    }
+
+    private void updateVisibleRange(@NonNull RecyclerView recyclerView) {
+        // Read positions from the children so any layout manager works
+        int first = RecyclerView.NO_POSITION;
+        int last = RecyclerView.NO_POSITION;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            int position = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i));
+            if (position == RecyclerView.NO_POSITION) continue;
+
+            first = first == RecyclerView.NO_POSITION ? position : Math.min(first, position);
+            last = Math.max(last, position);
+        }
+
+        if (first != RecyclerView.NO_POSITION) {
+            ((FirebaseIndexArray<T>) mSnapshots).setVisibleRange(first, last);
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull VH holder, int position) {
         onBindViewHolder(holder, position, getItem(position));
@@ -127,4 +219,38 @@ public abstract class FirebaseRecyclerAdapter<T, VH extends RecyclerView.ViewHol
      * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
      */
     protected abstract void onBindViewHolder(@NonNull VH holder, int position, @NonNull T model);
+
+    @Override
+    public void onBindViewHolder(@NonNull VH holder, int position, @NonNull List<Object> payloads) {
+        // Parsing is timed on its own, and the model stays cached for the bind
+        T model = getItem(position);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            onBindViewHolder(holder, position, model, payloads);
+        }
+
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            mSnapshots.reportSlowCall(
+                    MainThreadWatchdog.OPERATION_BIND, duration, getClass(), position);
+        }
+    }
+
+    /**
+     * Override to partially rebind a row. When a row changed, {@code payloads} usually holds
+     * {@link ChangedFields} describing which top-level fields differ, use {@link
+     * ChangedFields#merge(List)} to combine them. By default, the whole row is rebound.
+     *
+     * @param payloads a non-empty list of the payloads passed to {@link #notifyItemChanged(int,
+     *                 Object)} since the row was last bound
+     */
+    protected void onBindViewHolder(@NonNull VH holder,
+                                    int position,
+                                    @NonNull T model,
+                                    @NonNull List<Object> payloads) {
+        onBindViewHolder(holder, position, model);
+    }
 }
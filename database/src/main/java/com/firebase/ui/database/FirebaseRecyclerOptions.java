@@ -94,7 +94,7 @@ public final class FirebaseRecyclerOptions<T> {
          */
         @NonNull
         public Builder<T> setQuery(@NonNull Query query, @NonNull Class<T> modelClass) {
-            return setQuery(query, new ClassSnapshotParser<>(modelClass));
+            return setQuery(query, SnapshotParsers.forClass(modelClass));
         }
 
 
@@ -126,7 +126,7 @@ public final class FirebaseRecyclerOptions<T> {
         public Builder<T> setIndexedQuery(@NonNull Query keyQuery,
                                           @NonNull DatabaseReference dataRef,
                                           @NonNull Class<T> modelClass) {
-            return setIndexedQuery(keyQuery, dataRef, new ClassSnapshotParser<>(modelClass));
+            return setIndexedQuery(keyQuery, dataRef, SnapshotParsers.forClass(modelClass));
         }
 
         /**
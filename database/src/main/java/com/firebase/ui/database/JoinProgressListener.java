@@ -0,0 +1,17 @@
+package com.firebase.ui.database;
+
+/**
+ * Listener for the progress of data joins in a {@link FirebaseIndexArray}.
+ */
+public interface JoinProgressListener {
+
+    /**
+     * Called each time a key's data has been fetched for the first time or a key is added to or
+     * removed from the key query.
+     *
+     * @param joined the number of keys whose data has been fetched at least once
+     * @param total  the number of keys currently in the key query
+     */
+    void onJoinProgress(int joined, int total);
+
+}
@@ -0,0 +1,191 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Limits the number of data joins a {@link FirebaseIndexArray} has outstanding at any given time.
+ * <p>
+ * Joins waiting for a free slot are started in order of their distance from the visible range so
+ * the rows a user is looking at are populated first.
+ */
+final class JoinScheduler {
+    /**
+     * No limit on the number of joins that may be in flight.
+     */
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 11;
+
+    interface Callback {
+        /**
+         * Find the current index of a key about to be joined, which may have moved since it was
+         * enqueued.
+         *
+         * @param lastIndex the index of the key when it was enqueued
+         * @return the index of the key in the key query
+         */
+        int getIndex(@NonNull String key, int lastIndex);
+
+        /**
+         * Called when the join for {@code key} should start.
+         *
+         * @param index the current index of the key in the key query
+         */
+        void onStartJoin(@NonNull String key, int index);
+    }
+
+    private final Callback mCallback;
+
+    private final Map<String, PendingJoin> mPendingJoins = new HashMap<>();
+    private final Set<String> mInFlightJoins = new HashSet<>();
+    private PriorityQueue<PendingJoin> mQueue = newQueue(INITIAL_CAPACITY);
+
+    private int mMaxInFlight = UNLIMITED;
+    /**
+     * The visible range the queue is ordered by. It only follows the range set with {@link
+     * #setVisibleRange(int, int)} once that has moved far enough to be worth rebuilding the heap.
+     */
+    private int mVisibleStart;
+    private int mVisibleEnd = -1;
+
+    /** Used to break ties so equally distant joins start in the order they were requested. */
+    private long mSequence;
+
+    public JoinScheduler(@NonNull Callback callback) {
+        mCallback = callback;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one join must be allowed in flight.");
+        }
+
+        mMaxInFlight = maxInFlight;
+        drain();
+    }
+
+    /**
+     * Called on every scroll step, so the queue is only reordered once the range has moved by more
+     * than half its length. Until then the rows on screen are still close to the front.
+     */
+    public void setVisibleRange(int start, int end) {
+        int threshold = Math.max(1, (end - start + 1) / 2);
+        if (Math.abs(start - mVisibleStart) < threshold
+                && Math.abs(end - mVisibleEnd) < threshold) {
+            return;
+        }
+
+        mVisibleStart = start;
+        mVisibleEnd = end;
+        if (mQueue.isEmpty()) return;
+
+        // Distances are relative to the visible range so the heap needs to be rebuilt
+        List<PendingJoin> pending = new ArrayList<>(mQueue);
+        mQueue = newQueue(Math.max(INITIAL_CAPACITY, pending.size()));
+        mQueue.addAll(pending);
+    }
+
+    public void enqueue(@NonNull String key, int index) {
+        PendingJoin join = new PendingJoin(key, index, mSequence++);
+        mPendingJoins.put(key, join);
+        mQueue.add(join);
+        drain();
+    }
+
+    /**
+     * Remove a key from the schedule, whether or not its join has already started.
+     *
+     * @return true if the join for this key had not yet completed
+     */
+    public boolean cancel(@NonNull String key) {
+        PendingJoin join = mPendingJoins.remove(key);
+        if (join != null) {
+            mQueue.remove(join);
+            return true;
+        }
+
+        boolean wasInFlight = mInFlightJoins.remove(key);
+        drain();
+        return wasInFlight;
+    }
+
+    /**
+     * Frees up the slot used by {@code key}'s join. Calling this for a key which isn't in flight is
+     * a no-op.
+     */
+    public void onJoinComplete(@NonNull String key) {
+        if (mInFlightJoins.remove(key)) drain();
+    }
+
+    public boolean isScheduled(@NonNull String key) {
+        return mPendingJoins.containsKey(key) || mInFlightJoins.contains(key);
+    }
+
+    public void clear() {
+        mPendingJoins.clear();
+        mQueue.clear();
+        mInFlightJoins.clear();
+    }
+
+    private void drain() {
+        while (mInFlightJoins.size() < mMaxInFlight && !mQueue.isEmpty()) {
+            PendingJoin join = mQueue.poll();
+            mPendingJoins.remove(join.key);
+            mInFlightJoins.add(join.key);
+
+            // The queued index may be stale if keys were added, removed or moved since, only
+            // look up the current one for joins which actually start
+            mCallback.onStartJoin(join.key, mCallback.getIndex(join.key, join.index));
+        }
+    }
+
+    private int getDistance(int index) {
+        if (index < mVisibleStart) {
+            return mVisibleStart - index;
+        } else if (index > mVisibleEnd) {
+            return index - mVisibleEnd;
+        } else {
+            return 0;
+        }
+    }
+
+    private PriorityQueue<PendingJoin> newQueue(int capacity) {
+        return new PriorityQueue<>(capacity, new Comparator<PendingJoin>() {
+            @Override
+            public int compare(PendingJoin o1, PendingJoin o2) {
+                int distance = compareInts(getDistance(o1.index), getDistance(o2.index));
+                return distance == 0 ? compareLongs(o1.sequence, o2.sequence) : distance;
+            }
+        });
+    }
+
+    private static int compareInts(int x, int y) {
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    private static int compareLongs(long x, long y) {
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    private static final class PendingJoin {
+        final String key;
+        /** The index of the key when enqueued, which orders the queue. */
+        final int index;
+        final long sequence;
+
+        PendingJoin(String key, int index, long sequence) {
+            this.key = key;
+            this.index = index;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.firebase.ui.database;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.firebase.ui.common.BaseObservableSnapshotArray;
 import com.google.firebase.database.DataSnapshot;
@@ -24,4 +25,30 @@ public abstract class ObservableSnapshotArray<T>
     public ObservableSnapshotArray(@NonNull SnapshotParser<T> parser) {
         super(new CachingSnapshotParser<>(parser));
     }
+
+    @NonNull
+    @Override
+    protected String getSnapshotKey(@NonNull DataSnapshot snapshot) {
+        return snapshot.getKey();
+    }
+
+    @NonNull
+    @Override
+    protected String getSnapshotPath(@NonNull DataSnapshot snapshot) {
+        return snapshot.getRef().toString();
+    }
+
+    @Nullable
+    @Override
+    protected Object getFieldData(@NonNull DataSnapshot snapshot) {
+        return snapshot.getValue();
+    }
+
+    /**
+     * Database listeners read the index of removed snapshots from the new index.
+     */
+    @Override
+    protected boolean isRemovalReportedAtNewIndex() {
+        return true;
+    }
 }
@@ -0,0 +1,25 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+
+import com.firebase.ui.common.BaseProjectedRow;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+/**
+ * Row model created by a {@link ProjectionSnapshotParser}.
+ */
+public final class ProjectedRow extends BaseProjectedRow<DataSnapshot> {
+
+    ProjectedRow(@NonNull DataSnapshot snapshot,
+                 @NonNull Map<String, Integer> fieldIndices,
+                 @NonNull Object[] values) {
+        super(snapshot, fieldIndices, values);
+    }
+
+    @NonNull
+    public String getKey() {
+        return getSnapshot().getKey();
+    }
+}
@@ -0,0 +1,40 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.firebase.ui.common.BaseProjectionSnapshotParser;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+/**
+ * A {@link SnapshotParser} that reads only the given child paths of each {@link DataSnapshot}
+ * into a {@link ProjectedRow}. Use {@link ProjectedRow#parse(com.firebase.ui.common.BaseSnapshotParser)}
+ * to get the full model once it's actually needed.
+ */
+public class ProjectionSnapshotParser
+        extends BaseProjectionSnapshotParser<DataSnapshot, ProjectedRow>
+        implements SnapshotParser<ProjectedRow> {
+
+    /**
+     * @param paths the child paths to read, such as {@code "title"} or {@code "author/name"}
+     */
+    public ProjectionSnapshotParser(@NonNull String... paths) {
+        super(paths);
+    }
+
+    @Nullable
+    @Override
+    protected Object getValue(@NonNull DataSnapshot snapshot, @NonNull String path) {
+        return snapshot.child(path).getValue();
+    }
+
+    @NonNull
+    @Override
+    protected ProjectedRow createRow(@NonNull DataSnapshot snapshot,
+                                     @NonNull Map<String, Integer> fieldIndices,
+                                     @NonNull Object[] values) {
+        return new ProjectedRow(snapshot, fieldIndices, values);
+    }
+}
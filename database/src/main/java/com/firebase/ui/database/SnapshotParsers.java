@@ -0,0 +1,31 @@
+package com.firebase.ui.database;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+
+import com.firebase.ui.common.GeneratedParsers;
+
+/**
+ * Picks the best {@link SnapshotParser} for a model class.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class SnapshotParsers {
+    /** Must match the suffix used by the compiler. */
+    private static final String GENERATED_SUFFIX = "_DatabaseParser";
+
+    private SnapshotParsers() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * @return the parser generated for {@code modelClass} if it was annotated with {@link
+     * com.firebase.ui.common.GenerateSnapshotParser}, a {@link ClassSnapshotParser} otherwise
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T> SnapshotParser<T> forClass(@NonNull Class<T> modelClass) {
+        SnapshotParser<T> parser = GeneratedParsers.newInstance(
+                modelClass, GENERATED_SUFFIX, SnapshotParser.class);
+        return parser == null ? new ClassSnapshotParser<>(modelClass) : parser;
+    }
+}
@@ -0,0 +1,257 @@
+package com.firebase.ui.database.paging;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.paging.DataSource;
+import android.arch.paging.PageKeyedDataSource;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+import android.util.Log;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data source to power a {@link FirebaseIndexPagingAdapter}. Pages through the keys of an index
+ * in key order and joins each page's keys with their data before delivering it.
+ *
+ * Note: although loadInitial, loadBefore, and loadAfter are not called on the main thread by the
+ *       paging library, we treat them as if they were so that we can facilitate retry without
+ *       managing our own thread pool or requiring the user to pass us an executor.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class FirebaseIndexDataSource extends PageKeyedDataSource<String, DataSnapshot> {
+
+    private static final String TAG = "FirebaseIndexDataSource";
+
+    public static class Factory extends DataSource.Factory<String, DataSnapshot> {
+
+        private final Query mKeyQuery;
+        private final DatabaseReference mDataRef;
+
+        public Factory(Query keyQuery, DatabaseReference dataRef) {
+            mKeyQuery = keyQuery;
+            mDataRef = dataRef;
+        }
+
+        @Override
+        public DataSource<String, DataSnapshot> create() {
+            return new FirebaseIndexDataSource(mKeyQuery, mDataRef);
+        }
+    }
+
+    private final MutableLiveData<LoadingState> mLoadingState = new MutableLiveData<>();
+
+    private final Query mKeyQuery;
+    private final DatabaseReference mDataRef;
+
+    private Runnable mRetryRunnable;
+
+    public FirebaseIndexDataSource(Query keyQuery, DatabaseReference dataRef) {
+        mKeyQuery = keyQuery;
+        mDataRef = dataRef;
+    }
+
+    @Override
+    public void loadInitial(@NonNull final LoadInitialParams<String> params,
+                            @NonNull final LoadInitialCallback<String, DataSnapshot> callback) {
+
+        // Set initial loading state
+        mLoadingState.postValue(LoadingState.LOADING_INITIAL);
+
+        new PageLoad(null, params.requestedLoadSize) {
+            @Override
+            protected void setResult(@NonNull List<DataSnapshot> data, @Nullable String nextKey) {
+                callback.onResult(data, null, nextKey);
+            }
+
+            @Override
+            protected Runnable getRetryRunnable() {
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        loadInitial(params, callback);
+                    }
+                };
+            }
+        }.start();
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<String> params,
+                           @NonNull LoadCallback<String, DataSnapshot> callback) {
+        // Ignored, since we only ever append to the initial load.
+    }
+
+    @Override
+    public void loadAfter(@NonNull final LoadParams<String> params,
+                          @NonNull final LoadCallback<String, DataSnapshot> callback) {
+        // Set loading state
+        mLoadingState.postValue(LoadingState.LOADING_MORE);
+
+        new PageLoad(params.key, params.requestedLoadSize) {
+            @Override
+            protected void setResult(@NonNull List<DataSnapshot> data, @Nullable String nextKey) {
+                callback.onResult(data, nextKey);
+            }
+
+            @Override
+            protected Runnable getRetryRunnable() {
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        loadAfter(params, callback);
+                    }
+                };
+            }
+        }.start();
+    }
+
+    public LiveData<LoadingState> getLoadingState() {
+        return mLoadingState;
+    }
+
+    public void retry() {
+        LoadingState currentState = mLoadingState.getValue();
+        if (currentState != LoadingState.ERROR) {
+            Log.w(TAG, "retry() not valid when in state: " + currentState);
+            return;
+        }
+
+        if (mRetryRunnable == null) {
+            Log.w(TAG, "retry() called with no eligible retry runnable.");
+            return;
+        }
+
+        mRetryRunnable.run();
+    }
+
+    /**
+     * Loads the keys following a page key, then joins all of them at once and delivers the page
+     * when every join has resolved. Only the page in flight is held, so memory is bounded by the
+     * pages kept by the paged list.
+     */
+    private abstract class PageLoad implements ValueEventListener {
+        private final int mSize;
+
+        private String mStartKey;
+        private String mNextKey;
+        private List<String> mKeys;
+        private DataSnapshot[] mResults;
+        private int mRemainingJoins;
+        private boolean mIsFailed;
+
+        PageLoad(@Nullable String startKey, int size) {
+            mStartKey = startKey;
+            mSize = size;
+        }
+
+        void start() {
+            Query query = mKeyQuery.orderByKey();
+            if (mStartKey == null) {
+                query = query.limitToFirst(mSize);
+            } else {
+                // startAt() is inclusive, the page key itself is dropped from the results
+                query = query.startAt(mStartKey).limitToFirst(mSize + 1);
+            }
+            query.addListenerForSingleValueEvent(this);
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            mKeys = new ArrayList<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                if (!child.getKey().equals(mStartKey)) mKeys.add(child.getKey());
+            }
+            mNextKey = mKeys.size() < mSize ? null : mKeys.get(mKeys.size() - 1);
+
+            mResults = new DataSnapshot[mKeys.size()];
+            mRemainingJoins = mKeys.size();
+            if (mKeys.isEmpty()) {
+                onPageJoined();
+                return;
+            }
+
+            for (int i = 0; i < mKeys.size(); i++) {
+                mDataRef.child(mKeys.get(i)).addListenerForSingleValueEvent(new Join(i));
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            onFailure(error);
+        }
+
+        private void onPageJoined() {
+            List<DataSnapshot> data = new ArrayList<>(mResults.length);
+            for (DataSnapshot result : mResults) {
+                // Index entries without data are skipped, as in FirebaseIndexArray
+                if (result.exists()) data.add(result);
+            }
+
+            // An empty page ends paging, so skip over pages whose keys all lack data
+            if (data.isEmpty() && mNextKey != null) {
+                mStartKey = mNextKey;
+                start();
+                return;
+            }
+
+            setResult(data, mNextKey);
+            mLoadingState.postValue(LoadingState.LOADED);
+
+            // Post the 'FINISHED' state when no more pages will be loaded
+            if (mNextKey == null) {
+                mLoadingState.postValue(LoadingState.FINISHED);
+            }
+
+            mRetryRunnable = null;
+        }
+
+        private void onFailure(@NonNull DatabaseError error) {
+            if (mIsFailed) return;
+            mIsFailed = true;
+
+            Log.w(TAG, "load:onFailure", error.toException());
+
+            // On error we do NOT post any value to the PagedList, we just tell
+            // the developer that we are now in the error state.
+            mLoadingState.postValue(LoadingState.ERROR);
+
+            // Set the retry action
+            mRetryRunnable = getRetryRunnable();
+        }
+
+        protected abstract void setResult(@NonNull List<DataSnapshot> data,
+                                          @Nullable String nextKey);
+
+        protected abstract Runnable getRetryRunnable();
+
+        private final class Join implements ValueEventListener {
+            private final int mIndex;
+
+            Join(int index) {
+                mIndex = index;
+            }
+
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (mIsFailed) return;
+
+                mResults[mIndex] = snapshot;
+                if (--mRemainingJoins == 0) onPageJoined();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                onFailure(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.firebase.ui.database.paging;
+
+import android.arch.core.util.Function;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.Observer;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.arch.lifecycle.Transformations;
+import android.arch.paging.PagedList;
+import android.arch.paging.PagedListAdapter;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.firebase.ui.common.MainThreadWatchdog;
+import com.firebase.ui.database.SnapshotParser;
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Paginated RecyclerView Adapter for an indexed Firebase query. Only the pages of the index which
+ * were scrolled to are loaded, and each page is joined with its data before being displayed.
+ *
+ * Configured with {@link FirebaseIndexPagingOptions}.
+ */
+public abstract class FirebaseIndexPagingAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends PagedListAdapter<DataSnapshot, VH>
+        implements LifecycleObserver {
+
+    private static final String TAG = "FirebaseIndexPagingAdapter";
+
+    private final SnapshotParser<T> mParser;
+
+    private final LiveData<PagedList<DataSnapshot>> mSnapshots;
+    private final LiveData<LoadingState> mLoadingState;
+    private final LiveData<FirebaseIndexDataSource> mDataSource;
+
+    private final Observer<LoadingState> mStateObserver =
+            new Observer<LoadingState>() {
+                @Override
+                public void onChanged(@Nullable LoadingState state) {
+                    if (state == null) {
+                        return;
+                    }
+
+                    onLoadingStateChanged(state);
+                }
+            };
+
+    private final Observer<PagedList<DataSnapshot>> mDataObserver =
+            new Observer<PagedList<DataSnapshot>>() {
+                @Override
+                public void onChanged(@Nullable PagedList<DataSnapshot> snapshots) {
+                    if (snapshots == null) {
+                        return;
+                    }
+
+                    submitList(snapshots);
+                }
+            };
+
+    /**
+     * Construct a new FirebaseIndexPagingAdapter from the given {@link FirebaseIndexPagingOptions}.
+     */
+    public FirebaseIndexPagingAdapter(@NonNull FirebaseIndexPagingOptions<T> options) {
+        super(options.getDiffCallback());
+
+        mSnapshots = options.getData();
+
+        mLoadingState = Transformations.switchMap(mSnapshots,
+                new Function<PagedList<DataSnapshot>, LiveData<LoadingState>>() {
+                    @Override
+                    public LiveData<LoadingState> apply(PagedList<DataSnapshot> input) {
+                        FirebaseIndexDataSource dataSource = (FirebaseIndexDataSource) input.getDataSource();
+                        return dataSource.getLoadingState();
+                    }
+                });
+
+        mDataSource = Transformations.map(mSnapshots,
+                new Function<PagedList<DataSnapshot>, FirebaseIndexDataSource>() {
+                    @Override
+                    public FirebaseIndexDataSource apply(PagedList<DataSnapshot> input) {
+                        return (FirebaseIndexDataSource) input.getDataSource();
+                    }
+                });
+
+        mParser = options.getParser();
+
+        if (options.getOwner() != null) {
+            options.getOwner().getLifecycle().addObserver(this);
+        }
+    }
+
+    /**
+     * If {@link #onLoadingStateChanged(LoadingState)} indicates error state, call this method
+     * to attempt to retry the most recent failure.
+     */
+    public void retry() {
+        FirebaseIndexDataSource source = mDataSource.getValue();
+        if (source == null) {
+            Log.w(TAG, "Called retry() when FirebaseIndexDataSource is null!");
+            return;
+        }
+
+        source.retry();
+    }
+
+    /**
+     * Start listening to paging / scrolling events and populating adapter data.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    public void startListening() {
+        mSnapshots.observeForever(mDataObserver);
+        mLoadingState.observeForever(mStateObserver);
+    }
+
+    /**
+     * Unsubscribe from paging / scrolling events, no more data will be populated, but the existing
+     * data will remain.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+    public void stopListening() {
+        mSnapshots.removeObserver(mDataObserver);
+        mLoadingState.removeObserver(mStateObserver);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull VH holder, int position) {
+        DataSnapshot snapshot = getItem(position);
+        T model = mParser.parseSnapshot(snapshot);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
+        onBindViewHolder(holder, position, model);
+
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            watchdog.reportSlowCall(MainThreadWatchdog.OPERATION_BIND, duration, getClass(),
+                    snapshot.getRef().toString(), snapshot.getKey());
+        }
+    }
+
+    /**
+     * @param model the model object containing the data that should be used to populate the view.
+     * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
+     */
+    protected abstract void onBindViewHolder(@NonNull VH holder, int position, @NonNull T model);
+
+    /**
+     * Called whenever the loading state of the adapter changes.
+     *
+     * When the state is {@link LoadingState#ERROR} the adapter will stop loading any data unless
+     * {@link #retry()} is called.
+     */
+    protected void onLoadingStateChanged(@NonNull LoadingState state) {
+        // For overriding
+    }
+}
@@ -0,0 +1,160 @@
+package com.firebase.ui.database.paging;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.LiveData;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+import com.firebase.ui.common.GenerateSnapshotParser;
+import com.firebase.ui.database.ClassSnapshotParser;
+import com.firebase.ui.database.SnapshotParser;
+import com.firebase.ui.database.SnapshotParsers;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+/**
+ * Options to configure a {@link FirebaseIndexPagingAdapter}.
+ *
+ * Use {@link Builder} to create a new instance.
+ */
+public final class FirebaseIndexPagingOptions<T> {
+
+    private final LiveData<PagedList<DataSnapshot>> mData;
+    private final SnapshotParser<T> mParser;
+    private final DiffUtil.ItemCallback<DataSnapshot> mDiffCallback;
+    private final LifecycleOwner mOwner;
+
+    private FirebaseIndexPagingOptions(@NonNull LiveData<PagedList<DataSnapshot>> data,
+                                       @NonNull SnapshotParser<T> parser,
+                                       @NonNull DiffUtil.ItemCallback<DataSnapshot> diffCallback,
+                                       @Nullable LifecycleOwner owner) {
+        mData = data;
+        mParser = parser;
+        mDiffCallback = diffCallback;
+        mOwner = owner;
+    }
+
+    @NonNull
+    public LiveData<PagedList<DataSnapshot>> getData() {
+        return mData;
+    }
+
+    @NonNull
+    public SnapshotParser<T> getParser() {
+        return mParser;
+    }
+
+    @NonNull
+    public DiffUtil.ItemCallback<DataSnapshot> getDiffCallback() {
+        return mDiffCallback;
+    }
+
+    @Nullable
+    public LifecycleOwner getOwner() {
+        return mOwner;
+    }
+
+    /**
+     * Builder for {@link FirebaseIndexPagingOptions}.
+     */
+    public static final class Builder<T> {
+
+        private LiveData<PagedList<DataSnapshot>> mData;
+        private SnapshotParser<T> mParser;
+        private LifecycleOwner mOwner;
+        private DiffUtil.ItemCallback<DataSnapshot> mDiffCallback;
+
+        /**
+         * Sets the indexed query using a parser for the given class: the one generated for it if
+         * it's annotated with {@link GenerateSnapshotParser}, a {@link ClassSnapshotParser}
+         * otherwise.
+         *
+         * See {@link #setIndexedQuery(Query, DatabaseReference, PagedList.Config,
+         * SnapshotParser)}.
+         */
+        @NonNull
+        public Builder<T> setIndexedQuery(@NonNull Query keyQuery,
+                                          @NonNull DatabaseReference dataRef,
+                                          @NonNull PagedList.Config config,
+                                          @NonNull Class<T> modelClass) {
+            return setIndexedQuery(keyQuery, dataRef, config, SnapshotParsers.forClass(modelClass));
+        }
+
+        /**
+         * Sets the index to paginate. Keys are read from the {@code keyQuery} a page at a time,
+         * in key order, and then each page's data is fetched using those keys from the {@code
+         * dataRef}.
+         *
+         * @param keyQuery the location of the index. It is ordered by key by the adapter, so it
+         *                 must not contain any orderBy(), limit or range clauses.
+         * @param dataRef  the location of the data to join the keys with.
+         * @param config   paging configuration, passed directly to the support paging library.
+         * @param parser   the {@link SnapshotParser} to parse {@link DataSnapshot} into model
+         *                 objects.
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setIndexedQuery(@NonNull Query keyQuery,
+                                          @NonNull DatabaseReference dataRef,
+                                          @NonNull PagedList.Config config,
+                                          @NonNull SnapshotParser<T> parser) {
+            // Build paged list
+            FirebaseIndexDataSource.Factory factory =
+                    new FirebaseIndexDataSource.Factory(keyQuery, dataRef);
+            mData = new LivePagedListBuilder<>(factory, config).build();
+
+            mParser = parser;
+            return this;
+        }
+
+        /**
+         * Sets an optional custom {@link DiffUtil.ItemCallback} to compare {@link DataSnapshot}
+         * objects.
+         *
+         * The default implementation is {@link DefaultSnapshotDiffCallback}.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setDiffCallback(@NonNull DiffUtil.ItemCallback<DataSnapshot> diffCallback) {
+            mDiffCallback = diffCallback;
+            return this;
+        }
+
+        /**
+         * Sets an optional {@link LifecycleOwner} to control the lifecycle of the adapter.
+         * Otherwise, you must manually call {@link FirebaseIndexPagingAdapter#startListening()}
+         * and {@link FirebaseIndexPagingAdapter#stopListening()}.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setLifecycleOwner(@NonNull LifecycleOwner owner) {
+            mOwner = owner;
+            return this;
+        }
+
+        /**
+         * Build the {@link FirebaseIndexPagingOptions} object.
+         */
+        @NonNull
+        public FirebaseIndexPagingOptions<T> build() {
+            if (mData == null || mParser == null) {
+                throw new IllegalStateException(
+                        "Must call setIndexedQuery() before calling build().");
+            }
+
+            if (mDiffCallback == null) {
+                mDiffCallback = new DefaultSnapshotDiffCallback<>(mParser);
+            }
+
+            return new FirebaseIndexPagingOptions<>(mData, mParser, mDiffCallback, mOwner);
+        }
+
+    }
+
+}
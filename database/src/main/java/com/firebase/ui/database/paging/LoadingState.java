@@ -0,0 +1,32 @@
+package com.firebase.ui.database.paging;
+
+/**
+ * Loading state exposed by {@link FirebaseIndexPagingAdapter}.
+ */
+public enum LoadingState {
+    /**
+     * Loading initial data.
+     */
+    LOADING_INITIAL,
+
+    /**
+     * Loading a page other than the first page.
+     */
+    LOADING_MORE,
+
+    /**
+     * Not currently loading any pages, at least one page loaded.
+     */
+    LOADED,
+
+    /**
+     * The last page loaded reached the end of the index, and therefore no further pages will be
+     * loaded.
+     */
+    FINISHED,
+
+    /**
+     * The most recent load encountered an error.
+     */
+    ERROR
+}
@@ -1 +1,5 @@
 -dontwarn com.firebase.ui.firestore.paging.**
+
+# Generated parsers are looked up by their model's name
+-keepnames @com.firebase.ui.common.GenerateSnapshotParser class *
+-keep class **_FirestoreParser { <init>(); }
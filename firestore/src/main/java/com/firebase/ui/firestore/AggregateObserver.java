@@ -0,0 +1,55 @@
+package com.firebase.ui.firestore;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.firebase.ui.common.BaseAggregateObserver;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+/**
+ * Incrementally computes aggregates over an {@link ObservableSnapshotArray}. Declare aggregates
+ * such as {@link #count()} or {@link #sum(com.firebase.ui.common.Selector)}, observe the returned
+ * LiveData, and call {@link #startListening()} or add this observer to a lifecycle.
+ *
+ * @param <T> the model object class.
+ */
+public class AggregateObserver<T>
+        extends BaseAggregateObserver<DocumentSnapshot, FirebaseFirestoreException, T>
+        implements ChangeEventListener, LifecycleObserver {
+    private static final String TAG = "AggregateObserver";
+
+    private final ObservableSnapshotArray<T> mSnapshots;
+
+    public AggregateObserver(@NonNull ObservableSnapshotArray<T> snapshots) {
+        super(snapshots);
+        mSnapshots = snapshots;
+    }
+
+    /**
+     * Start listening to the array and computing aggregates.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    public void startListening() {
+        if (!mSnapshots.isListening(this)) {
+            mSnapshots.addChangeEventListener(this);
+        }
+    }
+
+    /**
+     * Stop listening to the array and reset all aggregates.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+    public void stopListening() {
+        mSnapshots.removeChangeEventListener(this);
+        reset();
+    }
+
+    @Override
+    public void onError(@NonNull FirebaseFirestoreException e) {
+        Log.w(TAG, "onError", e);
+    }
+}
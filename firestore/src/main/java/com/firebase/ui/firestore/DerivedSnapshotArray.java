@@ -0,0 +1,108 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+import com.firebase.ui.common.BaseSnapshotParser;
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.DerivedSnapshotIndex;
+import com.firebase.ui.common.Predicate;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A filtered and/or sorted view of another {@link ObservableSnapshotArray}. It is updated
+ * incrementally as the source changes and can be used to back an adapter directly.
+ *
+ * @param <T> the model object class.
+ */
+public class DerivedSnapshotArray<T> extends ObservableSnapshotArray<T> {
+    private final ObservableSnapshotArray<T> mSource;
+    private final DerivedSnapshotIndex<DocumentSnapshot, T> mIndex;
+
+    private final ChangeEventListener mSourceListener = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mIndex.onSourceChanged(type, snapshot, newIndex, oldIndex);
+        }
+
+        @Override
+        public void onDataChanged() {
+            notifyOnDataChanged();
+        }
+
+        @Override
+        public void onError(@NonNull FirebaseFirestoreException e) {
+            notifyOnError(e);
+        }
+    };
+
+    /**
+     * @param source     the array to derive items from
+     * @param predicate  only keep models matching this predicate, or null to keep all of them
+     * @param comparator the order of the models, or null to keep the source's order
+     */
+    public DerivedSnapshotArray(@NonNull ObservableSnapshotArray<T> source,
+                                @Nullable Predicate<T> predicate,
+                                @Nullable Comparator<T> comparator) {
+        super(new SnapshotParser<T>() {
+            @NonNull
+            @Override
+            public T parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+                throw new IllegalStateException("Models are parsed by the source array.");
+            }
+        });
+        mSource = source;
+        mIndex = new DerivedSnapshotIndex<>(source, predicate, comparator,
+                new DerivedSnapshotIndex.Callback<DocumentSnapshot>() {
+                    @Override
+                    public void onChildChanged(@NonNull ChangeEventType type,
+                                               @NonNull DocumentSnapshot snapshot,
+                                               int newIndex,
+                                               int oldIndex,
+                                               @Nullable DocumentSnapshot previousSnapshot) {
+                        notifyOnChildChanged(type, snapshot, newIndex, oldIndex, previousSnapshot);
+                    }
+                });
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        mSource.addChangeEventListener(mSourceListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSource.removeChangeEventListener(mSourceListener);
+        mIndex.clear();
+    }
+
+    @NonNull
+    @Override
+    protected T getModel(int index) {
+        return mIndex.getModel(index);
+    }
+
+    @NonNull
+    @Override
+    protected List<DocumentSnapshot> getSnapshots() {
+        return mIndex.getSnapshots();
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @Nullable
+    @Override
+    public BaseSnapshotParser<DocumentSnapshot, T> getBackgroundParser() {
+        // Models come from the source, which may hold provisional ones of its own
+        return super.getBackgroundParser() == null ? null : mSource.getBackgroundParser();
+    }
+}
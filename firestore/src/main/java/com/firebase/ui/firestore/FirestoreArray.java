@@ -27,6 +27,17 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
 
     private final List<DocumentSnapshot> mSnapshots = new ArrayList<>();
 
+    /**
+     * True if the snapshots should be kept while the array is stopped, see {@link
+     * #setReconcileOnRestart(boolean)}.
+     */
+    private boolean mReconcileOnRestart;
+    /**
+     * True until the first query snapshot after a restart with retained snapshots, which is
+     * reconciled against them.
+     */
+    private boolean mIsReconciling;
+
     /**
      * Create a new FirestoreArray.
      *
@@ -56,9 +67,27 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
         return mSnapshots;
     }
 
+    /**
+     * Keep the snapshots while the array is stopped. When it restarts, listeners immediately see
+     * the previous results and, once the first query snapshot arrives, only receive the events
+     * needed to bring them up to date instead of the whole list being cleared and added again.
+     * <p>
+     * This avoids flashing and rebuilding lists when returning to a screen, at the cost of keeping
+     * the snapshots in memory while it isn't visible.
+     */
+    public void setReconcileOnRestart(boolean enabled) {
+        mReconcileOnRestart = enabled;
+    }
+
+    @Override
+    protected boolean shouldRetainSnapshots() {
+        return mReconcileOnRestart;
+    }
+
     @Override
     protected void onCreate() {
         super.onCreate();
+        mIsReconciling = !mSnapshots.isEmpty();
         mRegistration = mQuery.addSnapshotListener(mMetadataChanges, this);
     }
 
@@ -67,6 +96,7 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
         super.onDestroy();
         mRegistration.remove();
         mRegistration = null;
+        mIsReconciling = false;
     }
 
     @Override
@@ -76,6 +106,14 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
             return;
         }
 
+        if (mIsReconciling) {
+            // The first query snapshot holds every document
+            mIsReconciling = false;
+            reconcile(snapshots.getDocuments());
+            notifyOnDataChanged();
+            return;
+        }
+
         // Break down each document event
         List<DocumentChange> changes = snapshots.getDocumentChanges(mMetadataChanges);
         for (DocumentChange change : changes) {
@@ -111,18 +149,18 @@ public class FirestoreArray<T> extends ObservableSnapshotArray<T>
         QueryDocumentSnapshot snapshot = change.getDocument();
         if (change.getOldIndex() == change.getNewIndex()) {
             // Document modified only
-            mSnapshots.set(change.getNewIndex(), snapshot);
+            DocumentSnapshot previous = mSnapshots.set(change.getNewIndex(), snapshot);
             notifyOnChildChanged(ChangeEventType.CHANGED, snapshot,
-                    change.getNewIndex(), change.getNewIndex());
+                    change.getNewIndex(), change.getNewIndex(), previous);
         } else {
             // Document moved and possibly also modified
-            mSnapshots.remove(change.getOldIndex());
+            DocumentSnapshot previous = mSnapshots.remove(change.getOldIndex());
             mSnapshots.add(change.getNewIndex(), snapshot);
 
             notifyOnChildChanged(ChangeEventType.MOVED, snapshot,
                     change.getNewIndex(), change.getOldIndex());
             notifyOnChildChanged(ChangeEventType.CHANGED, snapshot,
-                    change.getNewIndex(), change.getNewIndex());
+                    change.getNewIndex(), change.getNewIndex(), previous);
         }
     }
 }
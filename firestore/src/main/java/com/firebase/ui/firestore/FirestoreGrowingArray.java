@@ -0,0 +1,280 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exposes a window of a Firestore query which grows by a page whenever the user nears its end,
+ * while keeping realtime updates for everything loaded so far.
+ * <p>
+ * Each page is listened to separately. The last page is limited to the page size and starts after
+ * the previous one ends. When the window grows, it is replaced by a query ending at its last
+ * document, so that documents added to it later don't push others out, and the next page starts
+ * after that document. Both are loaded in the background and reconciled against the page they
+ * replace, so listeners are only told about new or changed documents. Each page is therefore read
+ * about twice, however many pages are loaded. Prefer {@link
+ * com.firebase.ui.firestore.paging.FirestorePagingAdapter} for long lists which don't need
+ * realtime updates.
+ */
+public class FirestoreGrowingArray<T> extends ObservableSnapshotArray<T> {
+    private static final SnapshotParser<String> ID_PARSER = new SnapshotParser<String>() {
+        @NonNull
+        @Override
+        public String parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+            return snapshot.getId();
+        }
+    };
+
+    private final Query mQuery;
+    private final MetadataChanges mMetadataChanges;
+    private final int mPageSize;
+    private final List<DocumentSnapshot> mSnapshots = new ArrayList<>();
+    /** Pages in display order, only the last one is limited. */
+    private final List<Page> mPages = new ArrayList<>();
+
+    private int mPrefetchDistance;
+    /** The pages which replace the last one once both have loaded. */
+    private Page mPendingRange;
+    private Page mPendingPage;
+
+    /**
+     * @param query    the ordered query to page through. It must not be limited or use cursors.
+     * @param pageSize the number of documents to load initially and each time the window grows
+     * @param parser   parser for DocumentSnapshots.
+     */
+    public FirestoreGrowingArray(@NonNull Query query,
+                                 int pageSize,
+                                 @NonNull SnapshotParser<T> parser) {
+        this(query, pageSize, MetadataChanges.EXCLUDE, parser);
+    }
+
+    /**
+     * @param changes metadata options for the query listen.
+     * @see #FirestoreGrowingArray(Query, int, SnapshotParser)
+     */
+    public FirestoreGrowingArray(@NonNull Query query,
+                                 int pageSize,
+                                 @NonNull MetadataChanges changes,
+                                 @NonNull SnapshotParser<T> parser) {
+        super(parser);
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1: " + pageSize);
+        }
+
+        mQuery = query;
+        mMetadataChanges = changes;
+        mPageSize = pageSize;
+        mPrefetchDistance = pageSize;
+        mPages.add(new Page(null, null, pageSize));
+    }
+
+    /**
+     * Set how close to the end of the window a position passed to {@link #loadAround(int)} must
+     * be to grow it. Defaults to the page size.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * Call when the document at the given position is displayed, for example from {@code
+     * onBindViewHolder}, to grow the window once the user nears its end.
+     */
+    public void loadAround(int position) {
+        if (size() - 1 - position < mPrefetchDistance) loadMore();
+    }
+
+    /**
+     * Grow the window by a page, unless it is already growing or the query has no more
+     * documents.
+     */
+    public void loadMore() {
+        if (!isListening() || mPendingPage != null || !hasMore()) return;
+
+        Page last = getLastPage();
+        DocumentSnapshot end = last.mArray.getSnapshot(last.mArray.size() - 1);
+        mPendingRange = new Page(last.mStartAfter, end, 0);
+        mPendingPage = new Page(end, null, mPageSize);
+        mPendingRange.start();
+        mPendingPage.start();
+    }
+
+    /**
+     * @return false if the whole query fits in the current window
+     */
+    public boolean hasMore() {
+        return getLastPage().isFull();
+    }
+
+    @NonNull
+    @Override
+    protected List<DocumentSnapshot> getSnapshots() {
+        return mSnapshots;
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        for (Page page : mPages) {
+            page.start();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (Page page : mPages) {
+            page.stop();
+        }
+        stopPendingPages();
+    }
+
+    private Page getLastPage() {
+        return mPages.get(mPages.size() - 1);
+    }
+
+    private int getOffset(Page target) {
+        int offset = 0;
+        for (Page page : mPages) {
+            if (page == target) break;
+            offset += page.mArray.size();
+        }
+        return offset;
+    }
+
+    private void stopPendingPages() {
+        if (mPendingPage == null) return;
+
+        mPendingRange.stop();
+        mPendingPage.stop();
+        mPendingRange = null;
+        mPendingPage = null;
+    }
+
+    private void onPendingPagesLoaded() {
+        Page last = getLastPage();
+        int start = getOffset(last);
+        int end = start + last.mArray.size();
+
+        last.stop();
+        mPages.set(mPages.size() - 1, mPendingRange);
+        mPages.add(mPendingPage);
+        List<DocumentSnapshot> snapshots = new ArrayList<>();
+        mPendingRange.addSnapshotsTo(snapshots);
+        mPendingPage.addSnapshotsTo(snapshots);
+        mPendingRange = null;
+        mPendingPage = null;
+
+        // The other pages are unchanged
+        reconcile(start, end, snapshots);
+        notifyOnDataChanged();
+    }
+
+    /**
+     * Listens to the documents after one document and up to another, or to a page of documents
+     * after one.
+     */
+    private final class Page implements ChangeEventListener {
+        private final DocumentSnapshot mStartAfter;
+        private final int mLimit;
+        private final FirestoreArray<String> mArray;
+
+        private boolean mIsLoaded;
+
+        /**
+         * @param limit the number of documents to listen to, or 0 for all documents up to {@code
+         *              end}
+         */
+        Page(@Nullable DocumentSnapshot startAfter, @Nullable DocumentSnapshot end, int limit) {
+            mStartAfter = startAfter;
+            mLimit = limit;
+
+            Query query = mQuery;
+            if (startAfter != null) query = query.startAfter(startAfter);
+            if (end != null) query = query.endAt(end);
+            if (limit > 0) query = query.limit(limit);
+            mArray = new FirestoreArray<>(query, mMetadataChanges, ID_PARSER);
+        }
+
+        void start() {
+            mIsLoaded = false;
+            mArray.addChangeEventListener(this);
+        }
+
+        void stop() {
+            mArray.removeChangeEventListener(this);
+        }
+
+        boolean isFull() {
+            return mLimit > 0 && mArray.size() >= mLimit;
+        }
+
+        void addSnapshotsTo(List<DocumentSnapshot> snapshots) {
+            for (int i = 0; i < mArray.size(); i++) {
+                snapshots.add(mArray.getSnapshot(i));
+            }
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            if (!mPages.contains(this)) return;
+
+            int offset = getOffset(this);
+            switch (type) {
+                case ADDED:
+                    mSnapshots.add(offset + newIndex, snapshot);
+                    notifyOnChildChanged(type, snapshot, offset + newIndex, -1);
+                    break;
+                case CHANGED:
+                    DocumentSnapshot previous = mSnapshots.set(offset + newIndex, snapshot);
+                    notifyOnChildChanged(type, snapshot, offset + newIndex, -1, previous);
+                    break;
+                case REMOVED:
+                    mSnapshots.remove(offset + oldIndex);
+                    notifyOnChildChanged(type, snapshot, -1, offset + oldIndex);
+                    break;
+                case MOVED:
+                    // Keep the previous snapshot, the CHANGED event which follows replaces it
+                    mSnapshots.add(offset + newIndex, mSnapshots.remove(offset + oldIndex));
+                    notifyOnChildChanged(type, snapshot, offset + newIndex, offset + oldIndex);
+                    break;
+                default:
+                    throw new IllegalStateException("Incomplete case statement");
+            }
+        }
+
+        @Override
+        public void onDataChanged() {
+            if (this == mPendingRange || this == mPendingPage) {
+                mIsLoaded = true;
+                if (mPendingRange.mIsLoaded && mPendingPage.mIsLoaded) onPendingPagesLoaded();
+            } else if (mPages.contains(this)) {
+                notifyOnDataChanged();
+            }
+        }
+
+        @Override
+        public void onError(@NonNull FirebaseFirestoreException e) {
+            if (this == mPendingRange || this == mPendingPage) {
+                // Let the next loadMore() try again
+                stopPendingPages();
+            } else if (!mPages.contains(this)) {
+                return;
+            }
+
+            notifyOnError(e);
+        }
+    }
+}
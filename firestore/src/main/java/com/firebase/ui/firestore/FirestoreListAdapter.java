@@ -0,0 +1,269 @@
+package com.firebase.ui.firestore;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.recyclerview.extensions.AsyncDifferConfig;
+import android.support.v7.recyclerview.extensions.AsyncListDiffer;
+import android.support.v7.util.AdapterListUpdateCallback;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.firebase.ui.common.MainThreadWatchdog;
+import com.firebase.ui.common.StableIds;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RecyclerView adapter that listens to a Firestore {@link Query} and displays each complete
+ * {@link QuerySnapshot} it receives. Unlike {@link FirestoreRecyclerAdapter}, which applies every
+ * document change as it arrives, the difference between two results is computed on a background
+ * thread with an {@link AsyncListDiffer} and dispatched at once, so large reorders only cost a
+ * single layout pass.
+ * <p>
+ * Configured with {@link FirestoreListOptions}.
+ *
+ * @param <T>  model class, for parsing {@link DocumentSnapshot}s.
+ * @param <VH> {@link RecyclerView.ViewHolder} class.
+ */
+public abstract class FirestoreListAdapter<T, VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH>
+        implements EventListener<QuerySnapshot>, LifecycleObserver {
+
+    private static final String TAG = "FirestoreListAdapter";
+
+    private final Query mQuery;
+    private final MetadataChanges mMetadataChanges;
+    private final CachingSnapshotParser<T> mParser;
+    private final AsyncListDiffer<DocumentSnapshot> mDiffer;
+
+    /**
+     * Snapshots whose models were invalidated when a list was submitted. They are invalidated
+     * again once its diff is dispatched, in case a row of the previous list was bound meanwhile.
+     */
+    private final List<DocumentSnapshot> mPendingInvalidations = new ArrayList<>();
+
+    private ListenerRegistration mRegistration;
+
+    /**
+     * Create a new RecyclerView adapter that listens to a Firestore Query. See {@link
+     * FirestoreListOptions} for configuration options.
+     */
+    public FirestoreListAdapter(@NonNull FirestoreListOptions<T> options) {
+        mQuery = options.getQuery();
+        mMetadataChanges = options.getMetadataChanges();
+        mParser = new CachingSnapshotParser<>(options.getParser());
+
+        AsyncDifferConfig.Builder<DocumentSnapshot> config =
+                new AsyncDifferConfig.Builder<>(options.getDiffCallback());
+        if (options.getBackgroundExecutor() != null) {
+            config.setBackgroundThreadExecutor(options.getBackgroundExecutor());
+        }
+        mDiffer = new AsyncListDiffer<>(new InvalidatingUpdateCallback(), config.build());
+
+        if (options.getOwner() != null) {
+            options.getOwner().getLifecycle().addObserver(this);
+        }
+    }
+
+    /**
+     * Start listening for query snapshots and populate the adapter.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    public void startListening() {
+        if (mRegistration == null) {
+            mRegistration = mQuery.addSnapshotListener(mMetadataChanges, this);
+        }
+    }
+
+    /**
+     * Stop listening for query snapshots. The current items remain so that the first snapshot
+     * received after restarting is diffed against them.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+    public void stopListening() {
+        if (mRegistration != null) {
+            mRegistration.remove();
+            mRegistration = null;
+        }
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void cleanup(LifecycleOwner source) {
+        source.getLifecycle().removeObserver(this);
+    }
+
+    @Override
+    public void onEvent(@Nullable QuerySnapshot snapshots,
+                        @Nullable FirebaseFirestoreException e) {
+        if (e != null) {
+            onError(e);
+            return;
+        }
+
+        // Every result is a new list, so the differ never skips one as unchanged
+        submitList(snapshots.getDocuments());
+        onDataChanged();
+    }
+
+    /**
+     * Replaces the displayed snapshots, for example with the documents of a {@link QuerySnapshot}
+     * obtained without listening. The diff is computed on the background executor and dispatched
+     * on the main thread. Passing {@code null} clears the adapter immediately.
+     */
+    public void submitList(@Nullable List<DocumentSnapshot> snapshots) {
+        if (snapshots == null) {
+            mParser.clear();
+            mPendingInvalidations.clear();
+        } else {
+            invalidateChanged(snapshots);
+        }
+        mDiffer.submitList(snapshots);
+    }
+
+    /**
+     * Drops the cached models of displayed documents which are changed or missing in the given
+     * list, so rows are rebound with freshly parsed models.
+     */
+    private void invalidateChanged(@NonNull List<DocumentSnapshot> snapshots) {
+        List<DocumentSnapshot> current = getSnapshots();
+        if (current.isEmpty()) return;
+
+        Map<String, DocumentSnapshot> next = new HashMap<>(snapshots.size());
+        for (DocumentSnapshot snapshot : snapshots) {
+            next.put(snapshot.getId(), snapshot);
+        }
+
+        for (DocumentSnapshot snapshot : current) {
+            if (!snapshot.equals(next.get(snapshot.getId()))) {
+                mParser.invalidate(snapshot);
+                mPendingInvalidations.add(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshots currently displayed by the adapter. This doesn't include a submitted
+     * list until its diff has been dispatched.
+     */
+    @NonNull
+    public List<DocumentSnapshot> getSnapshots() {
+        return mDiffer.getCurrentList();
+    }
+
+    /**
+     * Parses the snapshot at the specified position. The model is cached until the document
+     * changes.
+     */
+    @NonNull
+    public T getItem(int position) {
+        return mParser.parseSnapshot(getSnapshots().get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return getSnapshots().size();
+    }
+
+    /**
+     * Returns an ID derived from the ID of the document at the given position. Call {@link
+     * #setHasStableIds(boolean)} to let the {@link RecyclerView} use it to reuse views across
+     * {@link #notifyDataSetChanged()} calls.
+     */
+    @Override
+    public long getItemId(int position) {
+        return StableIds.forKey(getSnapshots().get(position).getId());
+    }
+
+    /**
+     * Called after each new query snapshot has been submitted to the differ. Since the diff is
+     * computed asynchronously, {@link #getItemCount()} may still reflect the previous result.
+     */
+    public void onDataChanged() {
+    }
+
+    /**
+     * Called when the query fails. The listener is removed by Firestore, call {@link
+     * #stopListening()} and {@link #startListening()} to retry.
+     */
+    public void onError(@NonNull FirebaseFirestoreException e) {
+        Log.w(TAG, "onError", e);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull VH holder, int position) {
+        T model = getItem(position);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
+        onBindViewHolder(holder, position, model);
+
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            DocumentSnapshot snapshot = getSnapshots().get(position);
+            watchdog.reportSlowCall(MainThreadWatchdog.OPERATION_BIND, duration, getClass(),
+                    snapshot.getReference().getPath(), snapshot.getId());
+        }
+    }
+
+    /**
+     * @param model the model object containing the data that should be used to populate the view.
+     * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
+     */
+    protected abstract void onBindViewHolder(@NonNull VH holder, int position, @NonNull T model);
+
+    /**
+     * Notifies the adapter of a dispatched diff, after invalidating the models of the snapshots
+     * which changed since the list was submitted.
+     */
+    private final class InvalidatingUpdateCallback implements ListUpdateCallback {
+        private final AdapterListUpdateCallback mCallback =
+                new AdapterListUpdateCallback(FirestoreListAdapter.this);
+
+        @Override
+        public void onInserted(int position, int count) {
+            invalidatePending();
+            mCallback.onInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            invalidatePending();
+            mCallback.onRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            invalidatePending();
+            mCallback.onMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            invalidatePending();
+            mCallback.onChanged(position, count, payload);
+        }
+
+        private void invalidatePending() {
+            if (mPendingInvalidations.isEmpty()) return;
+
+            for (DocumentSnapshot snapshot : mPendingInvalidations) {
+                mParser.invalidate(snapshot);
+            }
+            mPendingInvalidations.clear();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.firebase.ui.firestore;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+
+import java.util.concurrent.Executor;
+
+import static com.firebase.ui.common.Preconditions.assertNonNull;
+
+/**
+ * Options to configure a {@link FirestoreListAdapter}.
+ *
+ * @see Builder
+ */
+public final class FirestoreListOptions<T> {
+
+    private static final String ERR_QUERY_NULL = "Query cannot be null. Call setQuery";
+
+    /**
+     * Compares snapshots rather than parsed models, so a diff doesn't parse every document twice.
+     */
+    private static final DiffUtil.ItemCallback<DocumentSnapshot> DEFAULT_DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<DocumentSnapshot>() {
+                @Override
+                public boolean areItemsTheSame(DocumentSnapshot oldItem,
+                                               DocumentSnapshot newItem) {
+                    return oldItem.getId().equals(newItem.getId());
+                }
+
+                @Override
+                public boolean areContentsTheSame(DocumentSnapshot oldItem,
+                                                  DocumentSnapshot newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
+
+    private final Query mQuery;
+    private final MetadataChanges mMetadataChanges;
+    private final SnapshotParser<T> mParser;
+    private final DiffUtil.ItemCallback<DocumentSnapshot> mDiffCallback;
+    private final Executor mBackgroundExecutor;
+    private final LifecycleOwner mOwner;
+
+    private FirestoreListOptions(@NonNull Query query,
+                                 @NonNull MetadataChanges metadataChanges,
+                                 @NonNull SnapshotParser<T> parser,
+                                 @NonNull DiffUtil.ItemCallback<DocumentSnapshot> diffCallback,
+                                 @Nullable Executor backgroundExecutor,
+                                 @Nullable LifecycleOwner owner) {
+        mQuery = query;
+        mMetadataChanges = metadataChanges;
+        mParser = parser;
+        mDiffCallback = diffCallback;
+        mBackgroundExecutor = backgroundExecutor;
+        mOwner = owner;
+    }
+
+    @NonNull
+    public Query getQuery() {
+        return mQuery;
+    }
+
+    @NonNull
+    public MetadataChanges getMetadataChanges() {
+        return mMetadataChanges;
+    }
+
+    @NonNull
+    public SnapshotParser<T> getParser() {
+        return mParser;
+    }
+
+    @NonNull
+    public DiffUtil.ItemCallback<DocumentSnapshot> getDiffCallback() {
+        return mDiffCallback;
+    }
+
+    /**
+     * Get the (optional) {@link Executor} used to compute diffs.
+     */
+    @Nullable
+    public Executor getBackgroundExecutor() {
+        return mBackgroundExecutor;
+    }
+
+    /**
+     * Get the (optional) {@link LifecycleOwner}.
+     */
+    @Nullable
+    public LifecycleOwner getOwner() {
+        return mOwner;
+    }
+
+    /**
+     * Builder for {@link FirestoreListOptions}.
+     *
+     * @param <T> the model class for the {@link FirestoreListAdapter}.
+     */
+    public static final class Builder<T> {
+
+        private Query mQuery;
+        private MetadataChanges mMetadataChanges;
+        private SnapshotParser<T> mParser;
+        private DiffUtil.ItemCallback<DocumentSnapshot> mDiffCallback;
+        private Executor mBackgroundExecutor;
+        private LifecycleOwner mOwner;
+
+        /**
+         * Calls {@link #setQuery(Query, MetadataChanges, SnapshotParser)} with metadata changes
+         * excluded.
+         */
+        @NonNull
+        public Builder<T> setQuery(@NonNull Query query, @NonNull SnapshotParser<T> parser) {
+            return setQuery(query, MetadataChanges.EXCLUDE, parser);
+        }
+
+        /**
+         * Calls {@link #setQuery(Query, MetadataChanges, Class)} with metadata changes excluded.
+         */
+        @NonNull
+        public Builder<T> setQuery(@NonNull Query query, @NonNull Class<T> modelClass) {
+            return setQuery(query, MetadataChanges.EXCLUDE, modelClass);
+        }
+
+        /**
+         * Set the query to listen to and provide a model class to which each snapshot will be
+         * converted.
+         */
+        @NonNull
+        public Builder<T> setQuery(@NonNull Query query,
+                                   @NonNull MetadataChanges changes,
+                                   @NonNull Class<T> modelClass) {
+            return setQuery(query, changes, SnapshotParsers.forClass(modelClass));
+        }
+
+        /**
+         * Set the query to listen to and provide a custom {@link SnapshotParser}.
+         */
+        @NonNull
+        public Builder<T> setQuery(@NonNull Query query,
+                                   @NonNull MetadataChanges changes,
+                                   @NonNull SnapshotParser<T> parser) {
+            mQuery = query;
+            mMetadataChanges = changes;
+            mParser = parser;
+            return this;
+        }
+
+        /**
+         * Sets an optional custom {@link DiffUtil.ItemCallback} to compare {@link
+         * DocumentSnapshot} objects. It is called on the background executor.
+         * <p>
+         * By default, documents are the same if they have the same ID and their contents are the
+         * same if their snapshots are equal.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setDiffCallback(
+                @NonNull DiffUtil.ItemCallback<DocumentSnapshot> diffCallback) {
+            mDiffCallback = diffCallback;
+            return this;
+        }
+
+        /**
+         * Sets an optional {@link Executor} on which diffs are computed. Otherwise, a pool shared
+         * by all differs is used.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setBackgroundExecutor(@Nullable Executor executor) {
+            mBackgroundExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Set a {@link LifecycleOwner} for the adapter. Listening will stop/start after the
+         * appropriate lifecycle events.
+         */
+        @NonNull
+        public Builder<T> setLifecycleOwner(@Nullable LifecycleOwner owner) {
+            mOwner = owner;
+            return this;
+        }
+
+        /**
+         * Build a {@link FirestoreListOptions} from the provided arguments.
+         */
+        @NonNull
+        public FirestoreListOptions<T> build() {
+            assertNonNull(mQuery, ERR_QUERY_NULL);
+
+            if (mDiffCallback == null) {
+                mDiffCallback = DEFAULT_DIFF_CALLBACK;
+            }
+
+            return new FirestoreListOptions<>(mQuery,
+                    mMetadataChanges,
+                    mParser,
+                    mDiffCallback,
+                    mBackgroundExecutor,
+                    mOwner);
+        }
+
+    }
+
+}
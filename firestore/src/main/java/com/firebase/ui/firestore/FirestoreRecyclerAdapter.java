@@ -9,9 +9,16 @@ import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
 import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.ChangedFields;
+import com.firebase.ui.common.MainThreadWatchdog;
+import com.firebase.ui.common.ProvisionalRowListener;
+import com.firebase.ui.common.ResetListener;
+import com.firebase.ui.common.StableIds;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 
+import java.util.List;
+
 /**
  * RecyclerView adapter that listens to a {@link FirestoreArray} and displays its data in real
  * time.
@@ -21,7 +28,7 @@ import com.google.firebase.firestore.FirebaseFirestoreException;
  */
 public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHolder>
         extends RecyclerView.Adapter<VH>
-        implements ChangeEventListener, LifecycleObserver {
+        implements ChangeEventListener, ResetListener, ProvisionalRowListener, LifecycleObserver {
 
     private static final String TAG = "FirestoreRecycler";
 
@@ -88,6 +95,16 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
         return mSnapshots.isListening(this) ? mSnapshots.size() : 0;
     }
 
+    /**
+     * Returns an ID derived from the ID of the item at the given position. Call {@link
+     * #setHasStableIds(boolean)} to let the {@link RecyclerView} use it to reuse views across
+     * {@link #notifyDataSetChanged()} calls.
+     */
+    @Override
+    public long getItemId(int position) {
+        return StableIds.forKey(mSnapshots.getId(position));
+    }
+
     @Override
     public void onChildChanged(@NonNull ChangeEventType type,
                                @NonNull DocumentSnapshot snapshot,
@@ -98,7 +115,8 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
                 notifyItemInserted(newIndex);
                 break;
             case CHANGED:
-                notifyItemChanged(newIndex);
+                // Lets rows be partially rebound, see onBindViewHolder(VH, int, T, List)
+                notifyItemChanged(newIndex, mSnapshots.getChangedFields());
                 break;
             case REMOVED:
                 notifyItemRemoved(oldIndex);
@@ -111,6 +129,36 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
         }
     }
 
+    @Override
+    public void onProvisionalRowChanged(@NonNull ChangeEventType type,
+                                        @NonNull String id,
+                                        int newIndex,
+                                        int oldIndex) {
+        switch (type) {
+            case ADDED:
+                notifyItemInserted(newIndex);
+                break;
+            case CHANGED:
+                notifyItemChanged(newIndex);
+                break;
+            case REMOVED:
+                notifyItemRemoved(oldIndex);
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    /**
+     * Reloads all items at once when listening starts on a populated array, or when a stopped
+     * array released the snapshots it retained. Inserting them as a range would be inconsistent
+     * when the retained snapshots are still displayed.
+     */
+    @Override
+    public void onReset() {
+        notifyDataSetChanged();
+    }
+
     @Override
     public void onDataChanged() {
     }
@@ -130,4 +178,38 @@ public abstract class FirestoreRecyclerAdapter<T, VH extends RecyclerView.ViewHo
      * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
      */
     protected abstract void onBindViewHolder(@NonNull VH holder, int position, @NonNull T model);
+
+    @Override
+    public void onBindViewHolder(@NonNull VH holder, int position, @NonNull List<Object> payloads) {
+        // Parsing is timed on its own, and the model stays cached for the bind
+        T model = getItem(position);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            onBindViewHolder(holder, position, model, payloads);
+        }
+
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            mSnapshots.reportSlowCall(
+                    MainThreadWatchdog.OPERATION_BIND, duration, getClass(), position);
+        }
+    }
+
+    /**
+     * Override to partially rebind a row. When a row changed, {@code payloads} usually holds
+     * {@link ChangedFields} describing which top-level fields differ, use {@link
+     * ChangedFields#merge(List)} to combine them. By default, the whole row is rebound.
+     *
+     * @param payloads a non-empty list of the payloads passed to {@link #notifyItemChanged(int,
+     *                 Object)} since the row was last bound
+     */
+    protected void onBindViewHolder(@NonNull VH holder,
+                                    int position,
+                                    @NonNull T model,
+                                    @NonNull List<Object> payloads) {
+        onBindViewHolder(holder, position, model);
+    }
 }
@@ -96,7 +96,7 @@ public final class FirestoreRecyclerOptions<T> {
         public Builder<T> setQuery(@NonNull Query query,
                                    @NonNull MetadataChanges changes,
                                    @NonNull Class<T> modelClass) {
-            return setQuery(query, changes, new ClassSnapshotParser<>(modelClass));
+            return setQuery(query, changes, SnapshotParsers.forClass(modelClass));
         }
 
         /**
@@ -0,0 +1,248 @@
+package com.firebase.ui.firestore;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.ViewGroup;
+
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.ChangedFields;
+import com.firebase.ui.common.MainThreadWatchdog;
+import com.firebase.ui.common.ResetListener;
+import com.firebase.ui.common.SectionIndex;
+import com.firebase.ui.common.SectionMapper;
+import com.firebase.ui.common.StableIds;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+/**
+ * A {@link FirestoreRecyclerAdapter} alternative which groups items into sections with a header
+ * row in front of each one. A section is a run of consecutive items with the same section key, so
+ * the query should be ordered by the property the sections are derived from.
+ *
+ * @param <T>   the model object class.
+ * @param <K>   the section key class.
+ * @param <HVH> the {@link RecyclerView.ViewHolder} class for headers.
+ * @param <VH>  the {@link RecyclerView.ViewHolder} class for items.
+ */
+public abstract class FirestoreSectionedRecyclerAdapter<T, K,
+        HVH extends RecyclerView.ViewHolder, VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements ChangeEventListener, ResetListener, LifecycleObserver {
+    /**
+     * View type of section headers, item view types must be different.
+     */
+    public static final int TYPE_HEADER = 0;
+    /**
+     * Default view type of items.
+     */
+    public static final int TYPE_ITEM = 1;
+
+    private static final String TAG = "FirestoreSectioned";
+    private static final String HEADER_ID_PREFIX = "/section/";
+
+    private final ObservableSnapshotArray<T> mSnapshots;
+    private final SectionIndex<T, K> mSections;
+
+    /**
+     * @param mapper maps each model to its section
+     * @see FirestoreRecyclerAdapter#FirestoreRecyclerAdapter(FirestoreRecyclerOptions)
+     */
+    public FirestoreSectionedRecyclerAdapter(@NonNull FirestoreRecyclerOptions<T> options,
+                                            @NonNull SectionMapper<T, K> mapper) {
+        mSnapshots = options.getSnapshots();
+        mSections = new SectionIndex<>(mSnapshots, mapper, new SectionIndex.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onChanged(int position, @Nullable Object payload) {
+                notifyItemChanged(position, payload);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+        });
+
+        if (options.getOwner() != null) {
+            options.getOwner().getLifecycle().addObserver(this);
+        }
+    }
+
+    /**
+     * Start listening for database changes and populate the adapter.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    public void startListening() {
+        if (!mSnapshots.isListening(this)) {
+            mSnapshots.addChangeEventListener(this);
+        }
+    }
+
+    /**
+     * Stop listening for database changes and clear all items in the adapter.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+    public void stopListening() {
+        mSnapshots.removeChangeEventListener(this);
+        mSections.clear();
+        notifyDataSetChanged();
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void cleanup(LifecycleOwner source) {
+        source.getLifecycle().removeObserver(this);
+    }
+
+    @Override
+    public void onChildChanged(@NonNull ChangeEventType type,
+                               @NonNull DocumentSnapshot snapshot,
+                               int newIndex,
+                               int oldIndex) {
+        switch (type) {
+            case ADDED:
+                mSections.onItemAdded(newIndex);
+                break;
+            case CHANGED:
+                mSections.onItemChanged(newIndex, mSnapshots.getChangedFields());
+                break;
+            case REMOVED:
+                mSections.onItemRemoved(oldIndex);
+                break;
+            case MOVED:
+                mSections.onItemMoved(oldIndex, newIndex);
+                break;
+            default:
+                throw new IllegalStateException("Incomplete case statement");
+        }
+    }
+
+    @Override
+    public void onReset() {
+        mSections.reset();
+    }
+
+    @Override
+    public void onDataChanged() {
+    }
+
+    @Override
+    public void onError(@NonNull FirebaseFirestoreException e) {
+        Log.w(TAG, "onError", e);
+    }
+
+    /**
+     * Returns the backing {@link ObservableSnapshotArray} used to populate this adapter.
+     */
+    @NonNull
+    public ObservableSnapshotArray<T> getSnapshots() {
+        return mSnapshots;
+    }
+
+    /**
+     * Returns the sections, for example to translate between adapter positions and indices in
+     * {@link #getSnapshots()}.
+     */
+    @NonNull
+    public SectionIndex<T, K> getSections() {
+        return mSections;
+    }
+
+    /**
+     * Gets the item at the specified position, which must not be a header.
+     */
+    @NonNull
+    public T getItem(int position) {
+        int index = mSections.getSourceIndex(position);
+        if (index == -1) {
+            throw new IllegalArgumentException("Position " + position + " is a header.");
+        }
+        return mSnapshots.get(index);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mSnapshots.isListening(this) ? mSections.getItemCount() : 0;
+    }
+
+    /**
+     * Returns {@link #TYPE_HEADER} for section headers and {@link #TYPE_ITEM} otherwise. Override
+     * to use several item view types.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return mSections.isHeader(position) ? TYPE_HEADER : TYPE_ITEM;
+    }
+
+    /**
+     * Returns an ID derived from the document's ID for items and from the section key for headers.
+     * Call {@link #setHasStableIds(boolean)} to let the {@link RecyclerView} use it.
+     */
+    @Override
+    public long getItemId(int position) {
+        int index = mSections.getSourceIndex(position);
+        return index == -1
+                ? StableIds.forKey(HEADER_ID_PREFIX + mSections.getSection(position))
+                : StableIds.forKey(mSnapshots.getId(index));
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return viewType == TYPE_HEADER
+                ? onCreateHeaderViewHolder(parent)
+                : onCreateItemViewHolder(parent, viewType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        int index = mSections.getSourceIndex(position);
+        if (index == -1) {
+            onBindHeaderViewHolder((HVH) holder, mSections.getSection(position));
+        } else {
+            T model = mSnapshots.get(index);
+            MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+            long start = watchdog.startTiming();
+            onBindItemViewHolder((VH) holder, position, model);
+
+            long duration = watchdog.getSlowDuration(start);
+            if (duration > 0) {
+                mSnapshots.reportSlowCall(
+                        MainThreadWatchdog.OPERATION_BIND, duration, getClass(), index);
+            }
+        }
+    }
+
+    @NonNull
+    protected abstract HVH onCreateHeaderViewHolder(@NonNull ViewGroup parent);
+
+    @NonNull
+    protected abstract VH onCreateItemViewHolder(@NonNull ViewGroup parent, int viewType);
+
+    /**
+     * @param section the key of the section the header introduces
+     */
+    protected abstract void onBindHeaderViewHolder(@NonNull HVH holder, @NonNull K section);
+
+    /**
+     * @param model the model object containing the data that should be used to populate the view.
+     */
+    protected abstract void onBindItemViewHolder(@NonNull VH holder,
+                                                 int position,
+                                                 @NonNull T model);
+}
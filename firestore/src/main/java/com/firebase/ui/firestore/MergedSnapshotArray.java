@@ -0,0 +1,124 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+import com.firebase.ui.common.BaseSnapshotParser;
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.DerivedSnapshotIndex;
+import com.firebase.ui.common.MergedSnapshotIndex;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Combines several {@link ObservableSnapshotArray}s, such as queries that can't be expressed as one,
+ * into a single ordered array. Documents with the same ID are only shown once, preferring the source
+ * that comes first. The merged array is updated incrementally as the sources change and can be used
+ * to back an adapter directly.
+ *
+ * @param <T> the model object class.
+ */
+public class MergedSnapshotArray<T> extends ObservableSnapshotArray<T> {
+    private final List<ObservableSnapshotArray<T>> mSources;
+    private final MergedSnapshotIndex<DocumentSnapshot, T> mIndex;
+    private final List<ChangeEventListener> mSourceListeners = new ArrayList<>();
+
+    /**
+     * @param sources    the arrays to merge
+     * @param comparator the order of the merged models
+     */
+    public MergedSnapshotArray(@NonNull List<? extends ObservableSnapshotArray<T>> sources,
+                               @NonNull Comparator<T> comparator) {
+        super(new SnapshotParser<T>() {
+            @NonNull
+            @Override
+            public T parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+                throw new IllegalStateException("Models are parsed by the source arrays.");
+            }
+        });
+        mSources = new ArrayList<>(sources);
+        mIndex = new MergedSnapshotIndex<>(mSources, comparator,
+                new DerivedSnapshotIndex.Callback<DocumentSnapshot>() {
+                    @Override
+                    public void onChildChanged(@NonNull ChangeEventType type,
+                                               @NonNull DocumentSnapshot snapshot,
+                                               int newIndex,
+                                               int oldIndex,
+                                               @Nullable DocumentSnapshot previousSnapshot) {
+                        notifyOnChildChanged(type, snapshot, newIndex, oldIndex, previousSnapshot);
+                    }
+                });
+
+        for (int i = 0; i < sources.size(); i++) {
+            mSourceListeners.add(new SourceListener(i));
+        }
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        for (int i = 0; i < mSources.size(); i++) {
+            mSources.get(i).addChangeEventListener(mSourceListeners.get(i));
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (int i = 0; i < mSources.size(); i++) {
+            mSources.get(i).removeChangeEventListener(mSourceListeners.get(i));
+        }
+        mIndex.clear();
+    }
+
+    @NonNull
+    @Override
+    protected T getModel(int index) {
+        return mIndex.getModel(index);
+    }
+
+    @NonNull
+    @Override
+    protected List<DocumentSnapshot> getSnapshots() {
+        return mIndex.getSnapshots();
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @Nullable
+    @Override
+    public BaseSnapshotParser<DocumentSnapshot, T> getBackgroundParser() {
+        // Sources may parse the same snapshots differently
+        return null;
+    }
+
+    private final class SourceListener implements ChangeEventListener {
+        private final int mSource;
+
+        SourceListener(int source) {
+            mSource = source;
+        }
+
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mIndex.onSourceChanged(mSource, type, snapshot, newIndex, oldIndex);
+        }
+
+        @Override
+        public void onDataChanged() {
+            if (mIndex.onSourceDataChanged(mSource)) { notifyOnDataChanged(); }
+        }
+
+        @Override
+        public void onError(@NonNull FirebaseFirestoreException e) {
+            notifyOnError(e);
+        }
+    }
+}
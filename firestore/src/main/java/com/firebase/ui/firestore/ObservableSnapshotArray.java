@@ -1,6 +1,7 @@
 package com.firebase.ui.firestore;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.firebase.ui.common.BaseCachingSnapshotParser;
 import com.firebase.ui.common.BaseObservableSnapshotArray;
@@ -18,4 +19,22 @@ public abstract class ObservableSnapshotArray<T>
     public ObservableSnapshotArray(@NonNull SnapshotParser<T> parser) {
         super(new CachingSnapshotParser<>(parser));
     }
+
+    @NonNull
+    @Override
+    protected String getSnapshotKey(@NonNull DocumentSnapshot snapshot) {
+        return snapshot.getId();
+    }
+
+    @NonNull
+    @Override
+    protected String getSnapshotPath(@NonNull DocumentSnapshot snapshot) {
+        return snapshot.getReference().getPath();
+    }
+
+    @Nullable
+    @Override
+    protected Object getFieldData(@NonNull DocumentSnapshot snapshot) {
+        return snapshot.getData();
+    }
 }
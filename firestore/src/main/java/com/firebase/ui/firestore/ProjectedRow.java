@@ -0,0 +1,25 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+
+import com.firebase.ui.common.BaseProjectedRow;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Map;
+
+/**
+ * Row model created by a {@link ProjectionSnapshotParser}.
+ */
+public final class ProjectedRow extends BaseProjectedRow<DocumentSnapshot> {
+
+    ProjectedRow(@NonNull DocumentSnapshot snapshot,
+                 @NonNull Map<String, Integer> fieldIndices,
+                 @NonNull Object[] values) {
+        super(snapshot, fieldIndices, values);
+    }
+
+    @NonNull
+    public String getId() {
+        return getSnapshot().getId();
+    }
+}
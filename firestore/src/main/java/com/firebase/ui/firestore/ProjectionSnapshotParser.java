@@ -0,0 +1,41 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.firebase.ui.common.BaseProjectionSnapshotParser;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Map;
+
+/**
+ * A {@link SnapshotParser} that reads only the given fields of each {@link DocumentSnapshot} into
+ * a {@link ProjectedRow}. Use {@link ProjectedRow#parse(com.firebase.ui.common.BaseSnapshotParser)}
+ * to get the full model once it's actually needed.
+ */
+public class ProjectionSnapshotParser
+        extends BaseProjectionSnapshotParser<DocumentSnapshot, ProjectedRow>
+        implements SnapshotParser<ProjectedRow> {
+
+    /**
+     * @param fields the fields to read, nested fields can be specified with dots such as {@code
+     *               "author.name"}
+     */
+    public ProjectionSnapshotParser(@NonNull String... fields) {
+        super(fields);
+    }
+
+    @Nullable
+    @Override
+    protected Object getValue(@NonNull DocumentSnapshot snapshot, @NonNull String field) {
+        return snapshot.get(field);
+    }
+
+    @NonNull
+    @Override
+    protected ProjectedRow createRow(@NonNull DocumentSnapshot snapshot,
+                                     @NonNull Map<String, Integer> fieldIndices,
+                                     @NonNull Object[] values) {
+        return new ProjectedRow(snapshot, fieldIndices, values);
+    }
+}
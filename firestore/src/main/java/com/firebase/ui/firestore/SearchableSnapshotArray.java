@@ -0,0 +1,120 @@
+package com.firebase.ui.firestore;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+import com.firebase.ui.common.BaseSnapshotParser;
+import com.firebase.ui.common.ChangeEventType;
+import com.firebase.ui.common.DerivedSnapshotIndex;
+import com.firebase.ui.common.SearchIndex;
+import com.firebase.ui.common.Selector;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A view of another {@link ObservableSnapshotArray} containing the items matching a search query.
+ * An item matches if, for each word of the query, one of the words in its indexed fields starts
+ * with it, ignoring case. The index is updated incrementally as the source changes, so changing
+ * the query only costs as much as the number of matches.
+ *
+ * @param <T> the model object class.
+ */
+public class SearchableSnapshotArray<T> extends ObservableSnapshotArray<T> {
+    private final ObservableSnapshotArray<T> mSource;
+    private final SearchIndex<DocumentSnapshot, T> mIndex;
+
+    private final ChangeEventListener mSourceListener = new ChangeEventListener() {
+        @Override
+        public void onChildChanged(@NonNull ChangeEventType type,
+                                   @NonNull DocumentSnapshot snapshot,
+                                   int newIndex,
+                                   int oldIndex) {
+            mIndex.onSourceChanged(type, snapshot, newIndex, oldIndex);
+        }
+
+        @Override
+        public void onDataChanged() {
+            notifyOnDataChanged();
+        }
+
+        @Override
+        public void onError(@NonNull FirebaseFirestoreException e) {
+            notifyOnError(e);
+        }
+    };
+
+    /**
+     * @param source the array to search
+     * @param fields the text to index for each model, such as its name or description
+     */
+    @SafeVarargs
+    public SearchableSnapshotArray(@NonNull ObservableSnapshotArray<T> source,
+                                   @NonNull Selector<T, String>... fields) {
+        super(new SnapshotParser<T>() {
+            @NonNull
+            @Override
+            public T parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+                throw new IllegalStateException("Models are parsed by the source array.");
+            }
+        });
+        mSource = source;
+        mIndex = new SearchIndex<>(source, Arrays.asList(fields),
+                new DerivedSnapshotIndex.Callback<DocumentSnapshot>() {
+                    @Override
+                    public void onChildChanged(@NonNull ChangeEventType type,
+                                               @NonNull DocumentSnapshot snapshot,
+                                               int newIndex,
+                                               int oldIndex,
+                                               @Nullable DocumentSnapshot previousSnapshot) {
+                        notifyOnChildChanged(type, snapshot, newIndex, oldIndex, previousSnapshot);
+                    }
+                });
+    }
+
+    /**
+     * Only show items matching the given query.
+     *
+     * @param query the text to search for, or null to show all items
+     */
+    public void setQuery(@Nullable String query) {
+        mIndex.setQuery(query);
+        if (isListening()) { notifyOnDataChanged(); }
+    }
+
+    @Override
+    protected void onCreate() {
+        super.onCreate();
+        mSource.addChangeEventListener(mSourceListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSource.removeChangeEventListener(mSourceListener);
+        mIndex.clear();
+    }
+
+    @NonNull
+    @Override
+    protected T getModel(int index) {
+        return mIndex.getModel(index);
+    }
+
+    @NonNull
+    @Override
+    protected List<DocumentSnapshot> getSnapshots() {
+        return mIndex.getSnapshots();
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @Nullable
+    @Override
+    public BaseSnapshotParser<DocumentSnapshot, T> getBackgroundParser() {
+        // Models come from the source, which may hold provisional ones of its own
+        return super.getBackgroundParser() == null ? null : mSource.getBackgroundParser();
+    }
+}
@@ -14,6 +14,7 @@ import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 
+import com.firebase.ui.common.MainThreadWatchdog;
 import com.firebase.ui.firestore.SnapshotParser;
 import com.google.firebase.firestore.DocumentSnapshot;
 
@@ -126,7 +127,16 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
     @Override
     public void onBindViewHolder(@NonNull VH holder, int position) {
         DocumentSnapshot snapshot = getItem(position);
-        onBindViewHolder(holder, position, mParser.parseSnapshot(snapshot));
+        T model = mParser.parseSnapshot(snapshot);
+        MainThreadWatchdog watchdog = MainThreadWatchdog.getInstance();
+        long start = watchdog.startTiming();
+        onBindViewHolder(holder, position, model);
+
+        long duration = watchdog.getSlowDuration(start);
+        if (duration > 0) {
+            watchdog.reportSlowCall(MainThreadWatchdog.OPERATION_BIND, duration, getClass(),
+                    snapshot.getReference().getPath(), snapshot.getId());
+        }
     }
 
     /**
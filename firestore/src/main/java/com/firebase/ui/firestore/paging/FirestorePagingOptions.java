@@ -8,8 +8,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.util.DiffUtil;
 
+import com.firebase.ui.common.GenerateSnapshotParser;
 import com.firebase.ui.firestore.ClassSnapshotParser;
 import com.firebase.ui.firestore.SnapshotParser;
+import com.firebase.ui.firestore.SnapshotParsers;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.Source;
@@ -67,8 +69,9 @@ public final class FirestorePagingOptions<T> {
         private DiffUtil.ItemCallback<DocumentSnapshot> mDiffCallback;
 
         /**
-         * Sets the query using {@link Source#DEFAULT} and a {@link ClassSnapshotParser} based
-         * on the given Class.
+         * Sets the query using {@link Source#DEFAULT} and a parser for the given Class: the one
+         * generated for it if it's annotated with {@link GenerateSnapshotParser}, a {@link
+         * ClassSnapshotParser} otherwise.
          *
          * See {@link #setQuery(Query, Source, PagedList.Config, SnapshotParser)}.
          */
@@ -92,8 +95,9 @@ public final class FirestorePagingOptions<T> {
         }
 
         /**
-         * Sets the query using a custom {@link Source} and a {@link ClassSnapshotParser} based
-         * on the given class.
+         * Sets the query using a custom {@link Source} and a parser for the given class: the one
+         * generated for it if it's annotated with {@link GenerateSnapshotParser}, a {@link
+         * ClassSnapshotParser} otherwise.
          *
          * See {@link #setQuery(Query, Source, PagedList.Config, SnapshotParser)}.
          */
@@ -102,7 +106,7 @@ public final class FirestorePagingOptions<T> {
                                    @NonNull Source source,
                                    @NonNull PagedList.Config config,
                                    @NonNull Class<T> modelClass) {
-            return setQuery(query, source, config, new ClassSnapshotParser<>(modelClass));
+            return setQuery(query, source, config, SnapshotParsers.forClass(modelClass));
         }
 
         /**
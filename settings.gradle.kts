@@ -4,6 +4,8 @@ include(
         ":auth",
         ":common", ":firestore", ":database",
         ":storage",
+        ":coroutines",
+        ":compiler",
 
         ":proguard-tests", ":internal:lint", ":internal:lintchecks"
 )
@@ -1,8 +1,10 @@
 package com.firebase.ui.storage.images;
 
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
+import android.util.LruCache;
 
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.DataSource;
@@ -12,8 +14,10 @@ import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.request.target.Target;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.storage.StorageException;
 import com.google.firebase.storage.StorageReference;
 import com.google.firebase.storage.StreamDownloadTask;
 
@@ -21,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ModelLoader implementation to download images from FirebaseStorage with Glide.
@@ -46,20 +51,45 @@ import java.security.MessageDigest;
  *         .load(ref)
  *         .into(iv);
  * </pre>
+ *
+ * <p>
+ * To download smaller images for small targets, pass a {@link VariantResolver} to the {@link
+ * Factory}. If a variant doesn't exist, the original is downloaded in its place but not cached
+ * under the variant's path, and later loads of the image use the original directly for a while.
  */
 public class FirebaseImageLoader implements ModelLoader<StorageReference, InputStream> {
 
     private static final String TAG = "FirebaseImageLoader";
 
+    private final VariantResolver mResolver;
+    private final MissingVariants mMissingVariants;
 
     /**
      * Factory to create {@link FirebaseImageLoader}.
      */
     public static class Factory implements ModelLoaderFactory<StorageReference, InputStream> {
 
+        private final VariantResolver mResolver;
+        private final MissingVariants mMissingVariants = new MissingVariants();
+
+        /**
+         * Create a factory for loaders which always download the original images.
+         */
+        public Factory() {
+            this(null);
+        }
+
+        /**
+         * @param resolver picks the resized variant of an image to download for the target's
+         *                 size, or null to always download the original
+         */
+        public Factory(@Nullable VariantResolver resolver) {
+            mResolver = resolver;
+        }
+
         @Override
         public ModelLoader<StorageReference, InputStream> build(MultiModelLoaderFactory factory) {
-            return new FirebaseImageLoader();
+            return new FirebaseImageLoader(mResolver, mMissingVariants);
         }
 
         @Override
@@ -68,15 +98,44 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
         }
     }
 
+    public FirebaseImageLoader() {
+        this(null);
+    }
+
+    /**
+     * @see Factory#Factory(VariantResolver)
+     */
+    public FirebaseImageLoader(@Nullable VariantResolver resolver) {
+        this(resolver, new MissingVariants());
+    }
+
+    private FirebaseImageLoader(@Nullable VariantResolver resolver,
+                                @NonNull MissingVariants missingVariants) {
+        mResolver = resolver;
+        mMissingVariants = missingVariants;
+    }
+
     @Nullable
     @Override
     public LoadData<InputStream> buildLoadData(StorageReference reference,
-                                               int height,
                                                int width,
+                                               int height,
                                                Options options) {
-        return new LoadData<>(
-                new FirebaseStorageKey(reference),
-                new FirebaseStorageFetcher(reference));
+        StorageReference variant = null;
+        if (mResolver != null && width != Target.SIZE_ORIGINAL && height != Target.SIZE_ORIGINAL) {
+            variant = mResolver.resolve(reference, width, height);
+        }
+
+        if (variant == null || mMissingVariants.isMissing(variant)) {
+            return new LoadData<>(
+                    new FirebaseStorageKey(reference),
+                    new FirebaseStorageFetcher(reference, null, null));
+        } else {
+            // Each variant is cached under its own path
+            return new LoadData<>(
+                    new FirebaseStorageKey(variant),
+                    new FirebaseStorageFetcher(variant, reference, mMissingVariants));
+        }
     }
 
     @Override
@@ -98,24 +157,85 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
         }
     }
 
+    /**
+     * Remembers the variants which didn't exist, so that the original is loaded directly until it
+     * is time to check whether they have been generated since. Variants which stay missing are
+     * checked less and less often.
+     */
+    private static final class MissingVariants {
+        private static final long MIN_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+        private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+        private static final int MAX_SIZE = 1000;
+
+        private final LruCache<String, Retry> mRetries = new LruCache<>(MAX_SIZE);
+
+        synchronized boolean isMissing(@NonNull StorageReference variant) {
+            Retry retry = mRetries.get(variant.getPath());
+            return retry != null && SystemClock.elapsedRealtime() < retry.mTime;
+        }
+
+        synchronized void onMissing(@NonNull StorageReference variant) {
+            Retry previous = mRetries.get(variant.getPath());
+            long delay = previous == null
+                    ? MIN_RETRY_DELAY_MILLIS
+                    : Math.min(previous.mDelay * 2, MAX_RETRY_DELAY_MILLIS);
+            mRetries.put(variant.getPath(),
+                    new Retry(SystemClock.elapsedRealtime() + delay, delay));
+        }
+
+        synchronized void onFound(@NonNull StorageReference variant) {
+            mRetries.remove(variant.getPath());
+        }
+
+        private static final class Retry {
+            final long mTime;
+            final long mDelay;
+
+            Retry(long time, long delay) {
+                mTime = time;
+                mDelay = delay;
+            }
+        }
+    }
+
     private static class FirebaseStorageFetcher implements DataFetcher<InputStream> {
 
         private StorageReference mRef;
-        private StreamDownloadTask mStreamTask;
+        private final StorageReference mOriginal;
+        private final MissingVariants mMissingVariants;
+        private volatile StreamDownloadTask mStreamTask;
         private InputStream mInputStream;
+        private volatile boolean mIsOriginalFallback;
+        private volatile boolean mIsCancelled;
 
-        public FirebaseStorageFetcher(StorageReference ref) {
+        /**
+         * @param original        the image to download instead if {@code ref} is a variant which
+         *                        doesn't exist, or null if it is an original
+         * @param missingVariants where to record {@code ref} if it doesn't exist
+         */
+        public FirebaseStorageFetcher(StorageReference ref,
+                                      @Nullable StorageReference original,
+                                      @Nullable MissingVariants missingVariants) {
             mRef = ref;
+            mOriginal = original;
+            mMissingVariants = missingVariants;
         }
 
         @Override
-        public void loadData(Priority priority,
-                             final DataCallback<? super InputStream> callback) {
-            mStreamTask = mRef.getStream();
+        public void loadData(Priority priority, final DataCallback<? super InputStream> callback) {
+            load(mRef, callback);
+        }
+
+        private void load(final StorageReference ref,
+                          final DataCallback<? super InputStream> callback) {
+            mStreamTask = ref.getStream();
             mStreamTask
                     .addOnSuccessListener(new OnSuccessListener<StreamDownloadTask.TaskSnapshot>() {
                         @Override
                         public void onSuccess(StreamDownloadTask.TaskSnapshot snapshot) {
+                            if (ref == mRef && mMissingVariants != null) {
+                                mMissingVariants.onFound(ref);
+                            }
                             mInputStream = snapshot.getStream();
                             callback.onDataReady(mInputStream);
                         }
@@ -123,11 +243,25 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
                     .addOnFailureListener(new OnFailureListener() {
                         @Override
                         public void onFailure(@NonNull Exception e) {
-                            callback.onLoadFailed(e);
+                            if (ref == mRef && mOriginal != null && isNotFound(e)
+                                    && !mIsCancelled) {
+                                // The variant wasn't generated (yet). Its key must not end up
+                                // holding the original, see getDataSource().
+                                mMissingVariants.onMissing(ref);
+                                mIsOriginalFallback = true;
+                                load(mOriginal, callback);
+                            } else {
+                                callback.onLoadFailed(e);
+                            }
                         }
                     });
         }
 
+        private boolean isNotFound(@NonNull Exception e) {
+            return e instanceof StorageException && ((StorageException) e).getErrorCode()
+                    == StorageException.ERROR_OBJECT_NOT_FOUND;
+        }
+
         @Override
         public void cleanup() {
             // Close stream if possible
@@ -143,9 +277,11 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
 
         @Override
         public void cancel() {
+            mIsCancelled = true;
             // Cancel task if possible
-            if (mStreamTask != null && mStreamTask.isInProgress()) {
-                mStreamTask.cancel();
+            StreamDownloadTask task = mStreamTask;
+            if (task != null && task.isInProgress()) {
+                task.cancel();
             }
         }
 
@@ -158,7 +294,9 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
         @NonNull
         @Override
         public DataSource getDataSource() {
-            return DataSource.REMOTE;
+            // No disk cache strategy stores data or resources from the memory cache, which keeps
+            // the original from being cached under the variant's key
+            return mIsOriginalFallback ? DataSource.MEMORY_CACHE : DataSource.REMOTE;
         }
     }
 }
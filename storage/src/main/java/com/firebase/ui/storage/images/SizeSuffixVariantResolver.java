@@ -0,0 +1,108 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.firebase.storage.StorageReference;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Resolves variants named after their size, as written by the Resize Images extension: the
+ * {@code 200x200} variant of {@code images/cat.jpg} is {@code images/cat_200x200.jpg}.
+ * <p>
+ * <pre>
+ *     registry.append(StorageReference.class, InputStream.class,
+ *             new FirebaseImageLoader.Factory(
+ *                     new SizeSuffixVariantResolver("200x200", "680x680")));
+ * </pre>
+ */
+public class SizeSuffixVariantResolver implements VariantResolver {
+
+    private final Size[] mSizes;
+    private String mDirectory;
+
+    /**
+     * @param sizes the sizes each image was resized to, formatted as {@code WIDTHxHEIGHT} like
+     *              in the variants' names
+     */
+    public SizeSuffixVariantResolver(@NonNull String... sizes) {
+        mSizes = new Size[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            mSizes[i] = Size.parse(sizes[i]);
+        }
+
+        // Smallest first, so the first variant covering a target is the cheapest one
+        Arrays.sort(mSizes, new Comparator<Size>() {
+            @Override
+            public int compare(Size o1, Size o2) {
+                long area1 = (long) o1.mWidth * o1.mHeight;
+                long area2 = (long) o2.mWidth * o2.mHeight;
+                return area1 < area2 ? -1 : (area1 == area2 ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Set the folder variants are stored in, relative to the original image's folder. By
+     * default, variants are stored next to the original.
+     *
+     * @return this, for chaining.
+     */
+    @NonNull
+    public SizeSuffixVariantResolver setDirectory(@Nullable String directory) {
+        mDirectory = directory;
+        return this;
+    }
+
+    @Nullable
+    @Override
+    public StorageReference resolve(@NonNull StorageReference original, int width, int height) {
+        for (Size size : mSizes) {
+            if (size.mWidth >= width && size.mHeight >= height) {
+                return getVariant(original, size.mName);
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    private StorageReference getVariant(@NonNull StorageReference original, @NonNull String size) {
+        String name = original.getName();
+        int extension = name.lastIndexOf('.');
+        String variantName = extension > 0
+                ? name.substring(0, extension) + "_" + size + name.substring(extension)
+                : name + "_" + size;
+
+        StorageReference folder = original.getParent();
+        if (mDirectory != null) folder = folder.child(mDirectory);
+        return folder.child(variantName);
+    }
+
+    private static final class Size {
+        final String mName;
+        final int mWidth;
+        final int mHeight;
+
+        Size(String name, int width, int height) {
+            mName = name;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        static Size parse(String size) {
+            int separator = size.indexOf('x');
+            try {
+                if (separator != -1) {
+                    return new Size(size,
+                            Integer.parseInt(size.substring(0, separator)),
+                            Integer.parseInt(size.substring(separator + 1)));
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Sizes must be formatted as WIDTHxHEIGHT: " + size);
+        }
+    }
+}
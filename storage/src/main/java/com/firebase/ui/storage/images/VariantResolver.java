@@ -0,0 +1,27 @@
+package com.firebase.ui.storage.images;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.firebase.storage.StorageReference;
+
+/**
+ * Picks a pre-generated resized version of an image for the size it will be displayed at, so
+ * {@link FirebaseImageLoader} doesn't download and decode the original to show a thumbnail.
+ *
+ * @see SizeSuffixVariantResolver
+ */
+public interface VariantResolver {
+    /**
+     * Called on a background thread for each load.
+     *
+     * @param original the image requested
+     * @param width    the width of the target in pixels
+     * @param height   the height of the target in pixels
+     * @return the smallest variant of {@code original} which is at least {@code width} by {@code
+     * height}, or null to load the original. If the variant doesn't exist, the original is loaded
+     * instead, without being cached as the variant.
+     */
+    @Nullable
+    StorageReference resolve(@NonNull StorageReference original, int width, int height);
+}